@@ -7,9 +7,11 @@ import com.example.e_commerce_techshop.repositories.TokenRepository;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
@@ -31,6 +33,20 @@ public class JwtTokenProvider {
 
     private final TokenRepository tokenRepository;
 
+    // Key và parser được tạo một lần, không decode Base64 / build parser cho mỗi request
+    private SecretKey secretKey;
+
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init() {
+        byte[] bytes = Decoders.BASE64.decode(jwtSecret);
+        secretKey = Keys.hmacShaKeyFor(bytes);
+        jwtParser = Jwts.parser()
+                .verifyWith(secretKey)
+                .build();
+    }
+
     public String generateToken(Authentication authentication) {
         String username = authentication.getName();
 
@@ -66,17 +82,13 @@ public class JwtTokenProvider {
     }
 
     private SecretKey key() {
-        byte[] bytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(bytes);
+        return secretKey;
     }
 
     // get username from JWT token
     public String getUsername(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith((SecretKey) key())
-                    .build()
-                    .parseSignedClaims(token)
+            return jwtParser.parseSignedClaims(token)
                     .getPayload()
                     .getSubject();
         } catch (ExpiredJwtException e) {
@@ -102,16 +114,23 @@ public class JwtTokenProvider {
 
     // validate JWT token
     public boolean validateToken(String token, User user) {
+        return validateToken(parseClaims(token), token, user);
+    }
+
+    /**
+     * Xác thực với claims đã parse sẵn (chữ ký và hạn dùng đã được kiểm tra khi parse)
+     */
+    public boolean validateToken(Claims claims, String token, User user) {
         try {
-            String subject = extractClaim(token, Claims::getSubject);
             // Subject là email
+            String subject = claims.getSubject();
 
             // Kiểm tra token tồn tại trong DB ko ?
             Token existingToken = tokenRepository.findByToken(token);
             if (existingToken == null || existingToken.isRevoked() || !user.getIsActive()) {
                 return false;
             }
-            return (subject.equals(user.getUsername())) && !isTokenExpired(token);
+            return subject.equals(user.getUsername()) && !claims.getExpiration().before(new Date());
         } catch (ExpiredJwtException e) {
             throw new JwtAuthenticationException("JWT token đã hết hạn", e);
         } catch (JwtException e) {
@@ -121,11 +140,16 @@ public class JwtTokenProvider {
         }
     }
 
+    /**
+     * Parse và kiểm tra chữ ký một lần, trả về toàn bộ claims
+     */
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
+    }
+
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parser() // Khởi tạo JwtParserBuilder
-                    .verifyWith(key()) // Sử dụng verifyWith() để thiết lập signing key
-                    .build() // Xây dựng JwtParser
+            return jwtParser // JwtParser dùng chung (đã thiết lập signing key)
                     .parseSignedClaims(token) // Phân tích token đã ký
                     .getPayload(); // Lấy phần body của JWT, chứa claims
         } catch (ExpiredJwtException e) {
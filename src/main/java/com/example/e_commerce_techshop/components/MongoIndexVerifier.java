@@ -0,0 +1,144 @@
+package com.example.e_commerce_techshop.components;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Khi khởi động, explain (queryPlanner) các truy vấn repository chạy nhiều nhất và báo lỗi nếu
+ * plan được chọn là COLLSCAN, tức là thiếu hoặc sai @CompoundIndex.
+ * mongodb.index-verification.fail-on-collscan = true thì dừng khởi động thay vì chỉ ghi log.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexVerifier {
+
+    private static final String ENABLED_PROPERTY = "mongodb.index-verification.enabled";
+    private static final String FAIL_PROPERTY = "mongodb.index-verification.fail-on-collscan";
+
+    private final MongoTemplate mongoTemplate;
+    private final Environment environment;
+
+    private record Probe(String name, String collection, Document filter, Document sort) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if (!environment.getProperty(ENABLED_PROPERTY, Boolean.class, true)) {
+            return;
+        }
+        List<String> collectionScans = verify();
+        if (collectionScans.isEmpty()) {
+            return;
+        }
+        String message = "Truy vấn không dùng index (COLLSCAN): " + String.join(", ", collectionScans);
+        if (environment.getProperty(FAIL_PROPERTY, Boolean.class, false)) {
+            throw new IllegalStateException(message);
+        }
+        log.error("[MongoIndexVerifier] {}", message);
+    }
+
+    /**
+     * @return tên các truy vấn có plan là COLLSCAN
+     */
+    public List<String> verify() {
+        List<Probe> probes = probes();
+        List<String> collectionScans = new ArrayList<>();
+        for (Probe probe : probes) {
+            try {
+                Document find = new Document("find", probe.collection())
+                        .append("filter", probe.filter())
+                        .append("limit", 1);
+                if (probe.sort() != null) {
+                    find.append("sort", probe.sort());
+                }
+                Document explain = mongoTemplate.getDb().runCommand(new Document("explain", find)
+                        .append("verbosity", "queryPlanner"));
+                Object winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+                if (containsStage(winningPlan, "COLLSCAN")) {
+                    collectionScans.add(probe.name());
+                }
+            } catch (Exception e) {
+                log.warn("[MongoIndexVerifier] Không explain được {}: {}", probe.name(), e.getMessage());
+            }
+        }
+        log.info("[MongoIndexVerifier] Đã kiểm tra {} truy vấn, {} truy vấn COLLSCAN", probes.size(),
+                collectionScans.size());
+        return collectionScans;
+    }
+
+    // Duyệt cả inputStage / inputStages / queryPlan (SBE) lồng nhau
+    private boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document doc) {
+            if (stage.equals(doc.get("stage"))) {
+                return true;
+            }
+            return doc.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    /**
+     * Dạng truy vấn (giá trị chỉ là placeholder) tương ứng với các method repository chính.
+     * Derived query theo id của @DBRef được map thành '<field>.$id'.
+     */
+    private List<Probe> probes() {
+        ObjectId id = new ObjectId();
+        Date now = new Date();
+        Document newest = new Document("createdAt", -1).append("_id", -1);
+
+        return List.of(
+                // orders
+                new Probe("orders.findByStoreIdAndStatusAndDateRange", "orders",
+                        new Document("store.$id", id).append("status", "COMPLETED")
+                                .append("createdAt", new Document("$gte", now).append("$lte", now)), null),
+                new Probe("orders.findByStoreId", "orders", new Document("store.$id", id), newest),
+                new Probe("orders.findByBuyerIdAndStatus", "orders",
+                        new Document("buyer.$id", id).append("status", "PENDING"), newest),
+                new Probe("orders.findByStatusAndUpdatedAtBefore", "orders",
+                        new Document("status", "DELIVERED").append("updatedAt", new Document("$lt", now)), null),
+                new Probe("orders.findByPaymentStatusAndStatusAndPaymentMethodInAndCreatedAtBefore", "orders",
+                        new Document("paymentStatus", "UNPAID").append("status", "PENDING")
+                                .append("paymentMethod", new Document("$in", List.of("VNPAY", "MOMO")))
+                                .append("createdAt", new Document("$lt", now)), null),
+                // order_items
+                new Probe("order_items.findByOrderIdIn", "order_items",
+                        new Document("order.$id", new Document("$in", List.of(id))), null),
+                // shipments
+                new Probe("shipments.findByOrderIdAndIsReturnShipment", "shipments",
+                        new Document("order.$id", id).append("isReturnShipment", false), null),
+                new Probe("shipments.findByStoreIdAndStatus", "shipments",
+                        new Document("store.$id", id).append("status", "PENDING"), newest),
+                new Probe("shipments.findByStatusAndCreatedAtBefore", "shipments",
+                        new Document("status", "PENDING").append("createdAt", new Document("$lt", now)), null),
+                // notifications
+                new Probe("notifications.findByUserIdAndIsReadOrderByCreatedAtDesc", "notifications",
+                        new Document("user.$id", id).append("isRead", false), newest),
+                new Probe("notifications.findByStoreIdOrderByCreatedAtDesc", "notifications",
+                        new Document("store.$id", id), newest),
+                new Probe("notifications.findByIsAdminAndIsReadOrderByCreatedAtDesc", "notifications",
+                        new Document("isAdmin", true).append("isRead", false), new Document("createdAt", -1)),
+                // chat
+                new Probe("chat_messages.findByConversationIdOrderBySentAtDesc", "chat_messages",
+                        new Document("conversationId", id.toHexString()), new Document("sentAt", -1)),
+                new Probe("conversations.findByParticipantId", "conversations",
+                        new Document("participantIds", id.toHexString())
+                                .append("status", new Document("$ne", "CLOSED")),
+                        new Document("lastMessageTime", -1)));
+    }
+}
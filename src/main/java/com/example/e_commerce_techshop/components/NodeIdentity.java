@@ -0,0 +1,29 @@
+package com.example.e_commerce_techshop.components;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+
+/**
+ * Định danh của node (instance) đang chạy: hostname + hậu tố ngẫu nhiên, đổi sau mỗi lần khởi động.
+ * Dùng cho khóa job định kỳ và định tuyến WebSocket giữa các node.
+ */
+@Component
+@Getter
+public class NodeIdentity {
+
+    private final String nodeId = resolveNodeId();
+
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.e_commerce_techshop.configurations;
 
 import com.example.e_commerce_techshop.components.JwtTokenProvider;
+import com.example.e_commerce_techshop.services.websocket.RedisStompRelay;
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.messaging.Message;
@@ -14,6 +19,7 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -28,12 +34,28 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final long HEARTBEAT_MILLIS = 10_000;
+
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    // Chỉ có khi websocket.broker.mode = redis (nhiều node), mặc định simple broker trong JVM
+    private final ObjectProvider<RedisStompRelay> redisStompRelay;
+
+    // Bean messageBrokerTaskScheduler do Spring tạo và tắt cùng context; @Lazy vì bean được tạo từ chính cấu hình broker
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler scheduler) {
+        this.messageBrokerTaskScheduler = scheduler;
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        // Heartbeat STOMP: phiên của client mất mạng bị đóng sau vài chu kỳ (PresenceService nhận disconnect)
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] { HEARTBEAT_MILLIS, HEARTBEAT_MILLIS })
+                .setTaskScheduler(messageBrokerTaskScheduler);
+        redisStompRelay.ifAvailable(relay -> config.configureBrokerChannel().interceptors(relay));
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
     }
@@ -1,6 +1,7 @@
 package com.example.e_commerce_techshop.controllers;
 
 import com.example.e_commerce_techshop.responses.ApiResponse;
+import com.example.e_commerce_techshop.responses.ProductSuggestionResponse;
 import com.example.e_commerce_techshop.responses.ProductVariantResponse;
 import com.example.e_commerce_techshop.services.productVariant.IProductVariantService;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -114,16 +117,25 @@ public class ProductVariantController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Tìm kiếm biến thể sản phẩm theo tên", description = "Tìm kiếm biến thể sản phẩm theo tên với việc so khớp không phân biệt chữ hoa chữ thường")
+    @Operation(summary = "Tìm kiếm biến thể sản phẩm theo tên", description = "Tìm kiếm biến thể sản phẩm theo tên, thương hiệu, danh mục và thông số; không phân biệt hoa thường, có dấu/không dấu, hỗ trợ gõ dở và sai chính tả nhẹ")
     public ResponseEntity<?> searchProductVariants(
             @Parameter(description = "Tên biến thể sản phẩm cần tìm", example = "iPhone") @RequestParam("name") String name,
             @Parameter(description = "Số trang (bắt đầu từ 0)", example = "0") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Số lượng mục trên mỗi trang", example = "10") @RequestParam(defaultValue = "10") int size,
-            @Parameter(description = "Trường sắp xếp", example = "createdAt") @RequestParam(defaultValue = "createdAt") String sortBy,
+            @Parameter(description = "Trường sắp xếp (relevance = theo độ liên quan)", example = "relevance") @RequestParam(defaultValue = "relevance") String sortBy,
             @Parameter(description = "Hướng sắp xếp (asc, desc)", example = "desc") @RequestParam(defaultValue = "desc") String sortDir)
             throws Exception {
         Page<ProductVariantResponse> response = productVariantService.searchByName(name, page, size, sortBy, sortDir);
         return ResponseEntity.ok(ApiResponse.ok(response));
     }
 
+    @GetMapping("/suggest")
+    @Operation(summary = "Gợi ý tìm kiếm khi đang gõ", description = "Gợi ý tên sản phẩm, thương hiệu, danh mục theo tiền tố đang gõ, ưu tiên sản phẩm bán chạy; không phân biệt hoa thường, có dấu/không dấu")
+    public ResponseEntity<?> suggestProductVariants(
+            @Parameter(description = "Từ khóa đang gõ", example = "iph") @RequestParam("q") String q,
+            @Parameter(description = "Số gợi ý tối đa (tối đa 10)", example = "8") @RequestParam(defaultValue = "8") int limit) {
+        List<ProductSuggestionResponse> response = productVariantService.suggest(q, limit);
+        return ResponseEntity.ok(ApiResponse.ok(response));
+    }
+
 }
\ No newline at end of file
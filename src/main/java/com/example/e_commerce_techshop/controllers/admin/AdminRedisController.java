@@ -3,9 +3,13 @@ package com.example.e_commerce_techshop.controllers.admin;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.e_commerce_techshop.responses.ApiResponse;
+import com.example.e_commerce_techshop.services.productVariant.ProductVariantPageCache;
+
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -13,6 +17,12 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class AdminRedisController {
     private final StringRedisTemplate redisTemplate;
+    private final ProductVariantPageCache productVariantPageCache;
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(ApiResponse.ok(productVariantPageCache.getStats()));
+    }
 
     @DeleteMapping("/clear-all")
     public ResponseEntity<?> clearAll() {
@@ -0,0 +1,52 @@
+package com.example.e_commerce_techshop.controllers.admin;
+
+import com.example.e_commerce_techshop.models.ScheduledJobRun;
+import com.example.e_commerce_techshop.repositories.ScheduledJobRunRepository;
+import com.example.e_commerce_techshop.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("${api.prefix}/admin/scheduled-jobs")
+@RequiredArgsConstructor
+@Tag(name = "Admin Scheduled Jobs", description = "APIs for admin to view scheduled job run history")
+@SecurityRequirement(name = "Bearer Authentication")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminScheduledJobController {
+
+        private final ScheduledJobRunRepository scheduledJobRunRepository;
+
+        @Operation(summary = "Lịch sử chạy job định kỳ", description = "Node, fencing token, thời gian chạy và số bản ghi đã xử lý của từng lượt chạy")
+        @GetMapping("/runs")
+        public ResponseEntity<?> getJobRuns(
+                        @Parameter(description = "Tên job (vd: autoCompleteDeliveredOrders)", required = false) @RequestParam(required = false) String jobName,
+                        @Parameter(description = "Page number (0-indexed)", required = false, example = "0") @RequestParam(defaultValue = "0") int page,
+                        @Parameter(description = "Page size", required = false, example = "20") @RequestParam(defaultValue = "20") int size) {
+
+                Pageable pageable = PageRequest.of(page, size);
+                Page<ScheduledJobRun> runPage = jobName != null
+                                ? scheduledJobRunRepository.findByJobNameOrderByStartedAtDesc(jobName, pageable)
+                                : scheduledJobRunRepository.findAllByOrderByStartedAtDesc(pageable);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("runs", runPage.getContent());
+                response.put("page", page);
+                response.put("size", size);
+                response.put("total", runPage.getTotalElements());
+                response.put("totalPages", runPage.getTotalPages());
+
+                return ResponseEntity.ok(ApiResponse.ok(response));
+        }
+}
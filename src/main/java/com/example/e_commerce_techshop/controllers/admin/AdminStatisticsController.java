@@ -6,6 +6,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -114,4 +115,19 @@ public class AdminStatisticsController {
         return ResponseEntity.ok(ApiResponse.ok(statisticsService.getRevenueChartData(period)));
     }
 
+    @Operation(summary = "Lấy biến thể bán chạy toàn sàn", description = "Top biến thể bán chạy của tất cả shop theo kỳ (WEEK/MONTH/YEAR), tính theo đơn hàng đã hoàn tất")
+    @GetMapping("/variants/best-selling")
+    public ResponseEntity<?> getPlatformBestSellingVariants(
+            @Parameter(description = "Số lượng variant muốn lấy", required = false, example = "10") @RequestParam(defaultValue = "10") Integer limit,
+            @Parameter(description = "Kỳ thời gian (WEEK, MONTH, YEAR)", required = false, example = "MONTH") @RequestParam(defaultValue = "MONTH") String period) {
+
+        return ResponseEntity.ok(ApiResponse.ok(statisticsService.getPlatformBestSellingVariants(limit, period)));
+    }
+
+    @Operation(summary = "Tính lại bảng tổng hợp theo ngày", description = "Tính lại daily_store_metrics và daily_platform_metrics từ orders và admin_revenues (dùng khi số liệu biểu đồ bị lệch)")
+    @PostMapping("/daily-metrics/rebuild")
+    public ResponseEntity<?> rebuildDailyMetrics() {
+        return ResponseEntity.ok(ApiResponse.ok(statisticsService.rebuildDailyMetrics()));
+    }
+
 }
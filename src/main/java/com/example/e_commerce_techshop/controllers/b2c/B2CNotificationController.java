@@ -65,6 +65,21 @@ public class B2CNotificationController {
             return ResponseEntity.ok(ApiResponse.ok(response));
     }
 
+    @Operation(summary = "Lấy danh sách notification của store theo cursor", description = "Keyset pagination (newest first, no total count): pass nextCursor from the previous page to get the next one")
+    @GetMapping("/cursor")
+    public ResponseEntity<?> getStoreNotificationsByCursor(
+            @Parameter(description = "Store ID", required = true) @PathVariable String storeId,
+            @Parameter(description = "Filter by read status (true/false)", required = false) @RequestParam(required = false) Boolean isRead,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size", required = false, example = "10") @RequestParam(defaultValue = "10") int size) throws Exception {
+
+            verifyStoreOwnership(storeId);
+
+            return ResponseEntity.ok(ApiResponse.ok(notificationService
+                    .getStoreNotificationsByCursor(storeId, isRead, cursor, size)
+                    .map(B2CNotificationResponse::fromNotification)));
+    }
+
     @Operation(summary = "Lấy số notification chưa đọc của store", description = "Get the number of unread notifications for a specific store")
     @GetMapping("/unread-count")
     public ResponseEntity<?> getStoreUnreadCount(
@@ -77,6 +77,23 @@ public class B2COrderController {
         return ResponseEntity.ok(ApiResponse.ok(orderPage));
     }
 
+    /**
+     * Lấy danh sách đơn hàng của store theo cursor
+     * GET /api/v1/b2c/orders/cursor?storeId={storeId}&cursor={nextCursor}
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "Lấy danh sách đơn hàng của cửa hàng theo cursor", description = "Phân trang keyset (mới nhất trước): truyền nextCursor của trang trước để lấy trang tiếp theo, phù hợp cho cửa hàng có rất nhiều đơn")
+    public ResponseEntity<?> getStoreOrdersByCursor(
+            @Parameter(description = "ID of the store", required = true, example = "64f1a2b3c4d5e6f7a8b9c0d1") @RequestParam String storeId,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Number of items per page", example = "10") @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "Filter by order status", example = "PENDING") @RequestParam(required = false) String status,
+            @Parameter(hidden = true) @AuthenticationPrincipal User currentUser) throws Exception {
+        validateUserStore(currentUser, storeId);
+
+        return ResponseEntity.ok(ApiResponse.ok(orderService.getStoreOrdersByCursor(storeId, status, cursor, size)));
+    }
+
     /**
      * Lấy chi tiết đơn hàng của store
      * GET /api/v1/b2c/orders/{orderId}?storeId={storeId}
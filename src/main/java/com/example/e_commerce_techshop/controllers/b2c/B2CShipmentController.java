@@ -67,6 +67,17 @@ public class B2CShipmentController {
         return ResponseEntity.ok(ApiResponse.ok(shipmentResponses));
     }
 
+    @GetMapping("/store/{storeId}/cursor")
+    @Operation(summary = "Lấy danh sách shipment của store theo cursor", description = "Phân trang keyset (mới nhất trước): truyền nextCursor của trang trước để lấy trang tiếp theo, phù hợp cho store có rất nhiều shipment")
+    public ResponseEntity<?> getStoreShipmentsByCursor(
+            @Parameter(description = "Store ID", required = true, example = "64f1a2b3c4d5e6f7a8b9c0d1") @PathVariable String storeId,
+            @Parameter(description = "Filter by status (PICKING_UP, SHIPPING, DELIVERED, FAILED)", example = "SHIPPING") @RequestParam(required = false) String status,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size", example = "10") @RequestParam(defaultValue = "10") int size)
+            throws Exception {
+        return ResponseEntity.ok(ApiResponse.ok(shipmentService.getStoreShipmentsByCursor(storeId, status, cursor, size)));
+    }
+
     @GetMapping("/store/{storeId}/count-by-status")
     @Operation(summary = "Lấy chi tiết shipment", description = "Lấy chi tiết thông tin của một shipment cụ thể")
     public ResponseEntity<?> getShipmentById(
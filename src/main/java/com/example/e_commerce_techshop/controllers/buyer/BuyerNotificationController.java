@@ -51,6 +51,19 @@ public class BuyerNotificationController {
         return ResponseEntity.ok(ApiResponse.ok(response));
     }
 
+    @Operation(summary = "Lấy danh sách notification theo cursor", description = "Phân trang keyset (mới nhất trước, không đếm tổng): truyền nextCursor của trang trước để lấy trang tiếp theo")
+    @GetMapping("/cursor")
+    public ResponseEntity<?> getNotificationsByCursor(
+            @Parameter(description = "Filter by read status (true/false)", required = false) @RequestParam(required = false) Boolean isRead,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size", required = false, example = "10") @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal User user) throws Exception {
+
+        return ResponseEntity.ok(ApiResponse.ok(notificationService
+                .getUserNotificationsByCursor(user.getId(), isRead, cursor, size)
+                .map(BuyerNotificationResponse::fromNotification)));
+    }
+
     @Operation(summary = "Lấy số notification chưa đọc", description = "Lấy số lượng notification chưa đọc của người mua hiện tại")
     @GetMapping("/unread-count")
     public ResponseEntity<?> getUnreadCount(@AuthenticationPrincipal User user) throws Exception {
@@ -74,6 +74,16 @@ public class BuyerOrderController {
         return ResponseEntity.ok(ApiResponse.ok(orderResponsePage));
     }
 
+    @GetMapping("/cursor")
+    @Operation(summary = "Lấy lịch sử đơn hàng theo cursor", description = "Phân trang keyset (mới nhất trước, không đếm tổng): truyền nextCursor của trang trước để lấy trang tiếp theo")
+    public ResponseEntity<?> getOrderHistoryByCursor(
+            @Parameter(description = "Lọc theo trạng thái đơn hàng (PENDING, CONFIRMED, SHIPPING, DELIVERED, CANCELLED, COMPLETED)", example = "PENDING") @RequestParam(required = false) String status,
+            @Parameter(description = "Cursor từ trang trước (bỏ trống để lấy trang đầu)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Số lượng mục trên mỗi trang", example = "10") @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal User currentUser) throws Exception {
+        return ResponseEntity.ok(ApiResponse.ok(orderService.getOrderHistoryByCursor(currentUser, status, cursor, size)));
+    }
+
     @GetMapping("/{orderId}")
     @Operation(summary = "Lấy chi tiết đơn hàng", description = "Lấy thông tin chi tiết của một đơn hàng cụ thể")
     public ResponseEntity<?> getOrderDetail(
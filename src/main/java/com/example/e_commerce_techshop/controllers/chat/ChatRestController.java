@@ -2,7 +2,9 @@ package com.example.e_commerce_techshop.controllers.chat;
 
 import com.example.e_commerce_techshop.dtos.chat.*;
 import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 import com.example.e_commerce_techshop.services.chat.IChatService;
+import com.example.e_commerce_techshop.services.chat.IPresenceService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -17,6 +19,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -26,7 +29,10 @@ import java.util.Map;
 @SecurityRequirement(name = "bearerAuth")
 public class ChatRestController {
 
+    private static final int MAX_PRESENCE_IDS = 200;
+
     private final IChatService chatService;
+    private final IPresenceService presenceService;
 
     @GetMapping("/conversations")
     @Operation(summary = "Lấy các cuộc trò chuyện của người dùng với phân trang")
@@ -62,6 +68,17 @@ public class ChatRestController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/presence")
+    @Operation(summary = "Lấy trạng thái online của nhiều người dùng (tối đa 200 id mỗi lần)")
+    public ResponseEntity<Map<String, UserPresenceDTO>> getPresence(
+            @RequestParam List<String> userIds) {
+
+        if (userIds.size() > MAX_PRESENCE_IDS) {
+            throw new IllegalArgumentException("Tối đa " + MAX_PRESENCE_IDS + " người dùng mỗi lần");
+        }
+        return ResponseEntity.ok(presenceService.getPresence(userIds));
+    }
+
     @GetMapping("/conversations/{conversationId}/messages")
     @Operation(summary = "Lấy các tin nhắn trong cuộc trò chuyện với phân trang")
     public ResponseEntity<Page<ChatMessageDTO>> getConversationMessages(
@@ -76,6 +93,18 @@ public class ChatRestController {
         return ResponseEntity.ok(messages);
     }
 
+    @GetMapping("/conversations/{conversationId}/messages/cursor")
+    @Operation(summary = "Lấy các tin nhắn trong cuộc trò chuyện theo cursor (mới nhất trước, không đếm tổng)")
+    public ResponseEntity<CursorPageResponse<ChatMessageDTO>> getConversationMessagesByCursor(
+            @PathVariable String conversationId,
+            @AuthenticationPrincipal User currentUser,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+
+        return ResponseEntity.ok(chatService.getConversationMessagesByCursor(
+                conversationId, currentUser.getId(), cursor, size));
+    }
+
     @GetMapping("/conversations/find-or-create")
     @Operation(summary = "Tìm cuộc trò chuyện hiện có hoặc tạo mới giữa các người dùng")
     public ResponseEntity<ConversationDTO> findOrCreateConversation(
@@ -2,6 +2,7 @@ package com.example.e_commerce_techshop.controllers.chat;
 
 import com.example.e_commerce_techshop.dtos.chat.*;
 import com.example.e_commerce_techshop.services.chat.IChatService;
+import com.example.e_commerce_techshop.services.chat.IPresenceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -16,6 +17,7 @@ public class WebSocketChatController {
 
     private final IChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final IPresenceService presenceService;
 
     /**
      * Handle sending messages via WebSocket
@@ -66,17 +68,15 @@ public class WebSocketChatController {
     }
 
     /**
-     * Handle user presence (online/offline status)
+     * Heartbeat presence của user đang kết nối (trạng thái do server theo dõi, bỏ qua userId / online client gửi).
+     * Thay đổi online / offline được gửi tới những người có chung conversation qua /user/queue/presence
      * Client sends to: /app/chat.userPresence
      */
     @MessageMapping("/chat.userPresence")
     public void handleUserPresence(@Payload UserPresenceRequest request, Authentication authentication) {
-        if (authentication != null) {
-            // Broadcast presence status
-            messagingTemplate.convertAndSend(
-                "/topic/user/" + request.getUserId() + "/presence",
-                request
-            );
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
+            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            presenceService.heartbeat(getUserIdFromUserDetails(userDetails));
         }
     }
 
@@ -0,0 +1,19 @@
+package com.example.e_commerce_techshop.dtos.chat;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPresenceDTO {
+
+    private String userId;
+    private Boolean online;
+    private LocalDateTime lastSeenAt; // null nếu đang online hoặc chưa ghi nhận
+}
@@ -4,7 +4,9 @@ import com.example.e_commerce_techshop.components.JwtTokenProvider;
 import com.example.e_commerce_techshop.exceptions.JwtAuthenticationException;
 import com.example.e_commerce_techshop.models.User;
 import com.example.e_commerce_techshop.responses.ApiResponse;
+import com.example.e_commerce_techshop.services.token.JwtAuthenticationCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -29,6 +31,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final UserDetailsService userDetailsService;
 
+    private final JwtAuthenticationCache jwtAuthenticationCache;
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,@NonNull HttpServletResponse response,@NonNull FilterChain filterChain) throws ServletException, IOException {
         String requestPath = request.getRequestURI();
@@ -41,18 +45,31 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         
         String authHeader = request.getHeader("Authorization");
         String token = null;
-        String username = null;
 
         try {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 token = authHeader.substring(7);
-                username = jwtTokenProvider.getUsername(token);
             }
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                User user = (User) userDetailsService.loadUserByUsername(username);
+            if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Token đã xác thực gần đây -> không cần parse lại và đọc DB
+                User user = jwtAuthenticationCache.get(token);
+
+                if (user == null) {
+                    // Parse một lần, dùng lại claims cho các bước kiểm tra
+                    Claims claims = jwtTokenProvider.parseClaims(token);
+
+                    if (!jwtAuthenticationCache.isRevoked(token)) {
+                        User loadedUser = (User) userDetailsService.loadUserByUsername(claims.getSubject());
+
+                        if (jwtTokenProvider.validateToken(claims, token, loadedUser)) {
+                            jwtAuthenticationCache.put(token, loadedUser, claims.getExpiration());
+                            user = loadedUser;
+                        }
+                    }
+                }
 
-                if (jwtTokenProvider.validateToken(token, user)) {
+                if (user != null) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
 
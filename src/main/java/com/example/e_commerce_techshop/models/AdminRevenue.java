@@ -1,7 +1,9 @@
 package com.example.e_commerce_techshop.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
@@ -26,6 +28,10 @@ public class AdminRevenue extends BaseEntity {
 
     private String description;
 
+    @Transient
+    @JsonIgnore
+    private boolean rolledUp; // Đã được cộng vào daily_platform_metrics (không lưu DB)
+
     public enum RevenueType {
         PLATFORM_COMMISSION, PLATFORM_DISCOUNT_LOSS, SHIPPING_FEE
     }
@@ -2,6 +2,8 @@ package com.example.e_commerce_techshop.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -13,6 +15,10 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "conversation_sent_idx", def = "{'conversationId': 1, 'sentAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "sender_sent_idx", def = "{'senderId': 1, 'sentAt': -1}")
+})
 public class ChatMessage extends BaseEntity {
     @Id
     private String id;
@@ -1,7 +1,10 @@
 package com.example.e_commerce_techshop.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -13,6 +16,10 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "participant_last_message_idx", def = "{'participantIds': 1, 'lastMessageTime': -1}"),
+        @CompoundIndex(name = "store_last_message_idx", def = "{'storeId': 1, 'lastMessageTime': -1}")
+})
 public class Conversation extends BaseEntity {
     @Id
     private String id;
@@ -27,6 +34,7 @@ public class Conversation extends BaseEntity {
     private String storeId;
 
     // Last message info for quick display
+    private String lastMessageId;
     private String lastMessage;
     private LocalDateTime lastMessageTime;
 
@@ -37,6 +45,13 @@ public class Conversation extends BaseEntity {
     // Unread count per participant
     private List<UnreadCount> unreadCounts;
 
+    // Mốc đã đọc của từng người: tin gửi lúc <= lastReadAt coi như đã đọc
+    private List<ReadMarker> readMarkers;
+
+    // Id các lô ghi tin gần nhất đã áp dụng (ChatMessageWriteBehind), để ghi lại không cộng unreadCounts hai lần
+    @JsonIgnore
+    private List<String> appliedWriteBatches;
+
     // Conversation status
     private ConversationStatus status;
 
@@ -59,4 +74,13 @@ public class Conversation extends BaseEntity {
         private String userId;
         private Integer count;
     }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ReadMarker {
+        private String userId;
+        private String lastReadMessageId;
+        private LocalDateTime lastReadAt;
+    }
 }
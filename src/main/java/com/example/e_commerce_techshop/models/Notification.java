@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,6 +17,14 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "user_read_created_idx", def = "{'user.$id': 1, 'isRead': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "user_created_idx", def = "{'user.$id': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "store_read_created_idx", def = "{'store.$id': 1, 'isRead': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "store_created_idx", def = "{'store.$id': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "admin_read_created_idx", def = "{'isAdmin': 1, 'isRead': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "admin_type_created_idx", def = "{'isAdmin': 1, 'type': 1, 'createdAt': -1}")
+})
 public class Notification {
     @Id
     private String id;
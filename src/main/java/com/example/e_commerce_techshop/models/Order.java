@@ -1,7 +1,12 @@
 package com.example.e_commerce_techshop.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
@@ -15,6 +20,15 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "store_status_created_idx", def = "{'store.$id': 1, 'status': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "store_created_idx", def = "{'store.$id': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "buyer_status_created_idx", def = "{'buyer.$id': 1, 'status': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "buyer_created_idx", def = "{'buyer.$id': 1, 'createdAt': -1, '_id': -1}"),
+        // Job tự động hoàn tất đơn / hủy đơn chưa thanh toán
+        @CompoundIndex(name = "status_updated_idx", def = "{'status': 1, 'updatedAt': 1}"),
+        @CompoundIndex(name = "payment_status_method_created_idx", def = "{'paymentStatus': 1, 'status': 1, 'paymentMethod': 1, 'createdAt': 1}")
+})
 public class Order extends BaseEntity {
     @Id
     private String id;
@@ -81,6 +95,17 @@ public class Order extends BaseEntity {
     private String manualRefundNote; // Ghi chú hoàn tiền thủ công
     private LocalDateTime refundCompletedAt; // Thời điểm hoàn tiền thành công
 
+    @Transient
+    @JsonIgnore
+    private String rolledUpStatus; // Trạng thái đã được cộng vào daily_store_metrics (không lưu DB)
+
+    @JsonIgnore
+    @Indexed(name = "pending_scheduled_job_idx", sparse = true) // Chỉ bản ghi đang dở dang mới có field này
+    private String pendingScheduledJob; // Job định kỳ đã đổi trạng thái nhưng chưa chạy xong các bước sau
+
+    @JsonIgnore
+    private Long pendingScheduledJobToken; // Fencing token của lượt chạy đang giữ bản ghi
+
     public enum RefundStatus {
         PENDING, PROCESSING, COMPLETED, FAILED
     }
@@ -2,6 +2,7 @@ package com.example.e_commerce_techshop.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
@@ -11,6 +12,7 @@ import org.springframework.data.mongodb.core.mapping.DBRef;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndex(name = "order_idx", def = "{'order.$id': 1}")
 public class OrderItem extends BaseEntity {
     @Id
     private String id;
@@ -2,30 +2,40 @@ package com.example.e_commerce_techshop.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
 import java.util.List;
 import java.util.Map;
 
-@Document(collection = "product_variants")
+@Document(collection = "product_variants", language = "none")
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndex(name = "store_status_status_category_brand_idx",
+        def = "{'storeStatus': 1, 'status': 1, 'categoryName': 1, 'brandName': 1}")
 public class ProductVariant extends BaseEntity {
     @Id
     private String id;
 
+    @TextIndexed(weight = 3)
     private String name;
 
+    @TextIndexed
     private String categoryName;
 
+    @TextIndexed(weight = 2)
     private String brandName;
 
     private String storeId;
 
+    // Trạng thái của store (bản sao từ Store.status), cập nhật hàng loạt khi store đổi trạng thái
+    private String storeStatus;
+
     private Long price;
 
     private String description;
@@ -0,0 +1,44 @@
+package com.example.e_commerce_techshop.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Tổng hợp đánh giá của một biến thể / sản phẩm / shop, cập nhật bằng $inc khi tạo, sửa, xóa review.
+ * id = scope + ":" + targetId
+ */
+@Document(collection = "rating_summaries")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RatingSummary {
+    @Id
+    private String id;
+
+    private String scope; // VARIANT, PRODUCT, STORE
+
+    private String targetId;
+
+    private long count; // Tổng số đánh giá
+
+    private long sum; // Tổng số sao
+
+    private Map<String, Long> histogram; // "1".."5" -> số đánh giá
+
+    public enum Scope {
+        VARIANT, PRODUCT, STORE
+    }
+
+    public static String idOf(Scope scope, String targetId) {
+        return scope.name() + ":" + targetId;
+    }
+
+    public double getAverage() {
+        return count > 0 ? (double) sum / count : 0.0;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.e_commerce_techshop.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 
@@ -103,6 +106,14 @@ public class ReturnRequest extends BaseEntity {
     // Tên chủ tài khoản (cho hoàn tiền COD)
     private String bankAccountName;
 
+    // Job định kỳ đã đổi trạng thái nhưng chưa chạy xong các bước sau
+    @JsonIgnore
+    @Indexed(name = "pending_scheduled_job_idx", sparse = true) // Chỉ bản ghi đang dở dang mới có field này
+    private String pendingScheduledJob;
+
+    @JsonIgnore
+    private Long pendingScheduledJobToken; // Fencing token của lượt chạy đang giữ bản ghi
+
     /**
      * Các trạng thái của yêu cầu trả hàng:
      * - PENDING: Đang chờ store xem xét
@@ -3,6 +3,8 @@ package com.example.e_commerce_techshop.models;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -14,6 +16,13 @@ import lombok.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "variant_ref_created_idx", def = "{'productVariant.$id': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "product_created_idx", def = "{'productId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "store_created_idx", def = "{'storeId': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "order_variant_ref_idx", def = "{'order.$id': 1, 'productVariant.$id': 1}"),
+        @CompoundIndex(name = "user_ref_idx", def = "{'user.$id': 1}")
+})
 public class Review extends BaseEntity {
     @Id
     private String id;
@@ -32,4 +41,9 @@ public class Review extends BaseEntity {
 
     @DBRef
     private User user;
+
+    // Bản sao từ productVariant để phân trang / lọc review theo sản phẩm, shop bằng index
+    private String productId;
+
+    private String storeId;
 }
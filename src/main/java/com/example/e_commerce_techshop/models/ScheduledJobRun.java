@@ -0,0 +1,51 @@
+package com.example.e_commerce_techshop.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lịch sử một lần chạy job định kỳ (node nào chạy, fencing token, thời gian, số bản ghi xử lý)
+ */
+@Document(collection = "scheduled_job_runs")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "job_started_idx", def = "{'jobName': 1, 'startedAt': -1}"),
+        @CompoundIndex(name = "started_idx", def = "{'startedAt': -1}")
+})
+public class ScheduledJobRun {
+    @Id
+    private String id;
+
+    private String jobName;
+
+    private String nodeId;
+
+    private Long fencingToken;
+
+    private String status; // RUNNING, SUCCESS, FAILED
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    private Long durationMs;
+
+    private Integer successCount;
+
+    private Integer failedCount;
+
+    private String errorMessage;
+
+    public enum RunStatus {
+        RUNNING, SUCCESS, FAILED
+    }
+}
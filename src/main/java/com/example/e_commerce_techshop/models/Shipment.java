@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -21,6 +23,13 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@CompoundIndexes({
+        @CompoundIndex(name = "store_status_created_idx", def = "{'store.$id': 1, 'status': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "store_created_idx", def = "{'store.$id': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "order_return_idx", def = "{'order.$id': 1, 'isReturnShipment': 1}"),
+        @CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}"),
+        @CompoundIndex(name = "carrier_idx", def = "{'carrier': 1}")
+})
 public class Shipment extends BaseEntity {
     @Id
     private String id;
@@ -0,0 +1,74 @@
+package com.example.e_commerce_techshop.models.Static;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vị trí của phần tử cuối trang trước cho phân trang keyset, sắp xếp (field thời gian desc, _id desc),
+ * mặc định field thời gian là createdAt.
+ * Trang sau chỉ cần seek theo index thay vì skip qua toàn bộ các trang trước.
+ * Client nhận/gửi lại dạng chuỗi base64 (nextCursor).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeysetCursor {
+    private LocalDateTime timestamp;
+    private String id;
+
+    public static final String DEFAULT_FIELD = "createdAt";
+    public static final Sort SORT = sortBy(DEFAULT_FIELD);
+
+    public static Sort sortBy(String field) {
+        return Sort.by(Sort.Direction.DESC, field, "id");
+    }
+
+    public String encode() {
+        long millis = timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((millis + "_" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null nếu cursor rỗng (trang đầu)
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('_');
+            LocalDateTime timestamp = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(Long.parseLong(raw.substring(0, separator))), ZoneId.systemDefault());
+            return new KeysetCursor(timestamp, raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+    }
+
+    public Criteria afterCriteria() {
+        return afterCriteria(DEFAULT_FIELD);
+    }
+
+    /**
+     * Điều kiện "đứng sau cursor": field < timestamp hoặc (field = timestamp và _id < id)
+     */
+    public Criteria afterCriteria(String field) {
+        return new Criteria().orOperator(
+                Criteria.where(field).lt(timestamp),
+                new Criteria().andOperator(
+                        Criteria.where(field).is(timestamp),
+                        Criteria.where("_id").lt(id)));
+    }
+}
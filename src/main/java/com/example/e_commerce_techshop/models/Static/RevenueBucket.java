@@ -0,0 +1,21 @@
+package com.example.e_commerce_techshop.models.Static;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tổng doanh thu (đã cộng trên MongoDB) của một loại doanh thu trong một khoảng thời gian
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RevenueBucket {
+    private String revenueType;
+    private LocalDateTime bucketStart; // null nếu là tổng toàn bộ thời gian
+    private BigDecimal total;
+    private long count;
+}
@@ -0,0 +1,17 @@
+package com.example.e_commerce_techshop.models.Static;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng giữ hàng (biến thể + màu + số lượng) đã trừ stock thành công
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockReservation {
+    private String productVariantId;
+    private String colorId; // null nếu sản phẩm không có màu
+    private int quantity;
+}
@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AdminRevenueRepository extends MongoRepository<AdminRevenue, String> {
+public interface AdminRevenueRepository extends MongoRepository<AdminRevenue, String>, CustomAdminRevenueRepository {
     List<AdminRevenue> findByRevenueType(String revenueType);
 
     Page<AdminRevenue> findByRevenueType(String revenueType, Pageable pageable);
@@ -22,6 +22,8 @@ public interface AdminRevenueRepository extends MongoRepository<AdminRevenue, St
 
     Optional<AdminRevenue> findByOrderId(String orderId);
 
+    boolean existsByOrderIdAndRevenueType(String orderId, String revenueType);
+
     @Query("{ 'revenueType': 'SERVICE_FEE' }")
     List<AdminRevenue> findAllServiceFees();
 }
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface ChatMessageRepository extends MongoRepository<ChatMessage, String> {
+public interface ChatMessageRepository extends MongoRepository<ChatMessage, String>, CustomChatMessageRepository {
 
     // Get messages by conversation with pagination
     Page<ChatMessage> findByConversationIdOrderBySentAtDesc(String conversationId, Pageable pageable);
@@ -20,10 +20,6 @@ public interface ChatMessageRepository extends MongoRepository<ChatMessage, Stri
     @Query("{ 'conversationId': ?0, 'sentAt': { $gt: ?1 } }")
     List<ChatMessage> findByConversationIdAndSentAtAfter(String conversationId, LocalDateTime after);
 
-    // Count unread messages in conversation for a user
-    @Query(value = "{ 'conversationId': ?0, 'readByUserIds': { $nin: [?1] }, 'senderId': { $ne: ?1 } }", count = true)
-    Long countUnreadMessages(String conversationId, String userId);
-
     // Find messages by sender
     Page<ChatMessage> findBySenderIdOrderBySentAtDesc(String senderId, Pageable pageable);
 
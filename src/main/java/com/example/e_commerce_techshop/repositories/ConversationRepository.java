@@ -11,7 +11,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ConversationRepository extends MongoRepository<Conversation, String> {
+public interface ConversationRepository extends MongoRepository<Conversation, String>, CustomConversationRepository {
 
     // Find conversations by participant
     @Query("{ 'participantIds': ?0, 'status': { $ne: 'CLOSED' } }")
@@ -36,4 +36,12 @@ public interface ConversationRepository extends MongoRepository<Conversation, St
     // Count unread conversations for user
     @Query(value = "{ 'participantIds': ?0, 'unreadCounts': { $elemMatch: { 'userId': ?0, 'count': { $gt: 0 } } } }", count = true)
     Long countUnreadConversations(String userId);
+
+    // Id các conversation user còn tin chưa đọc (dựng lại bộ đếm trên Redis)
+    @Query(value = "{ 'participantIds': ?0, 'unreadCounts': { $elemMatch: { 'userId': ?0, 'count': { $gt: 0 } } } }", fields = "{ '_id': 1 }")
+    List<Conversation> findUnreadConversationIds(String userId);
+
+    // Chỉ lấy participantIds các conversation của user (người nhận thay đổi online / offline)
+    @Query(value = "{ 'participantIds': ?0 }", fields = "{ 'participantIds': 1 }")
+    List<Conversation> findParticipantsByParticipantId(String userId);
 }
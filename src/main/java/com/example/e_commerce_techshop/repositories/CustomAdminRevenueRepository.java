@@ -0,0 +1,17 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Static.RevenueBucket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface CustomAdminRevenueRepository {
+    // Tổng amount và số bản ghi theo từng revenueType
+    List<RevenueBucket> sumByRevenueType(List<String> revenueTypes);
+
+    // Tổng amount theo revenueType và mốc thời gian ($dateTrunc theo unit: day, week, month, year), tăng dần theo thời gian
+    List<RevenueBucket> sumByRevenueTypeAndPeriod(List<String> revenueTypes, String unit);
+
+    // Như trên nhưng chỉ các bản ghi có createdAt >= from (from = null -> toàn bộ)
+    List<RevenueBucket> sumByRevenueTypeAndPeriod(List<String> revenueTypes, String unit, LocalDateTime from);
+}
@@ -0,0 +1,105 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.AdminRevenue;
+import com.example.e_commerce_techshop.models.Static.RevenueBucket;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomAdminRevenueRepositoryImpl implements CustomAdminRevenueRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    // Ngày / mốc thống kê theo múi giờ kinh doanh (cùng cấu hình với Jackson), không phụ thuộc TZ của máy chủ
+    @Value("${spring.jackson.time-zone:Asia/Ho_Chi_Minh}")
+    private ZoneId zone;
+
+    @Override
+    public List<RevenueBucket> sumByRevenueType(List<String> revenueTypes) {
+        AggregationOperation group = context -> new Document("$group",
+                new Document("_id", "$revenueType")
+                        .append("total", sumAmount())
+                        .append("count", new Document("$sum", 1)));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("revenueType").in(revenueTypes)),
+                group
+        );
+
+        List<RevenueBucket> buckets = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, AdminRevenue.class, Document.class)) {
+            buckets.add(new RevenueBucket(doc.getString("_id"), null, toBigDecimal(doc.get("total")),
+                    ((Number) doc.get("count")).longValue()));
+        }
+        return buckets;
+    }
+
+    @Override
+    public List<RevenueBucket> sumByRevenueTypeAndPeriod(List<String> revenueTypes, String unit) {
+        return sumByRevenueTypeAndPeriod(revenueTypes, unit, null);
+    }
+
+    @Override
+    public List<RevenueBucket> sumByRevenueTypeAndPeriod(List<String> revenueTypes, String unit, LocalDateTime from) {
+        Document dateTrunc = new Document("$dateTrunc", new Document("date", "$createdAt")
+                .append("unit", unit)
+                .append("timezone", zone.getId()));
+
+        AggregationOperation group = context -> new Document("$group",
+                new Document("_id", new Document("revenueType", "$revenueType").append("bucket", dateTrunc))
+                        .append("total", sumAmount())
+                        .append("count", new Document("$sum", 1)));
+        AggregationOperation sort = context -> new Document("$sort", new Document("_id.bucket", 1));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(
+                        Criteria.where("revenueType").in(revenueTypes),
+                        from != null ? Criteria.where("createdAt").gte(from) : Criteria.where("createdAt").ne(null),
+                        Criteria.where("amount").ne(null)
+                )),
+                group,
+                sort
+        );
+
+        List<RevenueBucket> buckets = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, AdminRevenue.class, Document.class)) {
+            Document id = (Document) doc.get("_id");
+            Date bucket = id.getDate("bucket");
+            buckets.add(new RevenueBucket(id.getString("revenueType"),
+                    LocalDateTime.ofInstant(bucket.toInstant(), zone),
+                    toBigDecimal(doc.get("total")),
+                    ((Number) doc.get("count")).longValue()));
+        }
+        return buckets;
+    }
+
+    // amount (BigDecimal) được lưu dạng string -> đổi sang Decimal128 trước khi cộng để không mất độ chính xác
+    private Document sumAmount() {
+        return new Document("$sum", new Document("$toDecimal", "$amount"));
+    }
+
+    private BigDecimal toBigDecimal(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return BigDecimal.ZERO;
+    }
+}
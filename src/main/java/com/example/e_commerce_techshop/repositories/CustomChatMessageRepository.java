@@ -0,0 +1,11 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+
+import java.util.List;
+
+public interface CustomChatMessageRepository {
+    // Phân trang keyset theo (conversationId, sentAt desc, _id desc); cursor null = trang đầu
+    List<ChatMessage> findConversationMessagesAfter(String conversationId, KeysetCursor cursor, int limit);
+}
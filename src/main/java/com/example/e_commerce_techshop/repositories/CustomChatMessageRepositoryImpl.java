@@ -0,0 +1,30 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomChatMessageRepositoryImpl implements CustomChatMessageRepository {
+
+    private static final String SORT_FIELD = "sentAt";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<ChatMessage> findConversationMessagesAfter(String conversationId, KeysetCursor cursor, int limit) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId));
+        if (cursor != null) {
+            query.addCriteria(cursor.afterCriteria(SORT_FIELD));
+        }
+        query.with(KeysetCursor.sortBy(SORT_FIELD)).limit(limit);
+        return mongoTemplate.find(query, ChatMessage.class);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.e_commerce_techshop.repositories;
+
+import java.time.LocalDateTime;
+
+public interface CustomConversationRepository {
+
+    /**
+     * Đánh dấu đã đọc cả conversation: unreadCount = 0 và dời mốc đã đọc, trong một lệnh update
+     */
+    void markRead(String conversationId, String userId, String lastReadMessageId, LocalDateTime readAt);
+
+    /**
+     * Dời mốc đã đọc tới tin nhắn (chỉ khi tin mới hơn mốc hiện tại và user là người tham gia conversation)
+     */
+    void advanceReadMarker(String conversationId, String userId, String messageId, LocalDateTime sentAt);
+}
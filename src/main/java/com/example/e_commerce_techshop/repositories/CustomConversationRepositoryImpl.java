@@ -0,0 +1,61 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Conversation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomConversationRepositoryImpl implements CustomConversationRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void markRead(String conversationId, String userId, String lastReadMessageId, LocalDateTime readAt) {
+        Update update = new Update()
+                .set("unreadCounts.$[u].count", 0)
+                .set("readMarkers.$[r].lastReadMessageId", lastReadMessageId)
+                .set("readMarkers.$[r].lastReadAt", readAt)
+                .filterArray(Criteria.where("u.userId").is(userId))
+                .filterArray(Criteria.where("r.userId").is(userId));
+        Query query = new Query(Criteria.where("_id").is(conversationId).and("readMarkers.userId").is(userId));
+        if (mongoTemplate.updateFirst(query, update, Conversation.class).getMatchedCount() > 0) {
+            return;
+        }
+
+        // Conversation tạo trước khi có readMarkers: thêm mốc cho user
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(conversationId).and("readMarkers.userId").ne(userId)),
+                new Update()
+                        .set("unreadCounts.$[u].count", 0)
+                        .push("readMarkers", new Conversation.ReadMarker(userId, lastReadMessageId, readAt))
+                        .filterArray(Criteria.where("u.userId").is(userId)),
+                Conversation.class);
+    }
+
+    @Override
+    public void advanceReadMarker(String conversationId, String userId, String messageId, LocalDateTime sentAt) {
+        Query query = new Query(Criteria.where("_id").is(conversationId).and("participantIds").is(userId)
+                .and("readMarkers").elemMatch(Criteria.where("userId").is(userId).and("lastReadAt").not().gte(sentAt)));
+        Update update = new Update()
+                .set("readMarkers.$[r].lastReadMessageId", messageId)
+                .set("readMarkers.$[r].lastReadAt", sentAt)
+                .filterArray(Criteria.where("r.userId").is(userId));
+        if (mongoTemplate.updateFirst(query, update, Conversation.class).getMatchedCount() > 0) {
+            return;
+        }
+
+        // Chỉ người tham gia mới có mốc đã đọc
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(conversationId).and("participantIds").is(userId)
+                        .and("readMarkers.userId").ne(userId)),
+                new Update().push("readMarkers", new Conversation.ReadMarker(userId, messageId, sentAt)),
+                Conversation.class);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Notification;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+
+import java.util.List;
+
+public interface CustomNotificationRepository {
+    // Phân trang keyset theo (user, isRead, createdAt desc, _id desc); isRead/cursor null = không lọc / trang đầu
+    List<Notification> findUserNotificationsAfter(String userId, Boolean isRead, KeysetCursor cursor, int limit);
+
+    // Phân trang keyset theo (store, isRead, createdAt desc, _id desc)
+    List<Notification> findStoreNotificationsAfter(String storeId, Boolean isRead, KeysetCursor cursor, int limit);
+}
@@ -0,0 +1,41 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Notification;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomNotificationRepositoryImpl implements CustomNotificationRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Notification> findUserNotificationsAfter(String userId, Boolean isRead, KeysetCursor cursor, int limit) {
+        return findAfter(Criteria.where("user.$id").is(new ObjectId(userId)), isRead, cursor, limit);
+    }
+
+    @Override
+    public List<Notification> findStoreNotificationsAfter(String storeId, Boolean isRead, KeysetCursor cursor, int limit) {
+        return findAfter(Criteria.where("store.$id").is(new ObjectId(storeId)), isRead, cursor, limit);
+    }
+
+    private List<Notification> findAfter(Criteria criteria, Boolean isRead, KeysetCursor cursor, int limit) {
+        if (isRead != null) {
+            criteria.and("isRead").is(isRead);
+        }
+        Query query = new Query(criteria);
+        if (cursor != null) {
+            query.addCriteria(cursor.afterCriteria());
+        }
+        query.with(KeysetCursor.SORT).limit(limit);
+        return mongoTemplate.find(query, Notification.class);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+
+import java.util.List;
+
+public interface CustomOrderRepository {
+    // Phân trang keyset theo (store, status, createdAt desc, _id desc); cursor null = trang đầu
+    List<Order> findStoreOrdersAfter(String storeId, String status, KeysetCursor cursor, int limit);
+
+    // Phân trang keyset theo (buyer, status, createdAt desc, _id desc)
+    List<Order> findBuyerOrdersAfter(String buyerId, String status, KeysetCursor cursor, int limit);
+}
@@ -0,0 +1,41 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomOrderRepositoryImpl implements CustomOrderRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Order> findStoreOrdersAfter(String storeId, String status, KeysetCursor cursor, int limit) {
+        return findAfter(Criteria.where("store.$id").is(new ObjectId(storeId)), status, cursor, limit);
+    }
+
+    @Override
+    public List<Order> findBuyerOrdersAfter(String buyerId, String status, KeysetCursor cursor, int limit) {
+        return findAfter(Criteria.where("buyer.$id").is(new ObjectId(buyerId)), status, cursor, limit);
+    }
+
+    private List<Order> findAfter(Criteria criteria, String status, KeysetCursor cursor, int limit) {
+        if (status != null && !status.isBlank()) {
+            criteria.and("status").is(status);
+        }
+        Query query = new Query(criteria);
+        if (cursor != null) {
+            query.addCriteria(cursor.afterCriteria());
+        }
+        query.with(KeysetCursor.SORT).limit(limit);
+        return mongoTemplate.find(query, Order.class);
+    }
+}
@@ -4,9 +4,25 @@ import com.example.e_commerce_techshop.models.ProductVariant;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface CustomProductVariantRepository {
     Page<ProductVariant> searchByNameExcludingBannedStores(String name, String status, Pageable pageable);
+    // Tìm kiếm qua text index ($text), dùng khi search index trong bộ nhớ chưa sẵn sàng
+    Page<ProductVariant> searchByTextExcludingBannedStores(String text, String status, Pageable pageable);
     Page<ProductVariant> findByStatusExcludingBannedStores(String status, Pageable pageable);
     Page<ProductVariant> findByCategoryNameAndStatusExcludingBannedStores(String categoryName, String status, Pageable pageable);
     Page<ProductVariant> findByCategoryNameAndBrandNameAndStatusExcludingBannedStores(String categoryName, String brandName, String status, Pageable pageable);
+
+    // Cập nhật storeStatus cho toàn bộ variant của store (updateMulti), trả về số variant bị thay đổi
+    long updateStoreStatus(String storeId, String storeStatus);
+
+    // Danh sách categoryName (distinct) của các variant thuộc store
+    List<String> findDistinctCategoryNamesByStoreId(String storeId);
+
+    // Trừ stock nguyên tử, chỉ thành công khi còn đủ hàng (stock >= quantity)
+    boolean decreaseStockIfAvailable(String productVariantId, String colorId, int quantity);
+
+    // Cộng lại stock nguyên tử (hủy đơn, từ chối đơn, hoàn tác giữ hàng)
+    boolean increaseStock(String productVariantId, String colorId, int quantity);
 }
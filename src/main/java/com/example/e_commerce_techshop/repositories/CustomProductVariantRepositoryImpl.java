@@ -3,18 +3,21 @@ package com.example.e_commerce_techshop.repositories;
 import com.example.e_commerce_techshop.models.ProductVariant;
 import com.example.e_commerce_techshop.models.Store;
 import lombok.RequiredArgsConstructor;
+import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
-import org.springframework.data.mongodb.core.aggregation.LookupOperation;
-import org.springframework.data.mongodb.core.aggregation.MatchOperation;
-import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
@@ -25,275 +28,147 @@ public class CustomProductVariantRepositoryImpl implements CustomProductVariantR
 
     @Override
     public Page<ProductVariant> searchByNameExcludingBannedStores(String name, String status, Pageable pageable) {
-        // Lookup Product
-        LookupOperation lookupProduct = LookupOperation.newLookup()
-                .from("products")
-                .localField("product.$id")
-                .foreignField("_id")
-                .as("productData");
-
-        // Unwind productData
-        UnwindOperation unwindProduct = Aggregation.unwind("productData");
-
-        // Lookup Store from Product
-        LookupOperation lookupStore = LookupOperation.newLookup()
-                .from("stores")
-                .localField("productData.store.$id")
-                .foreignField("_id")
-                .as("storeData");
-
-        // Unwind storeData
-        UnwindOperation unwindStore = Aggregation.unwind("storeData");
-
-        // Match conditions: name regex, status, and store not banned
-        MatchOperation matchOperation = Aggregation.match(
-                new Criteria().andOperator(
-                        Criteria.where("name").regex(name, "i"),
-                        Criteria.where("status").is(status),
-                        Criteria.where("storeData.status").ne(Store.StoreStatus.BANNED.name())
-                )
+        // Match conditions: name regex, status
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("name").regex(name, "i"),
+                Criteria.where("status").is(status)
         );
+        return findPageExcludingBannedStores(criteria, pageable);
+    }
 
-        // Count total elements
-        Aggregation countAggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.count().as("total")
-        );
+    @Override
+    public Page<ProductVariant> searchByTextExcludingBannedStores(String text, String status, Pageable pageable) {
+        Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text))
+                .sortByScore()
+                .addCriteria(Criteria.where("status").is(status))
+                .addCriteria(Criteria.where("storeStatus").ne(Store.StoreStatus.BANNED.name()));
 
-        AggregationResults<org.bson.Document> countResults = mongoTemplate.aggregate(
-                countAggregation, "product_variants", org.bson.Document.class
-        );
+        long total = mongoTemplate.count(query, ProductVariant.class);
 
-        long total = 0;
-        if (countResults.getMappedResults().size() > 0) {
-            total = countResults.getMappedResults().get(0).getInteger("total", 0);
+        // Không truyền sort -> sắp xếp theo textScore
+        if (pageable.getSort().isSorted()) {
+            query.with(pageable.getSort());
         }
+        query.skip(pageable.getOffset()).limit(pageable.getPageSize());
 
-        // Get paginated results
-        Aggregation aggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.sort(pageable.getSort()),
-                Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
-                Aggregation.limit(pageable.getPageSize())
-        );
-
-        AggregationResults<ProductVariant> results = mongoTemplate.aggregate(
-                aggregation, "product_variants", ProductVariant.class
-        );
-
-        List<ProductVariant> variants = results.getMappedResults();
-
-        return new PageImpl<>(variants, pageable, total);
+        return new PageImpl<>(mongoTemplate.find(query, ProductVariant.class), pageable, total);
     }
+
     @Override
     public Page<ProductVariant> findByStatusExcludingBannedStores(String status, Pageable pageable) {
-        // Lookup Product
-        LookupOperation lookupProduct = LookupOperation.newLookup()
-                .from("products")
-                .localField("product.$id")
-                .foreignField("_id")
-                .as("productData");
-
-        // Unwind productData
-        UnwindOperation unwindProduct = Aggregation.unwind("productData");
-
-        // Lookup Store from Product
-        LookupOperation lookupStore = LookupOperation.newLookup()
-                .from("stores")
-                .localField("productData.store.$id")
-                .foreignField("_id")
-                .as("storeData");
-
-        // Unwind storeData
-        UnwindOperation unwindStore = Aggregation.unwind("storeData");
-
-        // Match conditions: status and store not banned
-        MatchOperation matchOperation = Aggregation.match(
-                new Criteria().andOperator(
-                        Criteria.where("status").is(status),
-                        Criteria.where("storeData.status").ne(Store.StoreStatus.BANNED.name())
-                )
-        );
-
-        // Count total elements
-        Aggregation countAggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.count().as("total")
-        );
-
-        AggregationResults<org.bson.Document> countResults = mongoTemplate.aggregate(
-                countAggregation, "product_variants", org.bson.Document.class
-        );
-
-        long total = 0;
-        if (countResults.getMappedResults().size() > 0) {
-            total = countResults.getMappedResults().get(0).getInteger("total", 0);
-        }
-
-        // Get paginated results
-        Aggregation aggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
-                Aggregation.limit(pageable.getPageSize())
-        );
-
-        AggregationResults<ProductVariant> results = mongoTemplate.aggregate(
-                aggregation, "product_variants", ProductVariant.class
-        );
-
-        return new PageImpl<>(results.getMappedResults(), pageable, total);
+        // Match conditions: status
+        Criteria criteria = Criteria.where("status").is(status);
+        return findPageExcludingBannedStores(criteria, pageable);
     }
 
     @Override
     public Page<ProductVariant> findByCategoryNameAndStatusExcludingBannedStores(String categoryName, String status, Pageable pageable) {
-        // Lookup Product
-        LookupOperation lookupProduct = LookupOperation.newLookup()
-                .from("products")
-                .localField("product.$id")
-                .foreignField("_id")
-                .as("productData");
-
-        // Unwind productData
-        UnwindOperation unwindProduct = Aggregation.unwind("productData");
-
-        // Lookup Store from Product
-        LookupOperation lookupStore = LookupOperation.newLookup()
-                .from("stores")
-                .localField("productData.store.$id")
-                .foreignField("_id")
-                .as("storeData");
-
-        // Unwind storeData
-        UnwindOperation unwindStore = Aggregation.unwind("storeData");
-
-        // Match conditions: categoryName, status and store not banned
-        MatchOperation matchOperation = Aggregation.match(
-                new Criteria().andOperator(
-                        Criteria.where("categoryName").is(categoryName),
-                        Criteria.where("status").is(status),
-                        Criteria.where("storeData.status").ne(Store.StoreStatus.BANNED.name())
-                )
-        );
-
-        // Count total elements
-        Aggregation countAggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.count().as("total")
+        // Match conditions: categoryName, status
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("categoryName").is(categoryName),
+                Criteria.where("status").is(status)
         );
+        return findPageExcludingBannedStores(criteria, pageable);
+    }
 
-        AggregationResults<org.bson.Document> countResults = mongoTemplate.aggregate(
-                countAggregation, "product_variants", org.bson.Document.class
+    @Override
+    public Page<ProductVariant> findByCategoryNameAndBrandNameAndStatusExcludingBannedStores(String categoryName, String brandName, String status, Pageable pageable) {
+        // Match conditions: categoryName, brandName, status
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("categoryName").is(categoryName),
+                Criteria.where("brandName").is(brandName),
+                Criteria.where("status").is(status)
         );
+        return findPageExcludingBannedStores(criteria, pageable);
+    }
 
-        long total = 0;
-        if (countResults.getMappedResults().size() > 0) {
-            total = countResults.getMappedResults().get(0).getInteger("total", 0);
+    /**
+     * Lọc theo các điều kiện của variant ngay từ đầu pipeline, loại store bị khóa
+     * qua field storeStatus (index storeStatus + status + categoryName + brandName),
+     * rồi lấy total và trang hiện tại trong cùng một lần aggregate ($facet).
+     * $sort đặt trước $facet để chạy trên index ngay sau $match (sort bên trong $facet luôn sort trong bộ nhớ).
+     */
+    private Page<ProductVariant> findPageExcludingBannedStores(Criteria variantCriteria, Pageable pageable) {
+        Criteria criteria = new Criteria().andOperator(
+                Criteria.where("storeStatus").ne(Store.StoreStatus.BANNED.name()),
+                variantCriteria
+        );
+
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(criteria));
+        if (pageable.getSort().isSorted()) {
+            operations.add(Aggregation.sort(pageable.getSort()));
         }
+        operations.add(Aggregation.facet(Aggregation.count().as("total")).as("total")
+                .and(Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
+                        Aggregation.limit(pageable.getPageSize())).as("content"));
 
-        // Get paginated results
-        Aggregation aggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
-                Aggregation.limit(pageable.getPageSize())
-        );
+        Aggregation aggregation = Aggregation.newAggregation(operations);
 
-        AggregationResults<ProductVariant> results = mongoTemplate.aggregate(
-                aggregation, "product_variants", ProductVariant.class
-        );
+        Document result = mongoTemplate.aggregate(aggregation, "product_variants", Document.class)
+                .getUniqueMappedResult();
+
+        long total = 0;
+        List<ProductVariant> variants = new ArrayList<>();
+        if (result != null) {
+            List<Document> totalDocs = result.getList("total", Document.class);
+            if (totalDocs != null && !totalDocs.isEmpty()) {
+                total = ((Number) totalDocs.get(0).get("total")).longValue();
+            }
+            List<Document> contentDocs = result.getList("content", Document.class);
+            if (contentDocs != null) {
+                for (Document doc : contentDocs) {
+                    variants.add(mongoTemplate.getConverter().read(ProductVariant.class, doc));
+                }
+            }
+        }
 
-        return new PageImpl<>(results.getMappedResults(), pageable, total);
+        return new PageImpl<>(variants, pageable, total);
     }
 
     @Override
-    public Page<ProductVariant> findByCategoryNameAndBrandNameAndStatusExcludingBannedStores(String categoryName, String brandName, String status, Pageable pageable) {
-        // Lookup Product
-        LookupOperation lookupProduct = LookupOperation.newLookup()
-                .from("products")
-                .localField("product.$id")
-                .foreignField("_id")
-                .as("productData");
-
-        // Unwind productData
-        UnwindOperation unwindProduct = Aggregation.unwind("productData");
-
-        // Lookup Store from Product
-        LookupOperation lookupStore = LookupOperation.newLookup()
-                .from("stores")
-                .localField("productData.store.$id")
-                .foreignField("_id")
-                .as("storeData");
-
-        // Unwind storeData
-        UnwindOperation unwindStore = Aggregation.unwind("storeData");
-
-        // Match conditions: categoryName, brandName, status and store not banned
-        MatchOperation matchOperation = Aggregation.match(
-                new Criteria().andOperator(
-                        Criteria.where("categoryName").is(categoryName),
-                        Criteria.where("brandName").is(brandName),
-                        Criteria.where("status").is(status),
-                        Criteria.where("storeData.status").ne(Store.StoreStatus.BANNED.name())
-                )
-        );
-
-        // Count total elements
-        Aggregation countAggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.count().as("total")
-        );
+    public long updateStoreStatus(String storeId, String storeStatus) {
+        Query query = new Query(Criteria.where("storeId").is(storeId));
+        Update update = new Update().set("storeStatus", storeStatus);
+        return mongoTemplate.updateMulti(query, update, ProductVariant.class).getModifiedCount();
+    }
 
-        AggregationResults<org.bson.Document> countResults = mongoTemplate.aggregate(
-                countAggregation, "product_variants", org.bson.Document.class
-        );
+    @Override
+    public List<String> findDistinctCategoryNamesByStoreId(String storeId) {
+        Query query = new Query(Criteria.where("storeId").is(storeId));
+        return mongoTemplate.findDistinct(query, "categoryName", ProductVariant.class, String.class);
+    }
 
-        long total = 0;
-        if (countResults.getMappedResults().size() > 0) {
-            total = countResults.getMappedResults().get(0).getInteger("total", 0);
+    @Override
+    public boolean decreaseStockIfAvailable(String productVariantId, String colorId, int quantity) {
+        Criteria criteria = Criteria.where("_id").is(productVariantId);
+        Update update = new Update().inc("stock", -quantity);
+
+        if (colorId != null && !colorId.trim().isEmpty()) {
+            // Điều kiện stock nằm trong phần tử màu, tổng stock giảm cùng lúc trong cùng một lệnh
+            criteria.and("colors").elemMatch(Criteria.where("_id").is(colorId).and("stock").gte(quantity));
+            update.inc("colors.$[c].stock", -quantity)
+                    .filterArray(Criteria.where("c._id").is(colorId));
+        } else {
+            criteria.and("stock").gte(quantity);
         }
 
-        // Get paginated results
-        Aggregation aggregation = Aggregation.newAggregation(
-                lookupProduct,
-                unwindProduct,
-                lookupStore,
-                unwindStore,
-                matchOperation,
-                Aggregation.skip((long) pageable.getPageNumber() * pageable.getPageSize()),
-                Aggregation.limit(pageable.getPageSize())
-        );
+        return mongoTemplate.updateFirst(new Query(criteria), update, ProductVariant.class)
+                .getModifiedCount() > 0;
+    }
 
-        AggregationResults<ProductVariant> results = mongoTemplate.aggregate(
-                aggregation, "product_variants", ProductVariant.class
-        );
+    @Override
+    public boolean increaseStock(String productVariantId, String colorId, int quantity) {
+        Criteria criteria = Criteria.where("_id").is(productVariantId);
+        Update update = new Update().inc("stock", quantity);
+
+        if (colorId != null && !colorId.trim().isEmpty()) {
+            criteria.and("colors._id").is(colorId);
+            update.inc("colors.$[c].stock", quantity)
+                    .filterArray(Criteria.where("c._id").is(colorId));
+        }
 
-        return new PageImpl<>(results.getMappedResults(), pageable, total);
+        return mongoTemplate.updateFirst(new Query(criteria), update, ProductVariant.class)
+                .getModifiedCount() > 0;
     }
 }
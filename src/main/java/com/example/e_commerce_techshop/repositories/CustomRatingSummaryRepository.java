@@ -0,0 +1,8 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.RatingSummary;
+
+public interface CustomRatingSummaryRepository {
+    // Cộng/trừ một đánh giá (delta = 1 hoặc -1) vào tổng hợp, tạo mới nếu chưa có
+    void incrementRating(RatingSummary.Scope scope, String targetId, int rating, int delta);
+}
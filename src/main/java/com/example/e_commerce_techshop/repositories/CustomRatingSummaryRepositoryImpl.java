@@ -0,0 +1,28 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.RatingSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomRatingSummaryRepositoryImpl implements CustomRatingSummaryRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void incrementRating(RatingSummary.Scope scope, String targetId, int rating, int delta) {
+        Query query = new Query(Criteria.where("_id").is(RatingSummary.idOf(scope, targetId)));
+        Update update = new Update()
+                .setOnInsert("scope", scope.name())
+                .setOnInsert("targetId", targetId)
+                .inc("count", (long) delta)
+                .inc("sum", (long) rating * delta)
+                .inc("histogram." + rating, (long) delta);
+        mongoTemplate.upsert(query, update, RatingSummary.class);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Shipment;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+
+import java.util.List;
+
+public interface CustomShipmentRepository {
+    // Phân trang keyset theo (store, status, createdAt desc, _id desc); cursor null = trang đầu
+    List<Shipment> findStoreShipmentsAfter(String storeId, String status, KeysetCursor cursor, int limit);
+}
@@ -0,0 +1,33 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.Shipment;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CustomShipmentRepositoryImpl implements CustomShipmentRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Shipment> findStoreShipmentsAfter(String storeId, String status, KeysetCursor cursor, int limit) {
+        Criteria criteria = Criteria.where("store.$id").is(new ObjectId(storeId));
+        if (status != null && !status.isBlank()) {
+            criteria.and("status").is(status);
+        }
+        Query query = new Query(criteria);
+        if (cursor != null) {
+            query.addCriteria(cursor.afterCriteria());
+        }
+        query.with(KeysetCursor.SORT).limit(limit);
+        return mongoTemplate.find(query, Shipment.class);
+    }
+}
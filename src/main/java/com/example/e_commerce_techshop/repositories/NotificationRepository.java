@@ -10,7 +10,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface NotificationRepository extends MongoRepository<Notification, String> {
+public interface NotificationRepository extends MongoRepository<Notification, String>, CustomNotificationRepository {
     // ===== USER NOTIFICATIONS =====
     List<Notification> findByUserIdAndIsRead(String userId, boolean isRead);
 
@@ -12,7 +12,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderRepository extends MongoRepository<Order, String> {
+public interface OrderRepository extends MongoRepository<Order, String>, CustomOrderRepository {
 
     Page<Order> findByBuyerIdAndStatus(String buyerId, String status, Pageable pageable);
 
@@ -32,6 +32,11 @@ public interface OrderRepository extends MongoRepository<Order, String> {
 
     @Query("{ 'store.$id': { $oid: ?0 }, 'status': ?1, 'createdAt': { $gte: ?2, $lte: ?3 } }")
     List<Order> findByStoreIdAndStatusAndDateRange(String storeId, String status, LocalDateTime start, LocalDateTime end);
+
+    List<Order> findByStatus(String status);
+
+    @Query("{ 'status': ?0, 'createdAt': { $gte: ?1, $lte: ?2 } }")
+    List<Order> findByStatusAndDateRange(String status, LocalDateTime start, LocalDateTime end);
     
     Page<Order> findByStoreId(String storeId, Pageable pageable);
     
@@ -0,0 +1,9 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.RatingSummary;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RatingSummaryRepository extends MongoRepository<RatingSummary, String>, CustomRatingSummaryRepository {
+}
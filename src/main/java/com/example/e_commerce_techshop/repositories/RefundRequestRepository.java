@@ -21,6 +21,9 @@ public interface RefundRequestRepository extends MongoRepository<RefundRequest,
     // Tìm theo order ID
     @Query("{ 'order.$id': { $oid: ?0 } }")
     Optional<RefundRequest> findByOrderId(String orderId);
+
+    @Query(value = "{ 'order.$id': { $oid: ?0 } }", exists = true)
+    boolean existsByOrderId(String orderId);
     
     // Đếm theo trạng thái
     long countByStatus(String status);
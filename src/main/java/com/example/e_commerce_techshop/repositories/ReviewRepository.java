@@ -4,42 +4,26 @@ import com.example.e_commerce_techshop.models.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface ReviewRepository extends MongoRepository<Review, String> {
-    
-    @Query("{ 'order.store.$id': ?0 }")
-    List<Review> findByOrder_StoreId(String storeId);
 
-    @Query("{ 'productVariant.product.$id': ?0 }")
-    List<Review> findByProductId(String productId);
+    List<Review> findByStoreId(String storeId);
+
+    List<Review> findByStoreIdAndRating(String storeId, Integer rating);
+
+    List<Review> findByStoreIdOrderByCreatedAtDesc(String storeId, Pageable pageable);
+
+    Page<Review> findByProductId(String productId, Pageable pageable);
 
-    List<Review> findByProductVariantId(String productVariantId);
-    
     Page<Review> findByProductVariantId(String productVariantId, Pageable pageable);
 
+    boolean existsByOrderIdAndProductVariantId(String orderId, String productVariantId);
+
     List<Review> findByUserId(String userId);
 
     List<Review> findByRating(Integer rating);
-
-    @Query(value = "{ 'productVariant.product.store.$id': ?0 }", count = true)
-    Long countByStoreId(String storeId);
-
-    @Query(value = "{ 'order.store.$id': ?0 }", fields = "{ 'rating': 1 }")
-    List<Review> findReviewsForAverageByStoreId(String storeId);
-    
-    default Double getAverageRatingByStoreId(String storeId) {
-        List<Review> reviews = findReviewsForAverageByStoreId(storeId);
-        if (reviews.isEmpty()) {
-            return 0.0;
-        }
-        return reviews.stream()
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(0.0);
-    }
-}
\ No newline at end of file
+}
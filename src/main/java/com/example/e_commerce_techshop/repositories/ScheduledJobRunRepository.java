@@ -0,0 +1,15 @@
+package com.example.e_commerce_techshop.repositories;
+
+import com.example.e_commerce_techshop.models.ScheduledJobRun;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ScheduledJobRunRepository extends MongoRepository<ScheduledJobRun, String> {
+
+    Page<ScheduledJobRun> findByJobNameOrderByStartedAtDesc(String jobName, Pageable pageable);
+
+    Page<ScheduledJobRun> findAllByOrderByStartedAtDesc(Pageable pageable);
+}
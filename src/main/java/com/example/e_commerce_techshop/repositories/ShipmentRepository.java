@@ -13,13 +13,13 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ShipmentRepository extends MongoRepository<Shipment, String> {
+public interface ShipmentRepository extends MongoRepository<Shipment, String>, CustomShipmentRepository {
 
     Optional<Shipment> findByOrderId(String orderId);
 
     Optional<Shipment> findByOrderIdAndIsReturnShipment(String orderId, boolean isReturnShipment);
 
-    List<Shipment> findByStoreId(String storeId);
+    Page<Shipment> findByStoreId(String storeId, Pageable pageable);
 
     List<Shipment> findByStatus(String status);
     Page<Shipment> findByStatus(String status, Pageable pageable);
@@ -30,7 +30,7 @@ public interface ShipmentRepository extends MongoRepository<Shipment, String> {
     @Query("{ 'status': ?0, 'createdAt': { $lt: ?1 } }")
     List<Shipment> findByStatusAndCreatedAtBefore(String status, LocalDateTime dateTime);
 
-    List<Shipment> findByStoreIdAndStatus(String storeId, String status);
+    Page<Shipment> findByStoreIdAndStatus(String storeId, String status, Pageable pageable);
 
     @Query(value = "{ 'store.$id': ObjectId(?0) }", count = true)
     long countByStoreId(String storeId);
@@ -16,6 +16,7 @@ public interface StoreRepository extends MongoRepository<Store, String> {
     Optional<Store> findByIdAndOwnerId(String id, String ownerId);
 
     Page<Store> findByStatus(String status, Pageable pageable);
+    List<Store> findByStatus(String status);
     Page<Store> findByOwnerId(String ownerId, Pageable pageable);
 
     long countByStatus(String status);
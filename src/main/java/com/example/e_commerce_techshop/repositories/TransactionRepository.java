@@ -10,4 +10,5 @@ import java.util.List;
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
     Page<Transaction> findByWalletIdOrderByCreatedAtDesc(String walletId, Pageable pageable);
     List<Transaction> findByWalletIdOrderByCreatedAtDesc(String walletId);
+    boolean existsByOrderIdAndType(String orderId, Transaction.TransactionType type);
 }
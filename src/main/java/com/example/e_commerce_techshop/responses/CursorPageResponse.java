@@ -0,0 +1,46 @@
+package com.example.e_commerce_techshop.responses;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Một trang của phân trang keyset: gửi lại nextCursor để lấy trang tiếp theo
+ */
+@Getter
+@Setter
+@Builder
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor; // null nếu là trang cuối
+    private boolean hasNext;
+
+    /**
+     * @param items kết quả truy vấn với limit = size + 1 (phần tử dư chỉ để biết còn trang sau)
+     */
+    public static <T> CursorPageResponse<T> of(List<T> items, int size, Function<T, KeysetCursor> cursorOf) {
+        boolean hasNext = items.size() > size;
+        List<T> content = hasNext ? items.subList(0, size) : items;
+        return CursorPageResponse.<T>builder()
+                .content(content)
+                .size(size)
+                .nextCursor(hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    public <R> CursorPageResponse<R> map(Function<T, R> mapper) {
+        return CursorPageResponse.<R>builder()
+                .content(content.stream().map(mapper).toList())
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.e_commerce_techshop.responses;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class ProductSuggestionResponse {
+    private String text;
+    private String type; // PRODUCT, BRAND, CATEGORY
+    private String productVariantId; // Biến thể bán chạy nhất (chỉ với PRODUCT)
+}
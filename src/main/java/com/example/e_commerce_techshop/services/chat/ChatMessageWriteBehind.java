@@ -0,0 +1,323 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Conversation;
+import com.mongodb.bulk.BulkWriteError;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ghi tin nhắn chat theo lô ở nền (write-behind): sendMessage chỉ đưa tin vào buffer vòng có giới hạn
+ * rồi broadcast ngay, một thread nền gom các tin đang chờ và ghi bằng BulkOperations:
+ * insert chat_messages, rồi mỗi conversation một lệnh update (lastMessage + cộng unreadCounts cho tin sau mốc đã đọc).
+ *
+ * Đảm bảo:
+ * - Buffer đầy: người gửi chờ tối đa offer-timeout, quá hạn thì tự ghi đồng bộ (không bỏ tin);
+ *   ghi đồng bộ lỗi thì sendMessage ném lỗi trước khi broadcast.
+ * - Lỗi MongoDB: thử lại MAX_ATTEMPTS lần (backoff), chỉ thử lại các lệnh bị lỗi; insert trùng id bị bỏ qua,
+ *   update conversation mang id lô (APPLIED_BATCHES_FIELD) và chỉ khớp khi lô chưa được áp dụng, nên lần thử
+ *   không rõ kết quả (timeout, đổi primary) được thử lại mà không $inc trùng. Hết lượt thử thì ghi log id các tin bị mất.
+ * - Tắt ứng dụng bình thường: ghi hết buffer trước khi dừng. Process bị kill: mất các tin còn trong buffer
+ *   (thường chỉ là lô đang ghi).
+ * - Tin vừa gửi có thể chưa đọc được qua REST trong khoảng thời gian một lô (vài chục ms).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMessageWriteBehind {
+
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long POLL_MILLIS = 200;
+    private static final int DUPLICATE_KEY = 11000;
+    static final String APPLIED_BATCHES_FIELD = "appliedWriteBatches";
+    // Số id lô gần nhất giữ lại trên conversation, đủ lớn so với số lô có thể đang thử lại cùng lúc
+    private static final int APPLIED_BATCHES_KEPT = 32;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${chat.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${chat.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.write-behind.offer-timeout-ms:2000}")
+    private long offerTimeoutMillis;
+
+    private BlockingQueue<PendingMessage> buffer;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    record PendingMessage(ChatMessage message, List<String> participantIds) {
+    }
+
+    record ConversationUpdate(Query query, UpdateDefinition update) {
+    }
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        flusher = Thread.ofPlatform().daemon().name("chat-write-behind").start(this::flushLoop);
+    }
+
+    /**
+     * Đưa tin (đã có id và sentAt) vào hàng đợi ghi; buffer đầy quá offer-timeout thì ghi đồng bộ.
+     */
+    public void enqueue(ChatMessage message, List<String> participantIds) {
+        PendingMessage pending = new PendingMessage(message, participantIds);
+        boolean accepted = false;
+        if (running) {
+            try {
+                accepted = buffer.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!accepted) {
+            synchronousWrites.incrementAndGet();
+            write(List.of(pending));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buffered", buffer.size());
+        stats.put("capacity", capacity);
+        stats.put("written", written.get());
+        stats.put("synchronousWrites", synchronousWrites.get());
+        stats.put("lost", lost.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        // Phần còn lại (flusher bị kẹt hoặc tin vào sau khi flusher dừng)
+        List<PendingMessage> rest = new ArrayList<>();
+        buffer.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeOrLog(rest);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingMessage first = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                writeOrLog(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeOrLog(List<PendingMessage> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            lost.addAndGet(batch.size());
+            log.error("[ChatWriteBehind] Không ghi được {} tin nhắn {}: {}", batch.size(),
+                    batch.stream().map(pending -> pending.message().getId()).toList(), e.getMessage());
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        List<ChatMessage> messages = batch.stream().map(PendingMessage::message).toList();
+        withRetry(messages, this::insertMessages);
+        withRetry(conversationUpdates(batch), this::updateConversations);
+        written.addAndGet(messages.size());
+    }
+
+    /**
+     * Mỗi conversation một update (pipeline): tin cuối cùng của lô làm lastMessage,
+     * mỗi người tham gia được cộng số tin trong lô không phải do họ gửi và gửi sau mốc đã đọc (readMarkers.lastReadAt)
+     * của họ, nên tin còn nằm trong buffer lúc người nhận bấm "đã đọc cả conversation" không làm unreadCounts tăng lại.
+     */
+    List<ConversationUpdate> conversationUpdates(List<PendingMessage> batch) {
+        Map<String, List<PendingMessage>> byConversation = batch.stream().collect(Collectors.groupingBy(
+                pending -> pending.message().getConversationId(), LinkedHashMap::new, Collectors.toList()));
+
+        List<ConversationUpdate> updates = new ArrayList<>();
+        byConversation.forEach((conversationId, pendings) -> {
+            PendingMessage last = pendings.get(pendings.size() - 1);
+            String batchId = new ObjectId().toHexString();
+
+            List<Document> branches = new ArrayList<>();
+            for (String participantId : Set.copyOf(last.participantIds())) {
+                List<Date> sentAts = pendings.stream()
+                        .filter(pending -> !participantId.equals(pending.message().getSenderId()))
+                        .map(pending -> toDate(pending.message().getSentAt()))
+                        .toList();
+                if (!sentAts.isEmpty()) {
+                    branches.add(new Document("case", new Document("$eq", List.of("$$u.userId", participantId)))
+                            .append("then", unreadAfterMarker(participantId, sentAts)));
+                }
+            }
+            Object increment = branches.isEmpty() ? 0
+                    : new Document("$switch", new Document("branches", branches).append("default", 0));
+
+            Document set = new Document()
+                    .append("lastMessageId", literal(last.message().getId()))
+                    .append("lastMessage", literal(last.message().getContent()))
+                    .append("lastMessageTime", literal(toDate(last.message().getSentAt())))
+                    .append("updatedAt", literal(toDate(LocalDateTime.now())))
+                    .append("unreadCounts", new Document("$map", new Document()
+                            .append("input", new Document("$ifNull", Arrays.asList("$unreadCounts", List.of())))
+                            .append("as", "u")
+                            .append("in", new Document("$mergeObjects", List.of("$$u",
+                                    new Document("count", new Document("$add", List.of(
+                                            new Document("$ifNull", List.of("$$u.count", 0)), increment))))))))
+                    .append(APPLIED_BATCHES_FIELD, new Document("$slice", List.of(
+                            new Document("$concatArrays", List.of(
+                                    new Document("$ifNull", Arrays.asList("$" + APPLIED_BATCHES_FIELD, List.of())),
+                                    List.of(batchId))),
+                            -APPLIED_BATCHES_KEPT)));
+            AggregationOperation setStage = context -> new Document("$set", set);
+
+            // Lô đã áp dụng ở lần thử trước thì không khớp nữa
+            updates.add(new ConversationUpdate(
+                    new Query(Criteria.where("_id").is(conversationId).and(APPLIED_BATCHES_FIELD).ne(batchId)),
+                    AggregationUpdate.from(List.of(setStage))));
+        });
+        return updates;
+    }
+
+    // Số tin (theo sentAt) gửi sau mốc đã đọc của participant; chưa có mốc thì tính tất cả
+    private static Document unreadAfterMarker(String participantId, List<Date> sentAts) {
+        Document marker = new Document("$first", new Document("$map", new Document()
+                .append("input", new Document("$filter", new Document()
+                        .append("input", new Document("$ifNull", Arrays.asList("$readMarkers", List.of())))
+                        .append("as", "r")
+                        .append("cond", new Document("$eq", List.of("$$r.userId", participantId)))))
+                .append("as", "r")
+                .append("in", "$$r.lastReadAt")));
+        return new Document("$size", new Document("$filter", new Document()
+                .append("input", literal(sentAts))
+                .append("as", "s")
+                .append("cond", new Document("$gt", Arrays.asList("$$s",
+                        new Document("$ifNull", Arrays.asList(marker, null)))))));
+    }
+
+    // Giá trị do người dùng nhập (nội dung tin) có thể bắt đầu bằng '$', không được hiểu là đường dẫn field
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
+    }
+
+    // Cùng cách quy đổi múi giờ với converter LocalDateTime mặc định của Spring Data
+    private static Date toDate(LocalDateTime value) {
+        return Date.from(value.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * @return các tin insert lỗi (trùng id = đã ghi ở lần thử trước, không tính là lỗi)
+     */
+    private List<ChatMessage> insertMessages(List<ChatMessage> messages) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                    .insert(messages)
+                    .execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream()
+                    .filter(error -> error.getCode() != DUPLICATE_KEY)
+                    .map(error -> messages.get(error.getIndex()))
+                    .toList();
+        }
+    }
+
+    List<ConversationUpdate> updateConversations(List<ConversationUpdate> updates) {
+        if (updates.isEmpty()) {
+            return List.of();
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        updates.forEach(conversationUpdate -> operations.updateOne(conversationUpdate.query(),
+                conversationUpdate.update()));
+        try {
+            operations.execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream()
+                    .map(BulkWriteError::getIndex)
+                    .map(updates::get)
+                    .toList();
+        }
+    }
+
+    // Chỉ thử lại các phần tử còn lỗi; lỗi không thuộc bulk (mất kết nối...) thì thử lại cả danh sách còn lại
+    // (an toàn vì insert trùng id bị bỏ qua và update conversation không áp dụng lại lô đã ghi)
+    private <T> void withRetry(List<T> items, UnaryOperator<List<T>> attempt) {
+        List<T> remaining = items;
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int i = 1; !remaining.isEmpty(); i++) {
+            RuntimeException failure;
+            try {
+                remaining = attempt.apply(remaining);
+                if (remaining.isEmpty()) {
+                    return;
+                }
+                failure = new IllegalStateException("Còn " + remaining.size() + " lệnh ghi lỗi");
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            if (i >= MAX_ATTEMPTS) {
+                throw failure;
+            }
+            log.warn("[ChatWriteBehind] Ghi lỗi (lần {}), thử lại sau {} ms: {}", i, backoff, failure.getMessage());
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+            backoff *= 2;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.Product;
+import com.example.e_commerce_techshop.models.Store;
+import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.repositories.ProductRepository;
+import com.example.e_commerce_techshop.repositories.StoreRepository;
+import com.example.e_commerce_techshop.repositories.user.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cache ngắn hạn tên / avatar của người chat, tên / logo cửa hàng và thẻ sản phẩm trong tin nhắn,
+ * để mỗi tin nhắn / conversation không phải đọc user, store, product từ MongoDB.
+ * Các hàm nhận nhiều id chỉ đọc phần chưa có trong cache bằng một lệnh findAllById.
+ * Đổi tên / avatar / giá sẽ hiện ra sau tối đa CACHE_TTL.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatProfileCache {
+
+    private static final Duration CACHE_TTL = Duration.ofSeconds(60);
+    private static final long MAX_ENTRIES = 50_000;
+
+    private final UserRepository userRepository;
+    private final StoreRepository storeRepository;
+    private final ProductRepository productRepository;
+
+    private final Cache<String, Optional<UserProfile>> users = newCache();
+    private final Cache<String, Optional<StoreProfile>> stores = newCache();
+    private final Cache<String, Optional<ProductCard>> products = newCache();
+
+    // principalName: tên principal của kết nối STOMP (email), dùng làm {user} trong /user/{user}/queue/...
+    public record UserProfile(String id, String fullName, String avatar, String principalName) {
+
+        static UserProfile of(User user) {
+            return new UserProfile(user.getId(), user.getFullName(), user.getAvatar(), user.getUsername());
+        }
+    }
+
+    public record StoreProfile(String id, String name, String logoUrl) {
+
+        static StoreProfile of(Store store) {
+            return new StoreProfile(store.getId(), store.getName(), store.getLogoUrl());
+        }
+    }
+
+    public record ProductCard(String id, String name, Long price) {
+
+        static ProductCard of(Product product) {
+            return new ProductCard(product.getId(), product.getName(), product.getPrice());
+        }
+    }
+
+    public Optional<UserProfile> user(String userId) {
+        return users.get(userId, id -> userRepository.findById(id).map(UserProfile::of));
+    }
+
+    /**
+     * @return profile theo id; id không tồn tại thì không có trong map
+     */
+    public Map<String, UserProfile> users(Collection<String> userIds) {
+        return getAll(users, userIds, ids -> userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, UserProfile::of)));
+    }
+
+    public Map<String, StoreProfile> stores(Collection<String> storeIds) {
+        return getAll(stores, storeIds, ids -> storeRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Store::getId, StoreProfile::of)));
+    }
+
+    public Map<String, ProductCard> products(Collection<String> productIds) {
+        return getAll(products, productIds, ids -> productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, ProductCard::of)));
+    }
+
+    private static <V> Cache<String, Optional<V>> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(CACHE_TTL)
+                .build();
+    }
+
+    // Id không tìm thấy cũng được cache (Optional.empty) để không đọc lại trong CACHE_TTL
+    private static <V> Map<String, V> getAll(Cache<String, Optional<V>> cache, Collection<String> ids,
+            Function<Set<String>, Map<String, V>> loader) {
+        Set<String> keys = ids.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Optional<V>> cached = cache.getAll(keys, missing -> {
+            Map<String, V> found = loader.apply(Set.copyOf(missing));
+            Map<String, Optional<V>> loaded = new HashMap<>();
+            missing.forEach(id -> loaded.put(id, Optional.ofNullable(found.get(id))));
+            return loaded;
+        });
+
+        Map<String, V> result = new HashMap<>();
+        cached.forEach((id, value) -> value.ifPresent(profile -> result.put(id, profile)));
+        return result;
+    }
+}
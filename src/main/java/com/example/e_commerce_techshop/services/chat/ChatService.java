@@ -3,22 +3,32 @@ package com.example.e_commerce_techshop.services.chat;
 import com.example.e_commerce_techshop.dtos.chat.*;
 import com.example.e_commerce_techshop.exceptions.DataNotFoundException;
 import com.example.e_commerce_techshop.models.*;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
 import com.example.e_commerce_techshop.repositories.ChatMessageRepository;
 import com.example.e_commerce_techshop.repositories.ConversationRepository;
 import com.example.e_commerce_techshop.repositories.user.UserRepository;
 import com.example.e_commerce_techshop.repositories.StoreRepository;
 import com.example.e_commerce_techshop.repositories.ProductRepository;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -26,12 +36,26 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatService implements IChatService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final Duration PARTICIPANTS_CACHE_TTL = Duration.ofMinutes(10);
+    private static final long PARTICIPANTS_CACHE_SIZE = 50_000;
+
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final UserRepository userRepository;
     private final StoreRepository storeRepository;
     private final ProductRepository productRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatProfileCache chatProfileCache;
+    private final ChatMessageWriteBehind chatMessageWriteBehind;
+    private final UnreadConversationCounter unreadConversationCounter;
+    private final IPresenceService presenceService;
+
+    // Người tham gia không đổi sau khi tạo conversation: gửi tin không cần đọc conversation từ MongoDB
+    private final Cache<String, List<String>> participantsCache = Caffeine.newBuilder()
+            .maximumSize(PARTICIPANTS_CACHE_SIZE)
+            .expireAfterWrite(PARTICIPANTS_CACHE_TTL)
+            .build();
 
     @Override
     @Transactional
@@ -87,6 +111,9 @@ public class ChatService implements IChatService {
                 .productId(request.getProductId())
                 .productName(product != null ? product.getName() : null)
                 .unreadCounts(unreadCounts)
+                .readMarkers(participantIds.stream()
+                        .map(id -> new Conversation.ReadMarker(id, null, null))
+                        .collect(Collectors.toList()))
                 .status(Conversation.ConversationStatus.ACTIVE)
                 .build();
 
@@ -120,7 +147,8 @@ public class ChatService implements IChatService {
     @Override
     public Page<ConversationDTO> getUserConversations(String userId, Pageable pageable) {
         Page<Conversation> conversations = conversationRepository.findByParticipantId(userId, pageable);
-        return conversations.map(conv -> convertToDTO(conv, userId));
+        return new PageImpl<>(convertToDTOs(conversations.getContent(), userId), pageable,
+                conversations.getTotalElements());
     }
 
     @Override
@@ -164,28 +192,36 @@ public class ChatService implements IChatService {
 
     @Override
     public Long getUnreadConversationsCount(String userId) {
-        return conversationRepository.countUnreadConversations(userId);
+        return unreadConversationCounter.count(userId);
     }
 
+    /**
+     * Broadcast ngay, lưu tin nhắn và cập nhật conversation theo lô ở nền (ChatMessageWriteBehind)
+     */
     @Override
-    @Transactional
     public ChatMessageDTO sendMessage(SendMessageRequest request, String senderId) {
-        Conversation conversation = conversationRepository.findById(request.getConversationId())
-                .orElseThrow(() -> new DataNotFoundException("Conversation not found"));
+        List<String> participantIds = participantsCache.get(request.getConversationId(), id -> conversationRepository
+                .findById(id)
+                .map(Conversation::getParticipantIds)
+                .orElse(null));
+        if (participantIds == null) {
+            throw new DataNotFoundException("Conversation not found");
+        }
 
-        if (!conversation.getParticipantIds().contains(senderId)) {
+        if (!participantIds.contains(senderId)) {
             throw new IllegalArgumentException("User is not a participant of this conversation");
         }
 
-        User sender = userRepository.findById(senderId)
+        ChatProfileCache.UserProfile sender = chatProfileCache.user(senderId)
                 .orElseThrow(() -> new DataNotFoundException("User not found"));
 
-        // Create message
+        // Create message (id tạo sẵn để broadcast trước khi ghi DB)
         ChatMessage message = ChatMessage.builder()
+                .id(new ObjectId().toHexString())
                 .conversationId(request.getConversationId())
                 .senderId(senderId)
-                .senderName(sender.getFullName())
-                .senderAvatar(sender.getAvatar())
+                .senderName(sender.fullName())
+                .senderAvatar(sender.avatar())
                 .content(request.getContent())
                 .type(request.getType())
                 .attachments(request.getAttachments())
@@ -195,32 +231,21 @@ public class ChatService implements IChatService {
                 .sentAt(LocalDateTime.now())
                 .build();
 
-        message = chatMessageRepository.save(message);
-
-        // Update conversation
-        conversation.setLastMessage(request.getContent());
-        conversation.setLastMessageTime(message.getSentAt());
-
-        // Update unread counts for other participants
-        List<Conversation.UnreadCount> updatedCounts = conversation.getUnreadCounts().stream()
-                .map(count -> {
-                    if (!count.getUserId().equals(senderId)) {
-                        count.setCount(count.getCount() + 1);
-                    }
-                    return count;
-                })
-                .collect(Collectors.toList());
-        conversation.setUnreadCounts(updatedCounts);
-
-        conversationRepository.save(conversation);
+        // Lưu tin + lastMessage + unreadCounts ($inc) ở nền; buffer đầy thì ghi đồng bộ tại đây
+        chatMessageWriteBehind.enqueue(message, participantIds);
+        participantIds.stream()
+                .filter(participantId -> !participantId.equals(senderId))
+                .forEach(participantId -> unreadConversationCounter.markUnread(participantId,
+                        request.getConversationId()));
 
         // Send via WebSocket to all participants
         ChatMessageDTO messageDTO = convertMessageToDTO(message);
 
         // Broadcast to all participants via user queue
-        conversation.getParticipantIds().forEach(participantId -> {
+        // Phiên STOMP (và sổ phiên của relay giữa các node) đăng ký theo tên principal, không theo userId
+        chatProfileCache.users(participantIds).values().forEach(participant -> {
             messagingTemplate.convertAndSendToUser(
-                    participantId,
+                    participant.principalName(),
                     "/queue/messages",
                     messageDTO);
         });
@@ -246,35 +271,68 @@ public class ChatService implements IChatService {
         Page<ChatMessage> messages = chatMessageRepository.findByConversationIdOrderBySentAtDesc(
                 conversationId, pageable);
 
-        return messages.map(this::convertMessageToDTO);
+        Map<String, ChatProfileCache.ProductCard> productCards = productCardsOf(messages.getContent());
+        return messages.map(message -> convertMessageToDTO(message, conversation, productCards));
     }
 
     @Override
-    @Transactional
+    public CursorPageResponse<ChatMessageDTO> getConversationMessagesByCursor(String conversationId,
+            String currentUserId, String cursor, int size) {
+        Conversation conversation = conversationRepository.findById(conversationId)
+                .orElseThrow(() -> new DataNotFoundException("Conversation not found"));
+
+        if (!conversation.getParticipantIds().contains(currentUserId)) {
+            throw new IllegalArgumentException("User is not a participant of this conversation");
+        }
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<ChatMessage> messages = chatMessageRepository.findConversationMessagesAfter(conversationId,
+                KeysetCursor.decode(cursor), pageSize + 1);
+
+        Map<String, ChatProfileCache.ProductCard> productCards = productCardsOf(messages);
+        return CursorPageResponse.of(messages, pageSize, m -> new KeysetCursor(m.getSentAt(), m.getId()))
+                .map(message -> convertMessageToDTO(message, conversation, productCards));
+    }
+
+    /**
+     * Dời mốc đã đọc của user tới tin nhắn này (không ghi vào từng tin nhắn)
+     */
+    @Override
     public void markMessageAsRead(String messageId, String userId) {
         ChatMessage message = chatMessageRepository.findById(messageId)
                 .orElseThrow(() -> new DataNotFoundException("Message not found"));
 
-        if (!message.getReadByUserIds().contains(userId)) {
-            message.getReadByUserIds().add(userId);
-            message.setStatus(ChatMessage.MessageStatus.READ);
-            chatMessageRepository.save(message);
-
-            // Send read receipt via WebSocket
-            MessageReadReceiptRequest receipt = MessageReadReceiptRequest.builder()
-                    .conversationId(message.getConversationId())
-                    .messageId(messageId)
-                    .userId(userId)
-                    .build();
+        if (userId.equals(message.getSenderId())) {
+            return;
+        }
 
-            messagingTemplate.convertAndSend(
-                    "/topic/conversation/" + message.getConversationId() + "/read",
-                    receipt);
+        List<String> participantIds = participantsCache.get(message.getConversationId(), id -> conversationRepository
+                .findById(id)
+                .map(Conversation::getParticipantIds)
+                .orElse(null));
+        if (participantIds == null || !participantIds.contains(userId)) {
+            throw new IllegalArgumentException("User is not a participant of this conversation");
         }
+
+        conversationRepository.advanceReadMarker(message.getConversationId(), userId, messageId, message.getSentAt());
+
+        // Send read receipt via WebSocket
+        MessageReadReceiptRequest receipt = MessageReadReceiptRequest.builder()
+                .conversationId(message.getConversationId())
+                .messageId(messageId)
+                .userId(userId)
+                .build();
+
+        messagingTemplate.convertAndSend(
+                "/topic/conversation/" + message.getConversationId() + "/read",
+                receipt);
     }
 
+    /**
+     * Một lệnh update: unreadCount = 0 và mốc đã đọc = thời điểm hiện tại, không phụ thuộc số tin trong conversation.
+     * Tin gửi trước mốc nhưng còn trong buffer write-behind sẽ không được cộng lại vào unreadCount khi ghi xuống.
+     */
     @Override
-    @Transactional
     public void markConversationAsRead(String conversationId, String userId) {
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new DataNotFoundException("Conversation not found"));
@@ -283,31 +341,8 @@ public class ChatService implements IChatService {
             throw new IllegalArgumentException("User is not a participant of this conversation");
         }
 
-        // Reset unread count for this user
-        List<Conversation.UnreadCount> updatedCounts = conversation.getUnreadCounts().stream()
-                .map(count -> {
-                    if (count.getUserId().equals(userId)) {
-                        count.setCount(0);
-                    }
-                    return count;
-                })
-                .collect(Collectors.toList());
-        conversation.setUnreadCounts(updatedCounts);
-        conversationRepository.save(conversation);
-
-        // Mark all unread messages as read
-        List<ChatMessage> unreadMessages = chatMessageRepository.findByConversationId(conversationId).stream()
-                .filter(msg -> !msg.getReadByUserIds().contains(userId))
-                .collect(Collectors.toList());
-
-        unreadMessages.forEach(msg -> {
-            msg.getReadByUserIds().add(userId);
-            msg.setStatus(ChatMessage.MessageStatus.READ);
-        });
-
-        if (!unreadMessages.isEmpty()) {
-            chatMessageRepository.saveAll(unreadMessages);
-        }
+        conversationRepository.markRead(conversationId, userId, conversation.getLastMessageId(), LocalDateTime.now());
+        unreadConversationCounter.markRead(userId, conversationId);
     }
 
     @Override
@@ -329,32 +364,52 @@ public class ChatService implements IChatService {
     }
 
     private ConversationDTO convertToDTO(Conversation conversation, String currentUserId) {
+        return convertToDTOs(List.of(conversation), currentUserId).get(0);
+    }
+
+    /**
+     * Đọc user / store của cả trang bằng một lệnh findAllById mỗi loại (qua ChatProfileCache)
+     * và trạng thái online bằng một lượt đọc Redis rồi mới dựng DTO
+     */
+    private List<ConversationDTO> convertToDTOs(List<Conversation> conversations, String currentUserId) {
+        List<String> participantIds = conversations.stream()
+                .flatMap(conversation -> conversation.getParticipantIds().stream())
+                .toList();
+        Map<String, ChatProfileCache.UserProfile> users = chatProfileCache.users(participantIds);
+        Map<String, UserPresenceDTO> presence = presenceService.getPresence(participantIds);
+        Map<String, ChatProfileCache.StoreProfile> stores = chatProfileCache.stores(conversations.stream()
+                .map(Conversation::getStoreId)
+                .toList());
+        return conversations.stream()
+                .map(conversation -> convertToDTO(conversation, currentUserId, users, stores, presence))
+                .toList();
+    }
+
+    private ConversationDTO convertToDTO(Conversation conversation, String currentUserId,
+            Map<String, ChatProfileCache.UserProfile> users, Map<String, ChatProfileCache.StoreProfile> stores,
+            Map<String, UserPresenceDTO> presence) {
         // Get participant info
         List<ConversationDTO.ParticipantInfo> participants = conversation.getParticipantIds().stream()
-                .map(id -> {
-                    User user = userRepository.findById(id).orElse(null);
-                    if (user != null) {
-                        return ConversationDTO.ParticipantInfo.builder()
-                                .userId(user.getId())
-                                .userName(user.getFullName())
-                                .avatar(user.getAvatar())
-                                .online(false) // TODO: implement online status tracking
-                                .build();
-                    }
-                    return null;
-                })
-                .filter(p -> p != null)
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(user -> ConversationDTO.ParticipantInfo.builder()
+                        .userId(user.id())
+                        .userName(user.fullName())
+                        .avatar(user.avatar())
+                        .online(presence.containsKey(user.id())
+                                && Boolean.TRUE.equals(presence.get(user.id()).getOnline()))
+                        .build())
                 .collect(Collectors.toList());
 
         // Get store info if applicable
         String storeName = null;
         String storeAvatar = null;
-        if (conversation.getStoreId() != null) {
-            Store store = storeRepository.findById(conversation.getStoreId()).orElse(null);
-            if (store != null) {
-                storeName = store.getName();
-                storeAvatar = store.getLogoUrl();
-            }
+        ChatProfileCache.StoreProfile store = conversation.getStoreId() != null
+                ? stores.get(conversation.getStoreId())
+                : null;
+        if (store != null) {
+            storeName = store.name();
+            storeAvatar = store.logoUrl();
         }
 
         // Get unread count for current user
@@ -381,22 +436,57 @@ public class ChatService implements IChatService {
                 .build();
     }
 
+    // Đã đọc = người gửi + những người có mốc đã đọc không sớm hơn thời điểm gửi
+    private ChatMessageDTO convertMessageToDTO(ChatMessage message, Conversation conversation,
+            Map<String, ChatProfileCache.ProductCard> productCards) {
+        ChatMessageDTO dto = convertMessageToDTO(message, productCards);
+        if (conversation.getReadMarkers() == null || message.getSentAt() == null) {
+            return dto;
+        }
+
+        List<String> readByUserIds = new ArrayList<>(
+                message.getReadByUserIds() != null ? message.getReadByUserIds() : List.of());
+        conversation.getReadMarkers().stream()
+                .filter(marker -> marker.getLastReadAt() != null
+                        && !marker.getLastReadAt().isBefore(message.getSentAt()))
+                .map(Conversation.ReadMarker::getUserId)
+                .filter(id -> !readByUserIds.contains(id))
+                .forEach(readByUserIds::add);
+        dto.setReadByUserIds(readByUserIds);
+
+        boolean readByOthers = readByUserIds.stream().anyMatch(id -> !id.equals(message.getSenderId()));
+        if (readByOthers && message.getStatus() != ChatMessage.MessageStatus.DELETED) {
+            dto.setStatus(ChatMessage.MessageStatus.READ);
+        }
+        return dto;
+    }
+
     private ChatMessageDTO convertMessageToDTO(ChatMessage message) {
+        return convertMessageToDTO(message, productCardsOf(List.of(message)));
+    }
+
+    // Thẻ sản phẩm của các tin PRODUCT_LINK (content là product id), đọc một lần cho cả trang
+    private Map<String, ChatProfileCache.ProductCard> productCardsOf(Collection<ChatMessage> messages) {
+        return chatProfileCache.products(messages.stream()
+                .filter(message -> message.getType() == ChatMessage.MessageType.PRODUCT_LINK)
+                .map(ChatMessage::getContent)
+                .toList());
+    }
+
+    private ChatMessageDTO convertMessageToDTO(ChatMessage message,
+            Map<String, ChatProfileCache.ProductCard> productCards) {
         ChatMessageDTO.ProductInfo productInfo = null;
 
         // If message is product link type, get product info
         if (message.getType() == ChatMessage.MessageType.PRODUCT_LINK && message.getContent() != null) {
-            // Content might contain product ID
-            Product product = productRepository.findById(message.getContent()).orElse(null);
+            ChatProfileCache.ProductCard product = productCards.get(message.getContent());
             if (product != null) {
-                // Get image from product variant
-                String imageUrl = null;
                 // Product doesn't have direct images field, would need to get from variants
                 productInfo = ChatMessageDTO.ProductInfo.builder()
-                        .productId(product.getId())
-                        .productName(product.getName())
-                        .imageUrl(imageUrl)
-                        .price(product.getPrice().doubleValue())
+                        .productId(product.id())
+                        .productName(product.name())
+                        .imageUrl(null)
+                        .price(product.price() != null ? product.price().doubleValue() : null)
                         .build();
             }
         }
@@ -1,6 +1,7 @@
 package com.example.e_commerce_techshop.services.chat;
 
 import com.example.e_commerce_techshop.dtos.chat.*;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -29,6 +30,10 @@ public interface IChatService {
     
     /** Lấy tin nhắn trong cuộc trò chuyện */
     Page<ChatMessageDTO> getConversationMessages(String conversationId, String currentUserId, Pageable pageable);
+
+    /** Lấy tin nhắn trong cuộc trò chuyện theo cursor (mới nhất trước, không đếm tổng) */
+    CursorPageResponse<ChatMessageDTO> getConversationMessagesByCursor(String conversationId, String currentUserId,
+            String cursor, int size);
     
     /** Đánh dấu tin nhắn đã đọc */
     void markMessageAsRead(String messageId, String userId);
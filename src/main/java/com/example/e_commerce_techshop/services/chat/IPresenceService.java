@@ -0,0 +1,19 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.example.e_commerce_techshop.dtos.chat.UserPresenceDTO;
+
+public interface IPresenceService {
+
+    /**
+     * Trạng thái online của nhiều user trong một lượt đọc Redis; id không có kết nối nào thì online = false
+     */
+    Map<String, UserPresenceDTO> getPresence(Collection<String> userIds);
+
+    /**
+     * Heartbeat từ client (/app/chat.userPresence): gia hạn trạng thái online của user đang kết nối tới node này
+     */
+    void heartbeat(String userId);
+}
@@ -0,0 +1,395 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+import com.example.e_commerce_techshop.dtos.chat.UserPresenceDTO;
+import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.repositories.ConversationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trạng thái online theo kết nối STOMP thật, không theo những gì client tự báo.
+ * - Mỗi node giữ map userId -> số phiên của các kết nối tới node đó (connect / disconnect).
+ * - User có phiên trên node thì node giữ một lease trong presence:nodes:{userId} (sorted set nodeId -> hạn, giờ Redis)
+ *   và ghi presence:online:{userId} (giá trị = tên principal) với TTL, gia hạn mỗi refresh-interval bằng một pipeline.
+ *   Client mất mạng được phát hiện nhờ heartbeat STOMP của broker (đóng phiên -> disconnect).
+ * - Offline chỉ khi không còn lease nào còn hạn, kiểm tra và xóa trong cùng một script (OFFLINE_SCRIPT), nên connect
+ *   đồng thời trên node khác không bị xóa mất. Node chết không gia hạn lease; presence:leases (userId -> hạn lease
+ *   muộn nhất) được quét mỗi sweep-interval để vẫn ghi last-seen và gửi thay đổi offline cho user của node đó.
+ * - Thay đổi online / offline được gom theo user và gửi tối đa một lần mỗi fan-out-interval,
+ *   chỉ tới những user đang online có chung conversation (/user/queue/presence).
+ * Redis lỗi: truy vấn chỉ dựa trên phiên của node này.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceService implements IPresenceService {
+
+    private static final String ONLINE_PREFIX = "presence:online:";
+    private static final String LAST_SEEN_PREFIX = "presence:last-seen:";
+    private static final String NODES_PREFIX = "presence:nodes:";
+    private static final String LEASES_KEY = "presence:leases";
+    private static final int SWEEP_BATCH = 500;
+    private static final Duration LAST_SEEN_TTL = Duration.ofDays(30);
+    private static final Duration CONTACTS_CACHE_TTL = Duration.ofMinutes(1);
+    private static final long CONTACTS_CACHE_SIZE = 50_000;
+    private static final String PRESENCE_QUEUE = "/queue/presence";
+
+    private static final String REDIS_NOW = """
+            local t = redis.call('time')
+            local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)
+            """;
+
+    // KEYS: nodes, online, leases; ARGV: nodeId, principal, ttl (ms), userId. Trả về 1 nếu user vừa chuyển sang online
+    private static final String LEASE_LUA = REDIS_NOW + """
+            local expiresAt = now + tonumber(ARGV[3])
+            redis.call('zremrangebyscore', KEYS[1], '-inf', now)
+            redis.call('zadd', KEYS[1], expiresAt, ARGV[1])
+            redis.call('pexpire', KEYS[1], ARGV[3])
+            redis.call('zadd', KEYS[3], expiresAt, ARGV[4])
+            local first = redis.call('exists', KEYS[2]) == 0
+            redis.call('set', KEYS[2], ARGV[2], 'PX', ARGV[3])
+            if first then return 1 end
+            return 0
+            """;
+    private static final RedisScript<Long> LEASE_SCRIPT = new DefaultRedisScript<>(LEASE_LUA, Long.class);
+
+    // KEYS: nodes, online, leases, last-seen; ARGV: nodeId (rỗng khi quét lease hết hạn), userId, last-seen, TTL last-seen (ms).
+    // Trả về 1 nếu user chuyển sang offline (không còn node nào giữ lease còn hạn)
+    private static final RedisScript<Long> OFFLINE_SCRIPT = new DefaultRedisScript<>(REDIS_NOW + """
+            if ARGV[1] == '' then
+                if not redis.call('zscore', KEYS[3], ARGV[2]) then return 0 end
+            else
+                redis.call('zrem', KEYS[1], ARGV[1])
+            end
+            redis.call('zremrangebyscore', KEYS[1], '-inf', now)
+            local latest = redis.call('zrange', KEYS[1], -1, -1, 'WITHSCORES')
+            if #latest > 0 then
+                redis.call('zadd', KEYS[3], latest[2], ARGV[2])
+                return 0
+            end
+            redis.call('zrem', KEYS[3], ARGV[2])
+            redis.call('del', KEYS[1], KEYS[2])
+            redis.call('set', KEYS[4], ARGV[3], 'PX', ARGV[4])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ConversationRepository conversationRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final NodeIdentity nodeIdentity;
+
+    @Value("${chat.presence.ttl:90s}")
+    private Duration ttl;
+
+    // userId -> phiên trên node này
+    private final Map<String, LocalPresence> localUsers = new ConcurrentHashMap<>();
+    // sessionId -> userId
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>();
+    // userId -> trạng thái mới nhất chưa gửi
+    private final Map<String, Boolean> pendingChanges = new ConcurrentHashMap<>();
+
+    // Những người có chung conversation với user (người nhận thay đổi presence của user)
+    private final Cache<String, Set<String>> contactsCache = Caffeine.newBuilder()
+            .maximumSize(CONTACTS_CACHE_SIZE)
+            .expireAfterWrite(CONTACTS_CACHE_TTL)
+            .build();
+
+    private record LocalPresence(String principalName, int sessions) {
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        String userId = userIdOf(event.getUser());
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        sessionUsers.put(sessionId, userId);
+        LocalPresence presence = localUsers.merge(userId, new LocalPresence(event.getUser().getName(), 1),
+                (current, added) -> new LocalPresence(current.principalName(), current.sessions() + 1));
+        if (presence.sessions() == 1) {
+            markOnline(userId, presence.principalName());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String userId = sessionUsers.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        LocalPresence presence = localUsers.computeIfPresent(userId, (id, current) -> current.sessions() > 1
+                ? new LocalPresence(current.principalName(), current.sessions() - 1)
+                : null);
+        if (presence == null && event.getUser() != null) {
+            markOfflineIfNoOtherNode(userId);
+        }
+    }
+
+    @Override
+    public Map<String, UserPresenceDTO> getPresence(Collection<String> userIds) {
+        List<String> ids = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        Map<String, UserPresenceDTO> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        List<String> online;
+        List<String> lastSeen;
+        try {
+            online = stringRedisTemplate.opsForValue().multiGet(ids.stream().map(id -> ONLINE_PREFIX + id).toList());
+            lastSeen = stringRedisTemplate.opsForValue().multiGet(ids.stream().map(id -> LAST_SEEN_PREFIX + id).toList());
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi Redis khi đọc trạng thái online: {}", e.getMessage());
+            online = null;
+            lastSeen = null;
+        }
+
+        for (int i = 0; i < ids.size(); i++) {
+            String userId = ids.get(i);
+            boolean isOnline = localUsers.containsKey(userId) || (online != null && online.get(i) != null);
+            String seen = lastSeen != null ? lastSeen.get(i) : null;
+            result.put(userId, UserPresenceDTO.builder()
+                    .userId(userId)
+                    .online(isOnline)
+                    .lastSeenAt(!isOnline && seen != null ? LocalDateTime.parse(seen) : null)
+                    .build());
+        }
+        return result;
+    }
+
+    @Override
+    public void heartbeat(String userId) {
+        LocalPresence presence = localUsers.get(userId);
+        if (presence == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(LEASE_SCRIPT, leaseKeys(userId), leaseArgs(userId, presence));
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi gia hạn trạng thái online của {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Gia hạn lease và key online của mọi user đang kết nối tới node này trong một pipeline
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.refresh-interval:30s}")
+    public void refreshLocalUsers() {
+        if (localUsers.isEmpty()) {
+            return;
+        }
+        Map<String, LocalPresence> snapshot = Map.copyOf(localUsers);
+        byte[] script = bytes(LEASE_LUA);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                snapshot.forEach((userId, presence) -> {
+                    List<byte[]> keysAndArgs = new ArrayList<>();
+                    leaseKeys(userId).forEach(key -> keysAndArgs.add(bytes(key)));
+                    for (Object arg : leaseArgs(userId, presence)) {
+                        keysAndArgs.add(bytes(arg.toString()));
+                    }
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 3,
+                            keysAndArgs.toArray(byte[][]::new));
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi gia hạn trạng thái online của {} user: {}", snapshot.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * User có lease hết hạn mà không node nào gỡ (node chết giữa chừng): ghi last-seen và gửi thay đổi offline.
+     * Mọi node đều quét; OFFLINE_SCRIPT chỉ trả về 1 cho một node với mỗi user.
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.sweep-interval:30s}")
+    public void sweepExpiredLeases() {
+        try {
+            Set<String> expired = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(LEASES_KEY, Double.NEGATIVE_INFINITY, System.currentTimeMillis(), 0, SWEEP_BATCH);
+            if (expired == null) {
+                return;
+            }
+            for (String userId : expired) {
+                if (!localUsers.containsKey(userId)) {
+                    markOffline(userId, "");
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi quét lease online hết hạn: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Gửi các thay đổi đã gom tới những người có chung conversation đang online
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.fan-out-interval:2s}")
+    public void fanOutChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        Map<String, Boolean> changes = new HashMap<>();
+        for (String userId : Set.copyOf(pendingChanges.keySet())) {
+            Boolean online = pendingChanges.remove(userId);
+            if (online != null) {
+                changes.put(userId, online);
+            }
+        }
+
+        Map<String, Set<String>> contactsByUser = new HashMap<>();
+        Set<String> allContacts = new LinkedHashSet<>();
+        changes.keySet().forEach(userId -> {
+            Set<String> contacts = contactsOf(userId);
+            contactsByUser.put(userId, contacts);
+            allContacts.addAll(contacts);
+        });
+        Map<String, String> onlineContacts = principalNamesOf(allContacts);
+
+        LocalDateTime now = LocalDateTime.now();
+        changes.forEach((userId, online) -> {
+            UserPresenceDTO event = UserPresenceDTO.builder()
+                    .userId(userId)
+                    .online(online)
+                    .lastSeenAt(online ? null : now)
+                    .build();
+            contactsByUser.get(userId).stream()
+                    .map(onlineContacts::get)
+                    .filter(Objects::nonNull)
+                    .forEach(principalName -> messagingTemplate.convertAndSendToUser(principalName, PRESENCE_QUEUE,
+                            event));
+        });
+    }
+
+    @PreDestroy
+    public void clearLocalUsers() {
+        localUsers.keySet().forEach(this::markOfflineIfNoOtherNode);
+        localUsers.clear();
+        sessionUsers.clear();
+    }
+
+    private void markOnline(String userId, String principalName) {
+        try {
+            Long first = stringRedisTemplate.execute(LEASE_SCRIPT, leaseKeys(userId),
+                    leaseArgs(userId, new LocalPresence(principalName, 1)));
+            if (Long.valueOf(1).equals(first)) {
+                pendingChanges.put(userId, true);
+            }
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi ghi trạng thái online của {}: {}", userId, e.getMessage());
+        }
+    }
+
+    // Node khác còn lease của user thì user vẫn online, node đó tiếp tục gia hạn key
+    private void markOfflineIfNoOtherNode(String userId) {
+        markOffline(userId, nodeIdentity.getNodeId());
+    }
+
+    // nodeId rỗng: chỉ gỡ các lease đã hết hạn (quét lease của node chết)
+    private void markOffline(String userId, String nodeId) {
+        try {
+            Long offline = stringRedisTemplate.execute(OFFLINE_SCRIPT,
+                    List.of(NODES_PREFIX + userId, ONLINE_PREFIX + userId, LEASES_KEY, LAST_SEEN_PREFIX + userId),
+                    nodeId, userId, LocalDateTime.now().toString(), String.valueOf(LAST_SEEN_TTL.toMillis()));
+            if (Long.valueOf(1).equals(offline)) {
+                pendingChanges.put(userId, false);
+            }
+        } catch (Exception e) {
+            // Lease và key online tự hết hạn sau ttl, lần quét sau sẽ ghi offline
+            log.warn("[Presence] Lỗi ghi trạng thái offline của {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private List<String> leaseKeys(String userId) {
+        return List.of(NODES_PREFIX + userId, ONLINE_PREFIX + userId, LEASES_KEY);
+    }
+
+    // Object[] để truyền thẳng vào tham số varargs Object... của execute(script, keys, args)
+    private Object[] leaseArgs(String userId, LocalPresence presence) {
+        return new Object[] { nodeIdentity.getNodeId(), presence.principalName(), String.valueOf(ttl.toMillis()),
+                userId };
+    }
+
+    private Set<String> contactsOf(String userId) {
+        return contactsCache.get(userId, id -> {
+            Set<String> contacts = new HashSet<>();
+            conversationRepository.findParticipantsByParticipantId(id)
+                    .forEach(conversation -> contacts.addAll(conversation.getParticipantIds()));
+            contacts.remove(id);
+            return contacts;
+        });
+    }
+
+    // userId -> tên principal của những user đang online (để gửi tới /user/{principal}/queue/presence)
+    private Map<String, String> principalNamesOf(Collection<String> userIds) {
+        Map<String, String> result = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return result;
+        }
+        List<String> ids = new ArrayList<>(userIds);
+        try {
+            List<String> names = stringRedisTemplate.opsForValue()
+                    .multiGet(ids.stream().map(id -> ONLINE_PREFIX + id).toList());
+            for (int i = 0; i < ids.size(); i++) {
+                if (names != null && names.get(i) != null) {
+                    result.put(ids.get(i), names.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[Presence] Lỗi Redis khi tìm người nhận thay đổi online: {}", e.getMessage());
+            ids.forEach(id -> {
+                LocalPresence presence = localUsers.get(id);
+                if (presence != null) {
+                    result.put(id, presence.principalName());
+                }
+            });
+        }
+        return result;
+    }
+
+    private String userIdOf(Principal principal) {
+        if (principal instanceof Authentication authentication && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.repositories.ConversationRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Số conversation chưa đọc của user, giữ trên Redis dưới dạng set chat:unread:{userId} chứa id các conversation
+ * (set thay cho số đếm để gửi nhiều tin / đọc nhiều lần không làm lệch kết quả).
+ * Set luôn có phần tử SENTINEL để phân biệt "chưa dựng" với "không có tin chưa đọc": số đếm = SCARD - 1.
+ * Key chưa có (hết TTL, Redis mới) thì dựng lại từ unreadCounts trong MongoDB; Redis lỗi thì đếm trực tiếp trên MongoDB.
+ *
+ * Dựng lại an toàn khi chạy song song:
+ * - Cả set được tạo trong một script (BUILD_SCRIPT), chỉ khi key chưa có, nên không ghi đè set đã được dựng / cập nhật.
+ * - markRead tăng chat:unread-version:{userId}; lần dựng đã đọc MongoDB trước markRead đó (version khác) bị bỏ
+ *   và đọc lại, tránh đưa lại conversation vừa đọc vào set.
+ * - markUnread khi key chưa có thì dựng rồi mới thêm conversation, nên conversation có tin còn trong buffer
+ *   write-behind (MongoDB chưa thấy) vẫn được đếm.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadConversationCounter {
+
+    private static final String KEY_PREFIX = "chat:unread:";
+    private static final String VERSION_PREFIX = "chat:unread-version:";
+    private static final String SENTINEL = "_";
+    private static final Duration KEY_TTL = Duration.ofDays(1);
+    private static final int BUILD_ATTEMPTS = 3;
+
+    // -1 khi set chưa được dựng (không tạo set thiếu các conversation chưa đọc khác)
+    private static final RedisScript<Long> ADD_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return redis.call('sadd', KEYS[1], ARGV[1]) else return -1 end",
+            Long.class);
+
+    // KEYS[1] = set, KEYS[2] = version; ARGV[1] = version lúc đọc MongoDB, ARGV[2] = TTL (giây), ARGV[3..] = phần tử.
+    // Trả về số conversation chưa đọc, hoặc -1 nếu có markRead xen giữa (phải đọc lại MongoDB)
+    private static final RedisScript<Long> BUILD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('exists', KEYS[1]) == 1 then
+                return redis.call('scard', KEYS[1]) - 1
+            end
+            if (redis.call('get', KEYS[2]) or '0') ~= ARGV[1] then
+                return -1
+            end
+            for i = 3, #ARGV do
+                redis.call('sadd', KEYS[1], ARGV[i])
+            end
+            redis.call('expire', KEYS[1], ARGV[2])
+            return redis.call('scard', KEYS[1]) - 1
+            """, Long.class);
+
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('srem', KEYS[1], ARGV[1])
+            redis.call('incr', KEYS[2])
+            redis.call('expire', KEYS[2], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ConversationRepository conversationRepository;
+
+    public long count(String userId) {
+        try {
+            Long size = stringRedisTemplate.opsForSet().size(KEY_PREFIX + userId);
+            if (size != null && size > 0) {
+                return size - 1;
+            }
+            Long built = build(userId);
+            return built != null ? built : conversationRepository.countUnreadConversations(userId);
+        } catch (Exception e) {
+            log.warn("[UnreadConversationCounter] Lỗi Redis khi đếm conversation chưa đọc của {}: {}", userId,
+                    e.getMessage());
+            return conversationRepository.countUnreadConversations(userId);
+        }
+    }
+
+    public void markUnread(String userId, String conversationId) {
+        try {
+            List<String> keys = List.of(KEY_PREFIX + userId);
+            Long added = stringRedisTemplate.execute(ADD_IF_EXISTS_SCRIPT, keys, conversationId);
+            if (added != null && added < 0 && build(userId) != null) {
+                stringRedisTemplate.execute(ADD_IF_EXISTS_SCRIPT, keys, conversationId);
+            }
+        } catch (Exception e) {
+            invalidate(userId, e);
+        }
+    }
+
+    public void markRead(String userId, String conversationId) {
+        try {
+            stringRedisTemplate.execute(REMOVE_SCRIPT, List.of(KEY_PREFIX + userId, VERSION_PREFIX + userId),
+                    conversationId, String.valueOf(KEY_TTL.toSeconds()));
+        } catch (Exception e) {
+            invalidate(userId, e);
+        }
+    }
+
+    /**
+     * Dựng set từ MongoDB nếu chưa có.
+     *
+     * @return số conversation chưa đọc; null nếu liên tục có markRead xen giữa (set chưa được dựng)
+     */
+    private Long build(String userId) {
+        List<String> keys = List.of(KEY_PREFIX + userId, VERSION_PREFIX + userId);
+        for (int attempt = 0; attempt < BUILD_ATTEMPTS; attempt++) {
+            String version = Optional.ofNullable(stringRedisTemplate.opsForValue().get(VERSION_PREFIX + userId))
+                    .orElse("0");
+            List<String> args = new ArrayList<>();
+            args.add(version);
+            args.add(String.valueOf(KEY_TTL.toSeconds()));
+            args.add(SENTINEL);
+            conversationRepository.findUnreadConversationIds(userId).forEach(conversation ->
+                    args.add(conversation.getId()));
+
+            Long count = stringRedisTemplate.execute(BUILD_SCRIPT, keys, args.toArray());
+            if (count != null && count >= 0) {
+                return count;
+            }
+        }
+        return null;
+    }
+
+    // Không cập nhật được thì xóa key để lần đếm sau dựng lại từ MongoDB
+    private void invalidate(String userId, Exception cause) {
+        log.warn("[UnreadConversationCounter] Lỗi Redis khi cập nhật conversation chưa đọc của {}: {}", userId,
+                cause.getMessage());
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + userId);
+        } catch (Exception ignored) {
+            // Key sẽ hết hạn sau KEY_TTL
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.e_commerce_techshop.services.notification;
 
 import com.example.e_commerce_techshop.dtos.NotificationDTO;
 import com.example.e_commerce_techshop.models.Notification;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 
 import java.util.List;
 
@@ -26,6 +27,11 @@ public interface INotificationService {
      */
     Page<Notification> getUserNotifications(String userId, Boolean isRead, Pageable pageable);
 
+    /**
+     * Lấy notification của user theo cursor (mới nhất trước, không đếm tổng)
+     */
+    CursorPageResponse<Notification> getUserNotificationsByCursor(String userId, Boolean isRead, String cursor, int size);
+
     /**
      * Đánh dấu notification là đã đọc
      */
@@ -47,6 +53,11 @@ public interface INotificationService {
      */
     Page<Notification> getStoreNotifications(String storeId, Boolean isRead, Pageable pageable);
 
+    /**
+     * Lấy notification của store theo cursor (mới nhất trước, không đếm tổng)
+     */
+    CursorPageResponse<Notification> getStoreNotificationsByCursor(String storeId, Boolean isRead, String cursor, int size);
+
     /**
      * Đánh dấu notification của store là đã đọc
      */
@@ -5,9 +5,11 @@ import com.example.e_commerce_techshop.models.Notification;
 import com.example.e_commerce_techshop.models.Store;
 import com.example.e_commerce_techshop.models.User;
 import com.example.e_commerce_techshop.models.Notification.NotificationType;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
 import com.example.e_commerce_techshop.repositories.NotificationRepository;
 import com.example.e_commerce_techshop.repositories.StoreRepository;
 import com.example.e_commerce_techshop.repositories.user.UserRepository;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -20,6 +22,8 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class NotificationService implements INotificationService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final StoreRepository storeRepository;
@@ -65,6 +69,15 @@ public class NotificationService implements INotificationService {
         return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
 
+    @Override
+    public CursorPageResponse<Notification> getUserNotificationsByCursor(String userId, Boolean isRead, String cursor,
+            int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Notification> notifications = notificationRepository.findUserNotificationsAfter(userId, isRead,
+                KeysetCursor.decode(cursor), pageSize + 1);
+        return CursorPageResponse.of(notifications, pageSize, n -> new KeysetCursor(n.getCreatedAt(), n.getId()));
+    }
+
     @Override
     @Transactional
     public void markAsRead(String notificationId) {
@@ -112,6 +125,15 @@ public class NotificationService implements INotificationService {
         return notificationRepository.findByStoreIdOrderByCreatedAtDesc(storeId, pageable);
     }
 
+    @Override
+    public CursorPageResponse<Notification> getStoreNotificationsByCursor(String storeId, Boolean isRead, String cursor,
+            int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Notification> notifications = notificationRepository.findStoreNotificationsAfter(storeId, isRead,
+                KeysetCursor.decode(cursor), pageSize + 1);
+        return CursorPageResponse.of(notifications, pageSize, n -> new KeysetCursor(n.getCreatedAt(), n.getId()));
+    }
+
     @Override
     @Transactional
     public void markStoreNotificationAsRead(String notificationId) {
@@ -4,6 +4,7 @@ package com.example.e_commerce_techshop.services.order;
 import com.example.e_commerce_techshop.dtos.buyer.OrderDTO;
 import com.example.e_commerce_techshop.models.Order;
 import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 import com.example.e_commerce_techshop.responses.ShipmentResponse;
 import com.example.e_commerce_techshop.responses.buyer.OrderResponse;
 
@@ -20,6 +21,9 @@ public interface IOrderService {
     // Lấy lịch sử đơn hàng
     Page<Order> getOrderHistory(User user, String status, Pageable pageable) throws Exception;
 
+    // Phân trang keyset (mới nhất trước), không đếm tổng số đơn
+    CursorPageResponse<OrderResponse> getOrderHistoryByCursor(User user, String status, String cursor, int size) throws Exception;
+
     // Lấy chi tiết đơn hàng
     Order getOrderDetail(User user, String orderId) throws Exception;
 
@@ -34,6 +38,9 @@ public interface IOrderService {
     // ===== SELLER METHODS =====
 
     Page<OrderResponse> getStoreOrders(String storeId, String status, Pageable pageable) throws Exception;
+
+    // Phân trang keyset (mới nhất trước) cho store có nhiều đơn
+    CursorPageResponse<OrderResponse> getStoreOrdersByCursor(String storeId, String status, String cursor, int size) throws Exception;
     
     Order getStoreOrderDetail(String storeId, String orderId) throws Exception;
     
@@ -28,7 +28,9 @@ import com.example.e_commerce_techshop.models.RefundRequest;
 import com.example.e_commerce_techshop.models.Shipment;
 import com.example.e_commerce_techshop.models.Store;
 import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
 import com.example.e_commerce_techshop.models.Static.OrderFinancials;
+import com.example.e_commerce_techshop.models.Static.StockReservation;
 import com.example.e_commerce_techshop.repositories.AdminRevenueRepository;
 import com.example.e_commerce_techshop.repositories.CartRepository;
 import com.example.e_commerce_techshop.repositories.OrderItemRepository;
@@ -39,6 +41,7 @@ import com.example.e_commerce_techshop.repositories.PromotionUsageRepository;
 import com.example.e_commerce_techshop.repositories.RefundRequestRepository;
 import com.example.e_commerce_techshop.repositories.ShipmentRepository;
 import com.example.e_commerce_techshop.repositories.StoreRepository;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
 import com.example.e_commerce_techshop.responses.ShipmentResponse;
 import com.example.e_commerce_techshop.responses.buyer.OrderResponse;
 import com.example.e_commerce_techshop.services.cart.ICartService;
@@ -46,6 +49,8 @@ import com.example.e_commerce_techshop.services.notification.INotificationServic
 import com.example.e_commerce_techshop.services.promotion.IPromotionService;
 import com.example.e_commerce_techshop.services.refund.IRefundService;
 import com.example.e_commerce_techshop.services.shipping.RegionalShippingService;
+import com.example.e_commerce_techshop.services.statistics.OrderStatisticsListener;
+import com.example.e_commerce_techshop.services.stock.IStockReservationService;
 import com.example.e_commerce_techshop.services.wallet.IWalletService;
 
 import lombok.RequiredArgsConstructor;
@@ -54,6 +59,8 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class OrderService implements IOrderService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
     private final ProductVariantRepository productVariantRepository;
@@ -70,6 +77,8 @@ public class OrderService implements IOrderService {
     private final RefundRequestRepository refundRequestRepository;
     private final ShipmentRepository shipmentRepository;
     private final RegionalShippingService regionalShippingService;
+    private final IStockReservationService stockReservationService;
+    private final OrderStatisticsListener orderStatisticsListener;
 
     @Override
     @Transactional
@@ -93,11 +102,13 @@ public class OrderService implements IOrderService {
         // 5. Validate từng sản phẩm được chọn
         // Biến lưu trữ các sản phẩm theo cửa hàng
         Map<String, List<OrderDTO.SelectedCartItem>> itemsByStore = new HashMap<>();
+        Map<String, ProductVariant> variantsById = new HashMap<>();
 
         for (var cartItem : orderDTO.getSelectedItems()) {
             ProductVariant productVariant = productVariantRepository.findById(cartItem.getProductVariantId())
                     .orElseThrow(() -> new DataNotFoundException(
                             "Không tìm thấy sản phẩm: " + cartItem.getProductVariantId()));
+            variantsById.put(productVariant.getId(), productVariant);
 
             if (cartItem.getColorId() != null && !cartItem.getColorId().trim().isEmpty()) {
                 ColorOption colorOption = ProductVariant.getColor(productVariant, cartItem.getColorId());
@@ -246,150 +257,126 @@ public class OrderService implements IOrderService {
             return total2.compareTo(total1); // Giảm dần
         });
 
+        // 9.5. Giữ hàng cho toàn bộ sản phẩm bằng update có điều kiện (stock >= quantity).
+        // Kiểm tra ở bước 5 chỉ để báo lỗi sớm, đây mới là bước quyết định khi nhiều người cùng mua.
+        List<StockReservation> reservations = stockReservationService.reserve(orderDTO.getSelectedItems());
+
         List<Order> orders = new ArrayList<>();
         int platformOrderPromotionUsed = 0; // Đếm số lần đã dùng platform order voucher
         BigDecimal totalPaymentAmount = BigDecimal.ZERO; // Tổng tiền cần thanh toán cho tất cả đơn hàng
 
-        // 10. Tạo 1 đơn hàng cho mỗi store (theo thứ tự đã sắp xếp)
-        for (Map.Entry<String, List<OrderDTO.SelectedCartItem>> storeEntry : sortedStores) {
-            String storeId = storeEntry.getKey();
-            List<OrderDTO.SelectedCartItem> storeItems = storeEntry.getValue();
-
-            // 10.1. Lấy thông tin store
-            Store store = storeRepository.findById(storeId)
-                    .orElseThrow(() -> new DataNotFoundException("Không tìm thấy cửa hàng với ID: " + storeId));
-
-            // 10.2. Tính toán các khoản tiền cho store này
-            OrderFinancials financials = calculateOrderFinancials(
-                    storeItems, storeId, store, user, orderDTO,
-                    platformOrderPromotion, platformShippingPromotion,
-                    platformOrderPromotionUsed, applyShippingToStores
-            );
+        try {
+            // 10. Tạo 1 đơn hàng cho mỗi store (theo thứ tự đã sắp xếp)
+            for (Map.Entry<String, List<OrderDTO.SelectedCartItem>> storeEntry : sortedStores) {
+                String storeId = storeEntry.getKey();
+                List<OrderDTO.SelectedCartItem> storeItems = storeEntry.getValue();
+
+                // 10.1. Lấy thông tin store
+                Store store = storeRepository.findById(storeId)
+                        .orElseThrow(() -> new DataNotFoundException("Không tìm thấy cửa hàng với ID: " + storeId));
+
+                // 10.2. Tính toán các khoản tiền cho store này
+                OrderFinancials financials = calculateOrderFinancials(
+                        storeItems, storeId, store, user, orderDTO,
+                        platformOrderPromotion, platformShippingPromotion,
+                        platformOrderPromotionUsed, applyShippingToStores
+                );
 
-            // Cập nhật số lần đã dùng platform order promotion
-            if (financials.isPlatformOrderPromotionApplied()) {
-                platformOrderPromotionUsed++;
-            }
+                // Cập nhật số lần đã dùng platform order promotion
+                if (financials.isPlatformOrderPromotionApplied()) {
+                    platformOrderPromotionUsed++;
+                }
 
-            BigDecimal storeTotal = financials.getStoreTotal();
-            BigDecimal storeDiscountAmount = financials.getStoreDiscountAmount();
-            BigDecimal platformDiscountAmount = financials.getPlatformDiscountAmount();
-            BigDecimal totalDiscount = financials.getTotalDiscountAmount();
-            BigDecimal finalShippingFee = financials.getFinalShippingFee();
-            BigDecimal platformCommission = financials.getPlatformCommission();
-            BigDecimal finalTotal = financials.getFinalTotal();
-            List<Promotion> appliedPromotions = financials.getAppliedPromotions();
-
-            // Cộng dồn vào tổng tiền thanh toán
-            totalPaymentAmount = totalPaymentAmount.add(finalTotal);
-
-            // Đảm bảo tất cả promotions được reload từ DB để có managed state
-            List<Promotion> managedPromotions = new ArrayList<>();
-            if (appliedPromotions != null && !appliedPromotions.isEmpty()) {
-                for (Promotion promo : appliedPromotions) {
-                    if (promo != null && promo.getId() != null) {
-                        // Reload từ DB để đảm bảo managed state
-                        promotionRepository.findById(promo.getId()).ifPresent(managedPromotions::add);
+                BigDecimal storeTotal = financials.getStoreTotal();
+                BigDecimal storeDiscountAmount = financials.getStoreDiscountAmount();
+                BigDecimal platformDiscountAmount = financials.getPlatformDiscountAmount();
+                BigDecimal totalDiscount = financials.getTotalDiscountAmount();
+                BigDecimal finalShippingFee = financials.getFinalShippingFee();
+                BigDecimal platformCommission = financials.getPlatformCommission();
+                BigDecimal finalTotal = financials.getFinalTotal();
+                List<Promotion> appliedPromotions = financials.getAppliedPromotions();
+
+                // Cộng dồn vào tổng tiền thanh toán
+                totalPaymentAmount = totalPaymentAmount.add(finalTotal);
+
+                // Đảm bảo tất cả promotions được reload từ DB để có managed state
+                List<Promotion> managedPromotions = new ArrayList<>();
+                if (appliedPromotions != null && !appliedPromotions.isEmpty()) {
+                    for (Promotion promo : appliedPromotions) {
+                        if (promo != null && promo.getId() != null) {
+                            // Reload từ DB để đảm bảo managed state
+                            promotionRepository.findById(promo.getId()).ifPresent(managedPromotions::add);
+                        }
                     }
                 }
-            }
 
-            // 10.4. Tạo Order cho store này
-            Order order = Order.builder()
-                    .buyer(user)
-                    .store(store)
-                    .promotions(managedPromotions.isEmpty() ? null : managedPromotions)
-                    .productPrice(storeTotal) // Giá sản phẩm
-                    .shippingFee(finalShippingFee) // Phí ship
-                    .platformCommission(platformCommission) // Hoa hồng sàn 5%
-                    .storeDiscountAmount(storeDiscountAmount) // Tiền shop chịu
-                    .platformDiscountAmount(platformDiscountAmount) // Tiền sàn chịu
-                    .totalDiscountAmount(totalDiscount)
-                    .totalPrice(finalTotal) // Tổng tiền khách thanh toán
-                    .isRated(false)
-                    .vnpTnxRef(orderDTO.getVnpTnxRef())
-                    .address(Address.builder()
-                            .province(orderDTO.getAddress().getProvince())
-                            .ward(orderDTO.getAddress().getWard())
-                            .homeAddress(orderDTO.getAddress().getHomeAddress())
-                            .phone(orderDTO.getAddress().getPhone())
-                            .suggestedName(orderDTO.getAddress().getSuggestedName())
-                            .build())
-                    .paymentMethod(orderDTO.getPaymentMethod())
-                    .paymentStatus(Order.PaymentStatus.UNPAID.name())
-                    .status(Order.OrderStatus.PENDING.name())
-                    .note(orderDTO.getNote())
-                    .build();
-
-            order = orderRepository.save(order);
-
-            // 10.5. Tạo OrderItems cho store này và trừ stock
-            List<OrderItem> orderItems = new ArrayList<>();
-            for (OrderDTO.SelectedCartItem item : storeItems) {
-                ProductVariant productVariant = productVariantRepository.findById(item.getProductVariantId()).get();
-
-                // Trừ stock đúng cách (tổng stock hoặc stock theo màu)
-                if (item.getColorId() != null && productVariant.getColors() != null
-                        && !productVariant.getColors().isEmpty()) {
-                    // Có màu sắc -> trừ stock của màu đó và cập nhật tổng stock
-                    ProductVariant.ColorOption color = productVariant.getColors().stream()
-                            .filter(c -> c.getId().equals(item.getColorId()))
-                            .findFirst()
-                            .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy màu sắc"));
-
-                    int newColorStock = color.getStock() - item.getQuantity();
-                    if (newColorStock < 0) {
-                        throw new IllegalArgumentException(
-                                "Không đủ hàng trong kho. Sản phẩm: " + productVariant.getName() +
-                                        " (màu: " + item.getColorId() + "), Số lượng còn lại: " + color.getStock() +
-                                        ", Số lượng yêu cầu: " + item.getQuantity());
-                    }
+                // 10.4. Tạo Order cho store này
+                Order order = Order.builder()
+                        .buyer(user)
+                        .store(store)
+                        .promotions(managedPromotions.isEmpty() ? null : managedPromotions)
+                        .productPrice(storeTotal) // Giá sản phẩm
+                        .shippingFee(finalShippingFee) // Phí ship
+                        .platformCommission(platformCommission) // Hoa hồng sàn 5%
+                        .storeDiscountAmount(storeDiscountAmount) // Tiền shop chịu
+                        .platformDiscountAmount(platformDiscountAmount) // Tiền sàn chịu
+                        .totalDiscountAmount(totalDiscount)
+                        .totalPrice(finalTotal) // Tổng tiền khách thanh toán
+                        .isRated(false)
+                        .vnpTnxRef(orderDTO.getVnpTnxRef())
+                        .address(Address.builder()
+                                .province(orderDTO.getAddress().getProvince())
+                                .ward(orderDTO.getAddress().getWard())
+                                .homeAddress(orderDTO.getAddress().getHomeAddress())
+                                .phone(orderDTO.getAddress().getPhone())
+                                .suggestedName(orderDTO.getAddress().getSuggestedName())
+                                .build())
+                        .paymentMethod(orderDTO.getPaymentMethod())
+                        .paymentStatus(Order.PaymentStatus.UNPAID.name())
+                        .status(Order.OrderStatus.PENDING.name())
+                        .note(orderDTO.getNote())
+                        .build();
 
-                    color.setStock(newColorStock);
+                order = orderRepository.save(order);
 
-                    // Cập nhật tổng stock = tổng stock của tất cả màu
-                    int totalStock = productVariant.getColors().stream().mapToInt(ProductVariant.ColorOption::getStock)
-                            .sum();
-                    productVariant.setStock(totalStock);
-                } else {
-                    // Không có màu sắc -> trừ stock tổng
-                    int newStock = productVariant.getStock() - item.getQuantity();
-                    if (newStock < 0) {
-                        throw new IllegalArgumentException(
-                                "Không đủ hàng trong kho. Sản phẩm: " + productVariant.getName() +
-                                        ", Số lượng còn lại: " + productVariant.getStock() + ", Số lượng yêu cầu: "
-                                        + item.getQuantity());
-                    }
-                    productVariant.setStock(newStock);
-                }
+                // 10.5. Tạo OrderItems cho store này (stock đã được giữ ở bước 9.5)
+                List<OrderItem> orderItems = new ArrayList<>();
+                for (OrderDTO.SelectedCartItem item : storeItems) {
+                    ProductVariant productVariant = variantsById.get(item.getProductVariantId());
 
-                productVariantRepository.save(productVariant);
+                    OrderItem orderItem = OrderItem.builder()
+                            .order(order)
+                            .productVariant(productVariant)
+                            .quantity(item.getQuantity())
+                            .price(getProductPrice(productVariant, item.getColorId()))
+                            .colorId(item.getColorId())
+                            .build();
 
-                OrderItem orderItem = OrderItem.builder()
-                        .order(order)
-                        .productVariant(productVariant)
-                        .quantity(item.getQuantity())
-                        .price(getProductPrice(productVariant, item.getColorId()))
-                        .colorId(item.getColorId())
-                        .build();
+                    orderItems.add(orderItem);
+                }
 
-                orderItems.add(orderItem);
-            }
+                orderItemRepository.saveAll(orderItems);
+                order.setOrderItems(orderItems);
 
-            orderItemRepository.saveAll(orderItems);
-            order.setOrderItems(orderItems);
+                // Số lượng bán cho gợi ý tìm kiếm chỉ cộng được khi order_items đã được lưu
+                orderStatisticsListener.recordSuggestionSales(order, null);
 
-            // 10.6. Ghi nhận sử dụng promotion
-            for (Promotion promotion : appliedPromotions) {
-                try {
-                    promotionService.recordPromotionUsage(promotion, user);
-                } catch (Exception e) {
-                    System.err.println("Warning: Failed to record promotion usage: " + e.getMessage());
+                // 10.6. Ghi nhận sử dụng promotion
+                for (Promotion promotion : appliedPromotions) {
+                    try {
+                        promotionService.recordPromotionUsage(promotion, user);
+                    } catch (Exception e) {
+                        System.err.println("Warning: Failed to record promotion usage: " + e.getMessage());
+                    }
                 }
-            }
 
-            // 10.7. Add order into order list
-            orders.add(order);
+                // 10.7. Add order into order list
+                orders.add(order);
+            }
+        } catch (Exception e) {
+            // Tạo đơn lỗi giữa chừng -> hoàn trả toàn bộ hàng đã giữ
+            stockReservationService.release(reservations);
+            throw e;
         }
 
         List<String> selectedCartItemIds = orderDTO.getSelectedItems().stream()
@@ -432,53 +419,22 @@ public class OrderService implements IOrderService {
         } else {
             orderPage = orderRepository.findByBuyerIdAndStatus(user.getId(), status, pageable);
         }
-        if (!orderPage.getContent().isEmpty()) {
-            List<String> orderIds = orderPage.getContent().stream()
-                    .map(Order::getId)
-                    .toList();
-
-            List<OrderItem> allOrderItems = orderItemRepository.findByOrderIdIn(orderIds);
-
-            // Group orderItems by orderId
-            Map<String, List<OrderItem>> itemsByOrderId = allOrderItems.stream()
-                    .collect(Collectors.groupingBy(item -> item.getOrder().getId()));
+        attachItemsAndPromotions(orderPage.getContent());
+        return orderPage;
+    }
 
-            // Lấy tất cả promotion IDs từ các orders
-            List<String> allPromotionIds = new ArrayList<>();
-            for (Order order : orderPage.getContent()) {
-                if (order.getPromotions() != null && !order.getPromotions().isEmpty()) {
-                    order.getPromotions().stream()
-                            .map(Promotion::getId)
-                            .filter(id -> id != null)
-                            .forEach(allPromotionIds::add);
-                }
-            }
+    @Override
+    public CursorPageResponse<OrderResponse> getOrderHistoryByCursor(User user, String status, String cursor, int size)
+            throws Exception {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Order> orders = orderRepository.findBuyerOrdersAfter(user.getId(), status, KeysetCursor.decode(cursor),
+                pageSize + 1);
+        CursorPageResponse<Order> page = CursorPageResponse.of(orders, pageSize,
+                order -> new KeysetCursor(order.getCreatedAt(), order.getId()));
 
-            // Load promotions nếu có
-            Map<String, Promotion> promotionsById = new HashMap<>();
-            if (!allPromotionIds.isEmpty()) {
-                List<Promotion> promotions = promotionRepository.findAllById(allPromotionIds);
-                promotionsById = promotions.stream()
-                        .collect(Collectors.toMap(Promotion::getId, p -> p));
-            }
+        attachItemsAndPromotions(page.getContent());
 
-            // Assign orderItems và promotions to each order
-            Map<String, Promotion> finalPromotionsById = promotionsById;
-            orderPage.getContent().forEach(order -> {
-                List<OrderItem> items = itemsByOrderId.getOrDefault(order.getId(), new ArrayList<>());
-                order.setOrderItems(items);
-                
-                // Set promotions
-                if (order.getPromotions() != null && !order.getPromotions().isEmpty()) {
-                    List<Promotion> orderPromotions = order.getPromotions().stream()
-                            .map(p -> finalPromotionsById.get(p.getId()))
-                            .filter(p -> p != null)
-                            .toList();
-                    order.setPromotions(orderPromotions);
-                }
-            });
-        }
-        return orderPage;
+        return page.map(OrderResponse::fromOrder);
     }
 
     @Override
@@ -533,36 +489,9 @@ public class OrderService implements IOrderService {
             }
         }
 
-        // 4. Hoàn trả stock
+        // 4. Hoàn trả stock (tổng stock hoặc stock theo màu) bằng $inc nguyên tử
         List<OrderItem> orderItem = orderItemRepository.findByOrderId(order.getId());
-        for (OrderItem item : orderItem) {
-            ProductVariant productVariant = productVariantRepository.findById(item.getProductVariant().getId())
-                    .orElseThrow(() -> new DataNotFoundException("Không tìm thấy sản phẩm"));
-
-            // Hoàn trả stock đúng cách (tổng stock hoặc stock theo màu)
-            if (item.getColorId() != null && productVariant.getColors() != null
-                    && !productVariant.getColors().isEmpty()) {
-                // Có màu sắc -> hoàn trả stock cho màu đó và cập nhật tổng stock
-                ProductVariant.ColorOption color = productVariant.getColors().stream()
-                        .filter(c -> c.getId().equals(item.getColorId()))
-                        .findFirst()
-                        .orElse(null);
-
-                if (color != null) {
-                    color.setStock(color.getStock() + item.getQuantity());
-
-                    // Cập nhật tổng stock = tổng stock của tất cả màu
-                    int totalStock = productVariant.getColors().stream().mapToInt(ProductVariant.ColorOption::getStock)
-                            .sum();
-                    productVariant.setStock(totalStock);
-                }
-            } else {
-                // Không có màu sắc -> hoàn trả stock tổng
-                productVariant.setStock(productVariant.getStock() + item.getQuantity());
-            }
-
-            productVariantRepository.save(productVariant);
-        }
+        stockReservationService.releaseOrderItems(orderItem);
         // 5. Cập nhật trạng thái đơn hàng
         orderRepository.save(order);
 
@@ -758,8 +687,30 @@ public class OrderService implements IOrderService {
             orders = orderRepository.findByStoreId(storeId, pageable);
         }
 
-        if (!orders.getContent().isEmpty()) {
-            List<String> orderIds = orders.getContent().stream()
+        attachItemsAndPromotions(orders.getContent());
+
+        return orders.map(OrderResponse::fromOrder);
+    }
+
+    @Override
+    public CursorPageResponse<OrderResponse> getStoreOrdersByCursor(String storeId, String status, String cursor, int size)
+            throws Exception {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Order> orders = orderRepository.findStoreOrdersAfter(storeId, status, KeysetCursor.decode(cursor), pageSize + 1);
+        CursorPageResponse<Order> page = CursorPageResponse.of(orders, pageSize,
+                order -> new KeysetCursor(order.getCreatedAt(), order.getId()));
+
+        attachItemsAndPromotions(page.getContent());
+
+        return page.map(OrderResponse::fromOrder);
+    }
+
+    /**
+     * Gắn orderItems và promotions cho cả trang đơn hàng bằng một lần truy vấn mỗi loại
+     */
+    private void attachItemsAndPromotions(List<Order> orders) {
+        if (!orders.isEmpty()) {
+            List<String> orderIds = orders.stream()
                     .map(Order::getId)
                     .toList();
 
@@ -770,7 +721,7 @@ public class OrderService implements IOrderService {
 
             // Lấy tất cả promotion IDs từ các orders
             List<String> allPromotionIds = new ArrayList<>();
-            for (Order order : orders.getContent()) {
+            for (Order order : orders) {
                 if (order.getPromotions() != null && !order.getPromotions().isEmpty()) {
                     order.getPromotions().stream()
                             .map(Promotion::getId)
@@ -789,7 +740,7 @@ public class OrderService implements IOrderService {
 
             // Assign orderItems và promotions to each order
             Map<String, Promotion> finalPromotionsById = promotionsById;
-            orders.getContent().forEach(order -> {
+            orders.forEach(order -> {
                 List<OrderItem> items = itemsByOrderId.getOrDefault(order.getId(), new ArrayList<>());
                 order.setOrderItems(items);
                 
@@ -803,8 +754,6 @@ public class OrderService implements IOrderService {
                 }
             });
         }
-
-        return orders.map(OrderResponse::fromOrder);
     }
 
     @Override
@@ -888,36 +837,9 @@ public class OrderService implements IOrderService {
         order.setStatus(Order.OrderStatus.CANCELLED.name());
         order.setRejectReason(reason);
         
-        // Hoàn trả stock
+        // Hoàn trả stock (tổng stock hoặc stock theo màu) bằng $inc nguyên tử
         List<OrderItem> orderItems = orderItemRepository.findByOrderId(order.getId());
-        for (OrderItem item : orderItems) {
-            ProductVariant productVariant = productVariantRepository.findById(item.getProductVariant().getId())
-                    .orElseThrow(() -> new DataNotFoundException("Không tìm thấy sản phẩm"));
-
-            // Hoàn trả stock đúng cách (tổng stock hoặc stock theo màu)
-            if (item.getColorId() != null && productVariant.getColors() != null
-                    && !productVariant.getColors().isEmpty()) {
-                // Có màu sắc -> hoàn trả stock cho màu đó và cập nhật tổng stock
-                ProductVariant.ColorOption color = productVariant.getColors().stream()
-                        .filter(c -> c.getId().equals(item.getColorId()))
-                        .findFirst()
-                        .orElse(null);
-
-                if (color != null) {
-                    color.setStock(color.getStock() + item.getQuantity());
-                    // Cập nhật tổng stock = tổng stock của tất cả màu
-                    int totalStock = productVariant.getColors().stream()
-                            .mapToInt(ProductVariant.ColorOption::getStock)
-                            .sum();
-                    productVariant.setStock(totalStock);
-                }
-            } else {
-                // Không có màu sắc -> hoàn trả stock tổng
-                productVariant.setStock(productVariant.getStock() + item.getQuantity());
-            }
-
-            productVariantRepository.save(productVariant);
-        }
+        stockReservationService.releaseOrderItems(orderItems);
         
         // Hoàn tiền nếu đã thanh toán (MoMo/VNPay)
         if (Order.PaymentStatus.PAID.name().equals(order.getPaymentStatus())) {
@@ -10,6 +10,7 @@ import org.springframework.web.multipart.MultipartFile;
 import com.example.e_commerce_techshop.dtos.b2c.ProductVariant.ColorOption;
 import com.example.e_commerce_techshop.dtos.b2c.ProductVariant.ProductVariantDTO;
 import com.example.e_commerce_techshop.models.ProductVariant;
+import com.example.e_commerce_techshop.responses.ProductSuggestionResponse;
 import com.example.e_commerce_techshop.responses.ProductVariantResponse;
 
 public interface IProductVariantService {
@@ -30,6 +31,8 @@ public interface IProductVariantService {
 
     Page<ProductVariantResponse> searchByName(String name, int page, int size, String sortBy, String sortDir) throws Exception;
 
+    List<ProductSuggestionResponse> suggest(String prefix, int limit);
+
     // Shop (B2C) methods
     Page<ProductVariant> getAllProductVariantsB2C(String storeId, String status, Pageable pageable) throws Exception;
 
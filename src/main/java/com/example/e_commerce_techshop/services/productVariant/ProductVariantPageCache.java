@@ -0,0 +1,605 @@
+package com.example.e_commerce_techshop.services.productVariant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.services.productVariant.codec.DeflatePageCodec;
+import com.example.e_commerce_techshop.services.productVariant.codec.JacksonPageCodec;
+import com.example.e_commerce_techshop.services.productVariant.codec.PageCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache các trang danh sách biến thể, hai tầng:
+ * - L1: Caffeine trong JVM (giới hạn số entry, TTL theo từng key), lưu object đã deserialize.
+ * - L2: Redis hash (mỗi field là một trang, encode bằng codec nhị phân chọn theo vùng), gắn vào các tag set (store, category, brand, variant)
+ *   để khi dữ liệu thay đổi chỉ xóa đúng các hash liên quan bằng SMEMBERS, không cần KEYS/SCAN.
+ * Xóa cache được publish qua Redis pub/sub để các node khác bỏ L1 tương ứng.
+ * Chống cache stampede: nhiều request cùng miss một key chỉ gây ra một lần load trong node
+ * (single-flight), giữa các node dùng lock Redis; trang hết hạn mềm vẫn được trả trong lúc refresh nền.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductVariantPageCache {
+
+    public static final String CACHE_PREFIX = "product-variants:";
+    private static final String TAG_PREFIX = CACHE_PREFIX + "tag:";
+    // Tập tất cả hash đang được cache, dùng cho clearAll()
+    private static final String ALL_KEYS = TAG_PREFIX + "all";
+
+    private static final String INVALIDATION_CHANNEL = CACHE_PREFIX + "invalidation";
+    private static final String INVALIDATE_ALL = "*";
+    private static final char LOCAL_KEY_SEPARATOR = '|';
+    private static final long LOCAL_MAX_ENTRIES = 10_000;
+
+    // Sau CACHE_TTL trang bị coi là stale (vẫn được trả trong lúc refresh nền),
+    // hash chỉ thật sự bị Redis xóa sau HASH_TTL
+    private static final long CACHE_TTL_MINUTES = 60;
+    private static final long HASH_TTL_MINUTES = CACHE_TTL_MINUTES * 2;
+    // Tag set sống lâu hơn hash một chút để không mất liên kết trước khi hash hết hạn
+    private static final long TAG_TTL_MINUTES = HASH_TTL_MINUTES + 5;
+    private static final int ENVELOPE_HEADER_BYTES = Long.BYTES + 1;
+
+    // Codec theo vùng: cache.product-variants.codec.<region>, mặc định cache.product-variants.codec.default
+    private static final String CODEC_PROPERTY = "cache.product-variants.codec.";
+    private static final String DEFAULT_CODEC = "cbor";
+
+    private static final String LOCK_PREFIX = CACHE_PREFIX + "lock:";
+    private static final String NO_LOCK = "";
+    private static final long LOCK_TTL_MILLIS = 10_000;
+    private static final long LOCK_WAIT_MILLIS = 3_000;
+    private static final long LOCK_POLL_MILLIS = 50;
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Environment environment;
+
+    private final Map<Byte, PageCodec> codecsById = new HashMap<>();
+    private final Map<String, PageCodec> codecsByName = new HashMap<>();
+    private final ConcurrentHashMap<String, PageCodec> regionCodecs = new ConcurrentHashMap<>();
+
+    private final Cache<String, LocalEntry> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_ENTRIES)
+            .expireAfter(new Expiry<String, LocalEntry>() {
+                @Override
+                public long expireAfterCreate(String key, LocalEntry entry, long currentTime) {
+                    return entry.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                    return entry.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, LocalEntry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // Phiên bản tăng mỗi lần có invalidation (toàn bộ / theo hash),
+    // để bỏ kết quả load đã bắt đầu trước thời điểm xóa
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> hashVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong lockWaits = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private record LocalEntry(Object value, long ttlNanos) {
+    }
+
+    private record CachedValue<T>(T value, boolean stale) {
+    }
+
+    @PostConstruct
+    public void registerCodecs() {
+        PageCodec json = new JacksonPageCodec((byte) 1, "json", objectMapper);
+        PageCodec cbor = new JacksonPageCodec((byte) 2, "cbor", objectMapper.copyWith(new CBORFactory()));
+        for (PageCodec codec : List.of(json, cbor,
+                new DeflatePageCodec((byte) 3, "json-deflate", json),
+                new DeflatePageCodec((byte) 4, "cbor-deflate", cbor))) {
+            codecsById.put(codec.id(), codec);
+            codecsByName.put(codec.name(), codec);
+        }
+    }
+
+    private PageCodec codecFor(String region) {
+        return regionCodecs.computeIfAbsent(region, key -> {
+            String name = environment.getProperty(CODEC_PROPERTY + key,
+                    environment.getProperty(CODEC_PROPERTY + "default", DEFAULT_CODEC));
+            PageCodec codec = codecsByName.get(name);
+            if (codec == null) {
+                log.warn("[ProductVariantPageCache] Codec '{}' của vùng {} không tồn tại, dùng {}", name, key,
+                        DEFAULT_CODEC);
+                return codecsByName.get(DEFAULT_CODEC);
+            }
+            return codec;
+        });
+    }
+
+    @PostConstruct
+    public void subscribeInvalidations() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public static String storeTag(String storeId) {
+        return "store:" + storeId;
+    }
+
+    public static String categoryTag(String categoryName) {
+        return "category:" + categoryName;
+    }
+
+    public static String brandTag(String brandName) {
+        return "brand:" + brandName;
+    }
+
+    public static String variantTag(String variantId) {
+        return "variant:" + variantId;
+    }
+
+    /**
+     * Đọc một trang: L1 -> L2 (Redis) -> loader (MongoDB), ghi ngược lên các tầng phía trên
+     *
+     * @param region   vùng cache (category, brand, latest, store...), quyết định codec lưu trên Redis
+     * @param localTtl thời gian sống ở L1 của key này
+     * @param tagsOf   tag gắn cho hash ở L2, tính từ giá trị vừa load
+     */
+    public <T> T getOrLoad(String region, String hashKey, String field, Duration localTtl, Class<T> type,
+            Supplier<T> loader, Function<T, Collection<String>> tagsOf) {
+        String localKey = hashKey + LOCAL_KEY_SEPARATOR + field;
+        LocalEntry entry = localCache.getIfPresent(localKey);
+        if (entry != null) {
+            return type.cast(entry.value());
+        }
+
+        // Single-flight trong node: chỉ request đầu tiên load, các request cùng key chờ kết quả đó
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlightCall = inFlight.putIfAbsent(localKey, call);
+        if (inFlightCall != null) {
+            coalesced.incrementAndGet();
+            return type.cast(await(inFlightCall));
+        }
+
+        String versionAtStart = versionOf(hashKey);
+        try {
+            T value = loadFromRedisOrSource(codecFor(region), hashKey, field, localKey, type, loader, tagsOf,
+                    versionAtStart);
+            if (versionOf(hashKey).equals(versionAtStart)) {
+                // Có invalidation trong lúc đang load thì không giữ kết quả ở L1
+                localCache.put(localKey, new LocalEntry(value, localTtl.toNanos()));
+            }
+            call.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(localKey, call);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T loadFromRedisOrSource(PageCodec codec, String hashKey, String field, String localKey, Class<T> type,
+            Supplier<T> loader, Function<T, Collection<String>> tagsOf, String versionAtStart) {
+        CachedValue<T> cached = read(hashKey, field, type);
+        if (cached != null) {
+            if (cached.stale()) {
+                // Stale-while-revalidate: trả bản cũ ngay, một luồng nền load lại
+                staleServed.incrementAndGet();
+                refreshInBackground(codec, hashKey, field, localKey, loader, tagsOf, versionAtStart);
+            }
+            return cached.value();
+        }
+
+        // Cache trống: chỉ node giữ lock được query MongoDB, các node khác chờ kết quả trên Redis
+        String lockKey = LOCK_PREFIX + localKey;
+        String token = tryLock(lockKey);
+        if (token == null) {
+            lockWaits.incrementAndGet();
+            CachedValue<T> awaited = waitForValue(hashKey, field, type);
+            if (awaited != null) {
+                return awaited.value();
+            }
+            // Hết thời gian chờ (node giữ lock có thể đã lỗi) -> tự load
+        }
+        try {
+            if (token != null && !NO_LOCK.equals(token)) {
+                // Node giữ lock trước có thể vừa ghi xong giữa lần đọc ở trên và lúc lấy được lock
+                CachedValue<T> written = read(hashKey, field, type);
+                if (written != null) {
+                    return written.value();
+                }
+            }
+            return loadAndStore(codec, hashKey, field, loader, tagsOf, versionAtStart);
+        } finally {
+            unlock(lockKey, token);
+        }
+    }
+
+    private <T> T loadAndStore(PageCodec codec, String hashKey, String field, Supplier<T> loader,
+            Function<T, Collection<String>> tagsOf, String versionAtStart) {
+        T value = loader.get();
+        if (!versionOf(hashKey).equals(versionAtStart)) {
+            // Dữ liệu vừa bị invalidate trong lúc query -> không ghi đè lên Redis
+            return value;
+        }
+        try {
+            put(hashKey, field, encode(codec, value), tagsOf.apply(value));
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("[ProductVariantPageCache] Lỗi serialize cache {}: {}", hashKey, e.getMessage());
+        }
+        if (!versionOf(hashKey).equals(versionAtStart)) {
+            // Invalidation đến giữa lúc kiểm tra và lúc ghi -> bỏ trang vừa ghi
+            evictField(hashKey, field);
+        }
+        return value;
+    }
+
+    /**
+     * @param versionAtStart phiên bản lúc đọc được bản stale: refresh bắt đầu trước một invalidation
+     *                       (kể cả khi luồng nền chưa kịp chạy) sẽ không ghi bản cũ trở lại L1 / Redis
+     */
+    private <T> void refreshInBackground(PageCodec codec, String hashKey, String field, String localKey,
+            Supplier<T> loader, Function<T, Collection<String>> tagsOf, String versionAtStart) {
+        if (!refreshing.add(localKey)) {
+            return;
+        }
+        Thread.ofVirtual().name("product-variant-cache-refresh").start(() -> {
+            String lockKey = LOCK_PREFIX + localKey;
+            String token = tryLock(lockKey);
+            try {
+                if (token == null) {
+                    // Node khác đang refresh key này
+                    return;
+                }
+                if (!versionOf(hashKey).equals(versionAtStart)) {
+                    // Đã bị invalidate sau khi đọc bản stale: request sau sẽ load lại từ đầu
+                    return;
+                }
+                loadAndStore(codec, hashKey, field, loader, tagsOf, versionAtStart);
+                localCache.invalidate(localKey);
+                refreshes.incrementAndGet();
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                log.warn("[ProductVariantPageCache] Lỗi refresh cache {}: {}", hashKey, e.getMessage());
+            } finally {
+                unlock(lockKey, token);
+                refreshing.remove(localKey);
+            }
+        });
+    }
+
+    private <T> CachedValue<T> waitForValue(String hashKey, String field, Class<T> type) {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            CachedValue<T> cached = read(hashKey, field, type);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return token nếu giữ được lock, NO_LOCK nếu Redis lỗi (vẫn cho load), null nếu node khác đang giữ
+     */
+    private String tryLock(String lockKey) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(lockKey, token, Duration.ofMillis(LOCK_TTL_MILLIS));
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            return NO_LOCK;
+        }
+    }
+
+    private void unlock(String lockKey, String token) {
+        if (token == null || NO_LOCK.equals(token)) {
+            return;
+        }
+        try {
+            // Chỉ xóa lock nếu vẫn là của mình (lock có thể đã hết hạn và bị node khác lấy)
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Giá trị trong hash: [8 byte refreshAt][1 byte id codec][dữ liệu đã encode].
+     * Giá trị không đúng định dạng (vd: JSON cũ) bị xóa và coi như miss.
+     */
+    private byte[] encode(PageCodec codec, Object value) throws IOException {
+        byte[] payload = codec.encode(value);
+        long refreshAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(CACHE_TTL_MINUTES);
+        return ByteBuffer.allocate(ENVELOPE_HEADER_BYTES + payload.length)
+                .putLong(refreshAt)
+                .put(codec.id())
+                .put(payload)
+                .array();
+    }
+
+    private <T> CachedValue<T> read(String hashKey, String field, Class<T> type) {
+        byte[] raw = get(hashKey, field);
+        if (raw == null) {
+            return null;
+        }
+        try {
+            PageCodec codec = raw.length > ENVELOPE_HEADER_BYTES ? codecsById.get(raw[Long.BYTES]) : null;
+            if (codec == null) {
+                throw new IOException("Định dạng cache không hợp lệ");
+            }
+            long refreshAt = ByteBuffer.wrap(raw, 0, Long.BYTES).getLong();
+            T value = codec.decode(raw, ENVELOPE_HEADER_BYTES, raw.length - ENVELOPE_HEADER_BYTES, type);
+            return new CachedValue<>(value, System.currentTimeMillis() >= refreshAt);
+        } catch (Exception e) {
+            evictField(hashKey, field);
+            return null;
+        }
+    }
+
+    private byte[] get(String hashKey, String field) {
+        try {
+            Object cached = binaryRedisTemplate.opsForHash().get(hashKey, field);
+            if (cached == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return (byte[]) cached;
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("[ProductVariantPageCache] Lỗi đọc cache {}: {}", hashKey, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ghi một trang vào hash và gắn hash vào các tag trong cùng một pipeline
+     */
+    private void put(String hashKey, String field, byte[] value, Collection<String> tags) {
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String tag : tags) {
+                    redis.sAdd(TAG_PREFIX + tag, hashKey);
+                    redis.expire(TAG_PREFIX + tag, TimeUnit.MINUTES.toSeconds(TAG_TTL_MINUTES));
+                }
+                redis.sAdd(ALL_KEYS, hashKey);
+                return null;
+            });
+            binaryRedisTemplate.opsForHash().put(hashKey, field, value);
+            binaryRedisTemplate.expire(hashKey, HASH_TTL_MINUTES, TimeUnit.MINUTES);
+            writes.incrementAndGet();
+            bytesWritten.addAndGet(value.length);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("[ProductVariantPageCache] Lỗi ghi cache {}: {}", hashKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Xóa một field hỏng (không đọc được)
+     */
+    private void evictField(String hashKey, String field) {
+        try {
+            binaryRedisTemplate.opsForHash().delete(hashKey, field);
+            evictions.incrementAndGet();
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Xóa trực tiếp các hash đã biết tên
+     */
+    public void invalidateKeys(Collection<String> hashKeys) {
+        delete(new HashSet<>(hashKeys), List.of());
+    }
+
+    /**
+     * Xóa toàn bộ hash thuộc các tag, kèm chính tag set đó
+     */
+    public void invalidateTags(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> tagKeys = tags.stream().map(tag -> TAG_PREFIX + tag).distinct().toList();
+            List<Object> members = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (String tagKey : tagKeys) {
+                    redis.sMembers(tagKey);
+                }
+                return null;
+            });
+            Set<String> hashKeys = new HashSet<>();
+            for (Object member : members) {
+                if (member instanceof Collection<?> keys) {
+                    keys.forEach(key -> hashKeys.add(key.toString()));
+                }
+            }
+            delete(hashKeys, tagKeys);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("[ProductVariantPageCache] Lỗi xóa cache theo tag {}: {}", tags, e.getMessage());
+        }
+    }
+
+    /**
+     * Xóa toàn bộ cache danh sách biến thể dựa trên tập ALL_KEYS
+     */
+    public void clearAll() {
+        try {
+            Set<String> hashKeys = stringRedisTemplate.opsForSet().members(ALL_KEYS);
+            List<String> extraKeys = new ArrayList<>();
+            extraKeys.add(ALL_KEYS);
+            delete(hashKeys != null ? hashKeys : Set.of(), extraKeys);
+            publishInvalidation(null);
+            log.info("[ProductVariantPageCache] Đã xóa {} hash cache", hashKeys != null ? hashKeys.size() : 0);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.error("[ProductVariantPageCache] Lỗi xóa toàn bộ cache: {}", e.getMessage());
+        }
+    }
+
+    private void delete(Set<String> hashKeys, List<String> extraKeys) {
+        if (hashKeys.isEmpty() && extraKeys.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(hashKeys);
+        keys.addAll(extraKeys);
+        Long deleted = stringRedisTemplate.delete(keys);
+        if (!hashKeys.isEmpty()) {
+            stringRedisTemplate.opsForSet().remove(ALL_KEYS, hashKeys.toArray());
+        }
+        evictions.addAndGet(Math.min(deleted != null ? deleted : 0, hashKeys.size()));
+        if (!hashKeys.isEmpty()) {
+            publishInvalidation(hashKeys);
+        }
+    }
+
+    /**
+     * Xóa L1 ngay tại node hiện tại rồi báo cho các node khác qua pub/sub
+     *
+     * @param hashKeys null -> xóa toàn bộ
+     */
+    private void publishInvalidation(Collection<String> hashKeys) {
+        String message = hashKeys == null ? INVALIDATE_ALL : String.join("\n", hashKeys);
+        evictLocal(message);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.warn("[ProductVariantPageCache] Lỗi publish invalidation: {}", e.getMessage());
+        }
+    }
+
+    private String versionOf(String hashKey) {
+        return generation.get() + ":" + hashVersions.getOrDefault(hashKey, 0L);
+    }
+
+    private void evictLocal(String message) {
+        if (INVALIDATE_ALL.equals(message)) {
+            generation.incrementAndGet();
+            localCache.invalidateAll();
+            return;
+        }
+        Set<String> hashKeys = new HashSet<>(Arrays.asList(message.split("\n")));
+        hashKeys.forEach(hashKey -> hashVersions.merge(hashKey, 1L, Long::sum));
+        localCache.asMap().keySet().removeIf(localKey ->
+                hashKeys.contains(localKey.substring(0, localKey.lastIndexOf(LOCAL_KEY_SEPARATOR))));
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        CacheStats localStats = localCache.stats();
+        Map<String, Object> local = new LinkedHashMap<>();
+        local.put("size", localCache.estimatedSize());
+        local.put("hits", localStats.hitCount());
+        local.put("misses", localStats.missCount());
+        local.put("hitRate", localStats.hitRate());
+        local.put("evictions", localStats.evictionCount());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("local", local);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("errors", errors.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("staleServed", staleServed.get());
+        stats.put("backgroundRefreshes", refreshes.get());
+        stats.put("lockWaits", lockWaits.get());
+        stats.put("writes", writes.get());
+        stats.put("avgEncodedBytes", writes.get() == 0 ? 0 : bytesWritten.get() / writes.get());
+        Map<String, String> codecs = new LinkedHashMap<>();
+        regionCodecs.forEach((region, codec) -> codecs.put(region, codec.name()));
+        stats.put("codecs", codecs);
+        return stats;
+    }
+}
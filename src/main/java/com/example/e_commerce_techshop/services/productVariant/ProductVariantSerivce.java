@@ -7,31 +7,39 @@ import com.example.e_commerce_techshop.models.Product;
 import com.example.e_commerce_techshop.models.ProductVariant;
 import com.example.e_commerce_techshop.models.Store;
 import com.example.e_commerce_techshop.repositories.*;
+import com.example.e_commerce_techshop.responses.ProductSuggestionResponse;
 import com.example.e_commerce_techshop.responses.ProductVariantResponse;
 import com.example.e_commerce_techshop.services.FileUploadService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.e_commerce_techshop.services.search.ProductVariantIndexSync;
+import com.example.e_commerce_techshop.services.search.ProductVariantSearchIndex;
+import com.example.e_commerce_techshop.services.search.ProductVariantSuggestionIndex;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -46,11 +54,16 @@ public class ProductVariantSerivce implements IProductVariantService {
 
     private final StoreRepository storeRepository;
 
-    private final ObjectMapper objectMapper;
+    private final ProductVariantSearchIndex searchIndex;
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private static final String CACHE_PREFIX = "product-variants:";
-    private static final long CACHE_TTL = 1; // 1 hour
+    private final ProductVariantSuggestionIndex suggestionIndex;
+
+    private final ProductVariantIndexSync indexSync;
+
+    private final ProductVariantPageCache pageCache;
+    private static final String CACHE_PREFIX = ProductVariantPageCache.CACHE_PREFIX;
+    private static final Duration LOCAL_TTL = Duration.ofSeconds(60);
+    private static final Duration LATEST_LOCAL_TTL = Duration.ofSeconds(15);
 
     @Override
     @Transactional
@@ -95,6 +108,7 @@ public class ProductVariantSerivce implements IProductVariantService {
                 .categoryName(product.getCategory().getName())
                 .brandName(product.getBrand().getName())
                 .storeId(product.getStore().getId())
+                .storeStatus(product.getStore().getStatus())
                 .price(productVariantDTO.getPrice())
                 .description(productVariantDTO.getDescription())
                 .stock(0)
@@ -124,6 +138,7 @@ public class ProductVariantSerivce implements IProductVariantService {
                 .categoryName(product.getCategory().getName())
                 .brandName(product.getBrand().getName())
                 .storeId(product.getStore().getId())
+                .storeStatus(product.getStore().getStatus())
                 .price(productVariantDTO.getPrice())
                 .description(productVariantDTO.getDescription())
                 .stock(0)
@@ -150,7 +165,11 @@ public class ProductVariantSerivce implements IProductVariantService {
         ProductVariant productVariant = productVariantRepository.findById(productVariantId)
                 .orElseThrow(() -> new DataNotFoundException("Không tìm thấy mẫu sản phẩm này"));
 
-        if(productVariant.getProduct().getStore().getStatus().equals(Store.StoreStatus.BANNED.name())) {
+        // Dùng storeStatus đã denormalize, chỉ đọc qua DBRef với variant cũ chưa có field này
+        String storeStatus = productVariant.getStoreStatus() != null
+                ? productVariant.getStoreStatus()
+                : productVariant.getProduct().getStore().getStatus();
+        if (Store.StoreStatus.BANNED.name().equals(storeStatus)) {
             throw new IllegalStateException("Cửa hàng của sản phẩm này đã bị khóa, không thể xem sản phẩm");
         }
 
@@ -181,97 +200,37 @@ public class ProductVariantSerivce implements IProductVariantService {
     @Override
     public Page<ProductVariantResponse> getByCategory(String category, Pageable pageable) throws Exception {
         String hashKey = CACHE_PREFIX + "category:" + category;
-        String field = buildField(pageable);
-
-        Object cached = redisTemplate.opsForHash().get(hashKey, field);
-
-        if (cached != null) {
-            try {
-                PageData pageData = objectMapper.readValue(cached.toString(), PageData.class);
-                return new PageImpl<>(pageData.getContent(), pageable, pageData.getTotalElements());
-            } catch (Exception e) {
-                redisTemplate.opsForHash().delete(hashKey, field);
-            }
-        }
-        // Query database
-        Page<ProductVariantResponse> productVariants = productVariantRepository
-                .findByCategoryNameAndStatusExcludingBannedStores(category, ProductVariant.VariantStatus.APPROVED.name(), pageable)
-                .map(ProductVariantResponse::fromProductVariant);
 
-        try {
-            PageData pageData = new PageData(productVariants.getContent(), productVariants.getTotalElements());
-            String serialized = objectMapper.writeValueAsString(pageData);
-            redisTemplate.opsForHash().put(hashKey, field, serialized);
-            redisTemplate.expire(hashKey, CACHE_TTL, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error caching product variants by category: " + e.getMessage());
-        }
-
-        return productVariants;
+        // Query database khi cả L1 và Redis đều miss
+        return getPage("category", hashKey, pageable, LOCAL_TTL, List.of(ProductVariantPageCache.categoryTag(category)),
+                () -> productVariantRepository
+                        .findByCategoryNameAndStatusExcludingBannedStores(category,
+                                ProductVariant.VariantStatus.APPROVED.name(), pageable)
+                        .map(ProductVariantResponse::fromProductVariant));
     }
 
     @Override
     public Page<ProductVariantResponse> getByCategoryAndBrand(String category, String brand, Pageable pageable) {
         String hashKey = CACHE_PREFIX + "category:" + category + ":brand:" + brand;
-        String field = buildField(pageable);
 
-        Object cached = redisTemplate.opsForHash().get(hashKey, field);
-
-        if (cached != null) {
-            try {
-                PageData pageData = objectMapper.readValue(cached.toString(), PageData.class);
-                return new PageImpl<>(pageData.getContent(), pageable, pageData.getTotalElements());
-            } catch (Exception e) {
-                redisTemplate.opsForHash().delete(hashKey, field);
-            }
-        }
-
-        Page<ProductVariant> productVariants = productVariantRepository
-                .findByCategoryNameAndBrandNameAndStatusExcludingBannedStores(category, brand,
-                        ProductVariant.VariantStatus.APPROVED.name(), pageable);
-
-        Page<ProductVariantResponse> result = productVariants.map(ProductVariantResponse::fromProductVariant);
-
-        try {
-            PageData pageData = new PageData(result.getContent(), result.getTotalElements());
-            redisTemplate.opsForHash().put(hashKey, field, objectMapper.writeValueAsString(pageData));
-            redisTemplate.expire(hashKey, CACHE_TTL, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error caching product variants by category and brand: " + e.getMessage());
-        }
-        return result;
+        return getPage("brand", hashKey, pageable, LOCAL_TTL,
+                List.of(ProductVariantPageCache.categoryTag(category), ProductVariantPageCache.brandTag(brand)),
+                () -> productVariantRepository
+                        .findByCategoryNameAndBrandNameAndStatusExcludingBannedStores(category, brand,
+                                ProductVariant.VariantStatus.APPROVED.name(), pageable)
+                        .map(ProductVariantResponse::fromProductVariant));
     }
 
     @Override
     public Page<ProductVariantResponse> getLatestProductVariants(Pageable pageable)
             throws Exception {
         String hashKey = CACHE_PREFIX + "latest";
-        String field = buildField(pageable);
-
-        Object cached = redisTemplate.opsForHash().get(hashKey, field);
 
-        if (cached != null) {
-            try {
-                PageData pageData = objectMapper.readValue(cached.toString(), PageData.class);
-                return new PageImpl<>(pageData.getContent(), pageable, pageData.getTotalElements());
-            } catch (Exception e) {
-                redisTemplate.opsForHash().delete(hashKey, field);
-            }
-        }
-
-        Page<ProductVariantResponse> result = productVariantRepository
-                .findByStatusExcludingBannedStores(ProductVariant.VariantStatus.APPROVED.name(), pageable)
-                .map(ProductVariantResponse::fromProductVariant);
-
-        try {
-            PageData pageData = new PageData(result.getContent(), result.getTotalElements());
-            redisTemplate.opsForHash().put(hashKey, field, objectMapper.writeValueAsString(pageData));
-            redisTemplate.expire(hashKey, CACHE_TTL, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error caching latest product variants: " + e.getMessage());
-        }
-
-        return result;
+        // Trang "mới nhất" đổi thường xuyên hơn -> giữ ở L1 ngắn hơn
+        return getPage("latest", hashKey, pageable, LATEST_LOCAL_TTL, List.of(),
+                () -> productVariantRepository
+                        .findByStatusExcludingBannedStores(ProductVariant.VariantStatus.APPROVED.name(), pageable)
+                        .map(ProductVariantResponse::fromProductVariant));
     }
 
     @Override
@@ -286,47 +245,45 @@ public class ProductVariantSerivce implements IProductVariantService {
         }
             
         String hashKey = CACHE_PREFIX + "store:" + storeId;
-        String field = buildField(pageable);
-
-        Object cached = redisTemplate.opsForHash().get(hashKey, field);
-
-        if (cached != null) {
-            try {
-                PageData pageData = objectMapper.readValue(cached.toString(), PageData.class);
-                return new PageImpl<>(pageData.getContent(), pageable, pageData.getTotalElements());
-            } catch (Exception e) {
-                redisTemplate.opsForHash().delete(hashKey, field);
-            }
-        }
-
-        Page<ProductVariantResponse> result = productVariantRepository
-                .findByStoreIdAndStatus(storeId, ProductVariant.VariantStatus.APPROVED.name(), pageable)
-                .map(ProductVariantResponse::fromProductVariant);
-
-        try {
-            PageData pageData = new PageData(result.getContent(), result.getTotalElements());
-            redisTemplate.opsForHash().put(hashKey, field, objectMapper.writeValueAsString(pageData));
-            redisTemplate.expire(hashKey, CACHE_TTL, TimeUnit.HOURS);
-        } catch (Exception e) {
-            System.err.println("Error caching product variants by store: " + e.getMessage());
-        }
 
-        return result;
+        return getPage("store", hashKey, pageable, LOCAL_TTL, List.of(ProductVariantPageCache.storeTag(storeId)),
+                () -> productVariantRepository
+                        .findByStoreIdAndStatus(storeId, ProductVariant.VariantStatus.APPROVED.name(), pageable)
+                        .map(ProductVariantResponse::fromProductVariant));
     }
 
     @Override
     public Page<ProductVariantResponse> searchByName(String name, int page, int size, String sortBy, String sortDir)
             throws Exception {
-        Pageable pageable = PageRequest.of(page, size,
-                sortDir.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending());
+        // sortBy = relevance -> sắp xếp theo độ liên quan
+        Sort sort = "relevance".equalsIgnoreCase(sortBy)
+                ? Sort.unsorted()
+                : sortDir.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        Pageable pageable = PageRequest.of(page, size, sort);
 
-        // Sử dụng custom repository method để filter ở database level
-        Page<ProductVariant> variantPage = productVariantRepository.searchByNameExcludingBannedStores(name,
+        if (searchIndex.isReady() && searchIndex.supportsSort(sort)) {
+            ProductVariantSearchIndex.SearchResult result = searchIndex.search(name, null,
+                    ProductVariant.VariantStatus.APPROVED.name(), true, page, size, sort);
+            return new PageImpl<>(findAllByIdInOrder(result.getIds()), pageable, result.getTotal())
+                    .map(ProductVariantResponse::fromProductVariant);
+        }
+
+        // Index chưa build xong -> dùng text index của MongoDB
+        Page<ProductVariant> variantPage = productVariantRepository.searchByTextExcludingBannedStores(name,
                 ProductVariant.VariantStatus.APPROVED.name(), pageable);
 
         return variantPage.map(ProductVariantResponse::fromProductVariant);
     }
 
+    private List<ProductVariant> findAllByIdInOrder(List<String> ids) {
+        Map<String, ProductVariant> variantsById = new HashMap<>();
+        productVariantRepository.findAllById(ids).forEach(variant -> variantsById.put(variant.getId(), variant));
+        return ids.stream()
+                .map(variantsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     @Transactional
     public void addProductVariantColors(String productVariantId, ColorOption colorOptionDTO, MultipartFile image)
@@ -418,7 +375,8 @@ public class ProductVariantSerivce implements IProductVariantService {
         }
 
         productVariant.setStock(newStock);
-        invalidateProductVariantCache(productVariant);
+        // Chỉ đổi stock -> chỉ các trang đang chứa variant bị ảnh hưởng
+        pageCache.invalidateTags(List.of(ProductVariantPageCache.variantTag(productVariantId)));
         productVariantRepository.save(productVariant);
     }
 
@@ -588,10 +546,19 @@ public class ProductVariantSerivce implements IProductVariantService {
     public Page<ProductVariant> searchByStoreAndName(String storeId, String name, String status, Pageable pageable)
             throws Exception {
         Page<ProductVariant> productVariants;
-        if (status != null && !status.isEmpty()) {
-            if (!ProductVariant.isValidStatus(status)) {
-                throw new IllegalArgumentException("Trạng thái không hợp lệ");
-            }
+        boolean hasStatus = status != null && !status.isEmpty();
+        if (hasStatus && !ProductVariant.isValidStatus(status)) {
+            throw new IllegalArgumentException("Trạng thái không hợp lệ");
+        }
+
+        if (searchIndex.isReady() && searchIndex.supportsSort(pageable.getSort())) {
+            ProductVariantSearchIndex.SearchResult result = searchIndex.search(name, storeId,
+                    hasStatus ? status : null, false,
+                    pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
+            return new PageImpl<>(findAllByIdInOrder(result.getIds()), pageable, result.getTotal());
+        }
+
+        if (hasStatus) {
             productVariants = productVariantRepository.searchByStoreIdAndNameAndStatus(storeId, name, status, pageable);
         } else {
             productVariants = productVariantRepository.searchByStoreIdAndName(storeId, name, pageable);
@@ -639,15 +606,43 @@ public class ProductVariantSerivce implements IProductVariantService {
                 ":sort:" + pageable.getSort().toString();
     }
 
-    private void invalidateProductVariantCache(ProductVariant variant) {
-        redisTemplate.delete(CACHE_PREFIX + "category:" + variant.getCategoryName());
-
-        redisTemplate.delete(CACHE_PREFIX + "category:" + variant.getCategoryName()
-                + ":brand:" + variant.getBrandName());
-
-        redisTemplate.delete(CACHE_PREFIX + "store:" + variant.getStoreId());
+    /**
+     * Đọc trang qua cache 2 tầng (L1 trong JVM -> Redis -> MongoDB).
+     * Hash Redis được gắn tag của phạm vi (category/brand/store) và tag của từng variant, store có trong trang.
+     */
+    private Page<ProductVariantResponse> getPage(String region, String hashKey, Pageable pageable, Duration localTtl,
+            List<String> scopeTags, Supplier<Page<ProductVariantResponse>> query) {
+        PageData pageData = pageCache.getOrLoad(region, hashKey, buildField(pageable), localTtl, PageData.class,
+                () -> {
+                    Page<ProductVariantResponse> page = query.get();
+                    return new PageData(page.getContent(), page.getTotalElements());
+                },
+                data -> {
+                    Set<String> tags = new LinkedHashSet<>(scopeTags);
+                    for (ProductVariantResponse variant : data.getContent()) {
+                        tags.add(ProductVariantPageCache.variantTag(variant.getId()));
+                        if (variant.getStore() != null && variant.getStore().getId() != null) {
+                            tags.add(ProductVariantPageCache.storeTag(variant.getStore().getId()));
+                        }
+                    }
+                    return tags;
+                });
+        return new PageImpl<>(pageData.getContent(), pageable, pageData.getTotalElements());
+    }
 
-        redisTemplate.delete(CACHE_PREFIX + "latest");
+    /**
+     * Variant thay đổi giá/trạng thái/thông tin -> thứ tự và thành phần các trang trong phạm vi
+     * của nó có thể đổi, nên xóa các hash của phạm vi và mọi hash đang chứa variant
+     */
+    private void invalidateProductVariantCache(ProductVariant variant) {
+        pageCache.invalidateKeys(List.of(
+                CACHE_PREFIX + "category:" + variant.getCategoryName(),
+                CACHE_PREFIX + "category:" + variant.getCategoryName() + ":brand:" + variant.getBrandName(),
+                CACHE_PREFIX + "store:" + variant.getStoreId(),
+                CACHE_PREFIX + "latest"));
+        if (variant.getId() != null) {
+            pageCache.invalidateTags(List.of(ProductVariantPageCache.variantTag(variant.getId())));
+        }
     }
 
     @Data
@@ -683,6 +678,14 @@ public class ProductVariantSerivce implements IProductVariantService {
         return statusCounts;
     }
 
+    @Override
+    public List<ProductSuggestionResponse> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        return suggestionIndex.suggest(prefix, limit);
+    }
+
     @Override
     public ProductVariant getProductVariantById(String productVariantId) throws Exception {
         return productVariantRepository.findById(productVariantId)
@@ -690,22 +693,46 @@ public class ProductVariantSerivce implements IProductVariantService {
     }
 
     /**
-     * Xóa toàn bộ cache product variants trong Redis
-     * Sử dụng khi cần clear tất cả cache (ví dụ: khi ban/unban store)
+     * Đồng bộ storeStatus cho toàn bộ variant của store khi store đổi trạng thái
+     * (duyệt, từ chối, ban, unban...) và xóa cache danh sách sản phẩm liên quan
      */
-    public void clearAllProductVariantCache() {
+    public void syncStoreStatus(String storeId, String storeStatus) {
+        long modified = productVariantRepository.updateStoreStatus(storeId, storeStatus);
+        searchIndex.updateStoreStatus(storeId, storeStatus);
+        suggestionIndex.updateStoreStatus(storeId, storeStatus);
+        indexSync.publishStoreStatus(storeId, storeStatus);
+        log.info("Synced storeStatus={} for {} variants of store {}", storeStatus, modified, storeId);
+
+        // Tag store: các trang đang chứa variant của store (ban -> phải biến mất);
+        // tag category: các trang mà variant của store có thể xuất hiện lại (unban, duyệt)
+        List<String> tags = new ArrayList<>();
+        tags.add(ProductVariantPageCache.storeTag(storeId));
+        productVariantRepository.findDistinctCategoryNamesByStoreId(storeId)
+                .forEach(category -> tags.add(ProductVariantPageCache.categoryTag(category)));
+        pageCache.invalidateTags(tags);
+        pageCache.invalidateKeys(List.of(CACHE_PREFIX + "latest"));
+    }
+
+    /**
+     * Gán storeStatus cho variant của các store đang bị ban khi khởi động,
+     * variant cũ chưa có field này được coi là không bị ban
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillBannedStoreStatus() {
         try {
-            // Xóa tất cả keys bắt đầu bằng "product-variants:"
-            var keys = redisTemplate.keys(CACHE_PREFIX + "*");
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
-                log.info("Cleared all product variant cache. Total keys deleted: {}", keys.size());
-            } else {
-                log.info("No product variant cache keys found to delete");
-            }
+            storeRepository.findByStatus(Store.StoreStatus.BANNED.name())
+                    .forEach(store -> productVariantRepository.updateStoreStatus(store.getId(), store.getStatus()));
         } catch (Exception e) {
-            log.error("Error clearing all product variant cache: {}", e.getMessage());
+            log.error("Error backfilling storeStatus for banned stores: {}", e.getMessage());
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Xóa toàn bộ cache product variants trong Redis
+     * Dựa trên tập key đã đăng ký, không dùng lệnh KEYS
+     */
+    public void clearAllProductVariantCache() {
+        pageCache.clearAll();
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.example.e_commerce_techshop.services.productVariant.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Nén kết quả của codec khác bằng Deflate (mức BEST_SPEED).
+ * Định dạng: [4 byte độ dài gốc][dữ liệu nén]
+ */
+public class DeflatePageCodec implements PageCodec {
+
+    private final byte id;
+    private final String name;
+    private final PageCodec delegate;
+
+    public DeflatePageCodec(byte id, String name, PageCodec delegate) {
+        this.id = id;
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        byte[] raw = delegate.encode(value);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + Integer.BYTES);
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(raw.length).array());
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, Class<T> type) throws IOException {
+        int rawLength = ByteBuffer.wrap(data, offset, Integer.BYTES).getInt();
+        byte[] raw = new byte[rawLength];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset + Integer.BYTES, length - Integer.BYTES);
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int count = inflater.inflate(raw, read, rawLength - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Dữ liệu nén không hợp lệ");
+                }
+                read += count;
+            }
+            if (read != rawLength) {
+                throw new IOException("Dữ liệu nén không đủ độ dài");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Dữ liệu nén không hợp lệ", e);
+        } finally {
+            inflater.end();
+        }
+        return delegate.decode(raw, 0, rawLength, type);
+    }
+}
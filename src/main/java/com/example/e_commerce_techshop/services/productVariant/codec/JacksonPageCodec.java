@@ -0,0 +1,41 @@
+package com.example.e_commerce_techshop.services.productVariant.codec;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Codec dựa trên Jackson: JSON (như trước đây) hoặc CBOR (nhị phân, cùng mapping)
+ */
+public class JacksonPageCodec implements PageCodec {
+
+    private final byte id;
+    private final String name;
+    private final ObjectMapper mapper;
+
+    public JacksonPageCodec(byte id, String name, ObjectMapper mapper) {
+        this.id = id;
+        this.name = name;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public byte id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] data, int offset, int length, Class<T> type) throws IOException {
+        return mapper.readValue(data, offset, length, type);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.e_commerce_techshop.services.productVariant.codec;
+
+import java.io.IOException;
+
+/**
+ * Định dạng lưu trang cache trên Redis.
+ * Mỗi codec có id 1 byte được ghi kèm giá trị, nên đổi codec của một vùng cache
+ * không làm hỏng các giá trị đã ghi bằng codec cũ.
+ */
+public interface PageCodec {
+
+    byte id();
+
+    String name();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] data, int offset, int length, Class<T> type) throws IOException;
+}
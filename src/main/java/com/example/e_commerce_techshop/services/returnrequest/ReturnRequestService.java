@@ -1581,8 +1581,8 @@ public class ReturnRequestService implements IReturnRequestService {
                 store.setStatus(Store.StoreStatus.BANNED.name());
                 storeRepository.save(store);
                 
-                // Xóa toàn bộ cache product variants trong Redis
-                productVariantService.clearAllProductVariantCache();
+                // Đồng bộ storeStatus sang các variant và xóa cache product variants trong Redis
+                productVariantService.syncStoreStatus(store.getId(), store.getStatus());
 
                 // Tự động hủy các đơn hàng PENDING
                 cancelPendingOrdersForBannedStore(store);
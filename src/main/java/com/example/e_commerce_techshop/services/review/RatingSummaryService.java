@@ -0,0 +1,280 @@
+package com.example.e_commerce_techshop.services.review;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import com.example.e_commerce_techshop.models.RatingSummary;
+import com.example.e_commerce_techshop.models.Review;
+import com.example.e_commerce_techshop.repositories.RatingSummaryRepository;
+import com.example.e_commerce_techshop.services.scheduled.StartupBackfill;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.DBRef;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tổng hợp đánh giá (số lượng, tổng sao, phân bố 1-5) theo biến thể, sản phẩm và shop.
+ * Cập nhật bằng $inc khi tạo / sửa / xóa review, đọc qua cache Caffeine ngắn hạn
+ * (node khác có thể thấy số liệu cũ tối đa CACHE_TTL).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RatingSummaryService {
+
+    private static final Duration CACHE_TTL = Duration.ofSeconds(30);
+    private static final long MAX_ENTRIES = 20_000;
+    private static final String BACKFILL_NAME = "rating-summaries";
+
+    // Trong lúc rebuild, mọi node ghi id các tổng hợp bị $inc vào TOUCHED_KEY để tính lại sau khi rename
+    private static final String REBUILDING_KEY = "rating-summaries:rebuilding";
+    private static final String TOUCHED_KEY = "rating-summaries:touched";
+    private static final Duration REBUILDING_TTL = Duration.ofHours(1);
+    private static final RedisScript<Long> TOUCH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return redis.call('sadd', KEYS[2], unpack(ARGV)) end return 0",
+            Long.class);
+
+    private final RatingSummaryRepository ratingSummaryRepository;
+    private final MongoTemplate mongoTemplate;
+    private final StartupBackfill startupBackfill;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<String, Optional<RatingSummary>> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(CACHE_TTL)
+            .build();
+
+    /**
+     * Một lần cho cả cụm (StartupBackfill): điền productId/storeId cho review cũ và tính lại toàn bộ.
+     * Không dựa vào rating_summaries rỗng vì review mới có thể đã tạo tổng hợp trước khi backfill chạy.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread.ofVirtual().name("rating-summary-backfill").start(() -> {
+            try {
+                startupBackfill.runOnce(BACKFILL_NAME, this::rebuild);
+            } catch (Exception e) {
+                log.error("[RatingSummary] Lỗi backfill: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    public void addReview(Review review) {
+        apply(review, review.getRating(), 1);
+    }
+
+    public void removeReview(Review review) {
+        apply(review, review.getRating(), -1);
+    }
+
+    public void changeRating(Review review, Integer oldRating) {
+        if (oldRating == null || oldRating.equals(review.getRating())) {
+            return;
+        }
+        apply(review, oldRating, -1);
+        apply(review, review.getRating(), 1);
+    }
+
+    public Optional<RatingSummary> get(RatingSummary.Scope scope, String targetId) {
+        String id = RatingSummary.idOf(scope, targetId);
+        return cache.get(id, ratingSummaryRepository::findById);
+    }
+
+    private void apply(Review review, Integer rating, int delta) {
+        if (rating == null) {
+            return;
+        }
+        Map<RatingSummary.Scope, String> targets = new HashMap<>();
+        if (review.getProductVariant() != null) {
+            targets.put(RatingSummary.Scope.VARIANT, review.getProductVariant().getId());
+        }
+        if (review.getProductId() != null) {
+            targets.put(RatingSummary.Scope.PRODUCT, review.getProductId());
+        }
+        if (review.getStoreId() != null) {
+            targets.put(RatingSummary.Scope.STORE, review.getStoreId());
+        }
+        targets.forEach((scope, targetId) -> {
+            ratingSummaryRepository.incrementRating(scope, targetId, rating, delta);
+            cache.invalidate(RatingSummary.idOf(scope, targetId));
+        });
+        markTouchedIfRebuilding(targets);
+    }
+
+    private void markTouchedIfRebuilding(Map<RatingSummary.Scope, String> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(TOUCH_SCRIPT, List.of(REBUILDING_KEY, TOUCHED_KEY),
+                    targets.entrySet().stream()
+                            .map(target -> RatingSummary.idOf(target.getKey(), target.getValue()))
+                            .toArray());
+        } catch (Exception e) {
+            log.warn("[RatingSummary] Không ghi được tổng hợp thay đổi trong lúc rebuild: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Tính lại toàn bộ rating_summaries từ reviews (đọc dạng Document, không resolve DBRef)
+     * và điền productId/storeId cho các review chưa có.
+     * Kết quả được ghi vào collection tạm rồi rename đè lên, không có lúc rating_summaries bị rỗng.
+     * $inc từ review tạo / sửa / xóa trong lúc đó rơi vào collection cũ, nên các tổng hợp bị chạm tới
+     * (ghi lại ở TOUCHED_KEY) được tính lại từ reviews sau khi rename.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        stringRedisTemplate.delete(TOUCHED_KEY);
+        stringRedisTemplate.opsForValue().set(REBUILDING_KEY, String.valueOf(start), REBUILDING_TTL);
+
+        // variantId -> [productId, storeId]
+        Map<String, String[]> variantOwners = new HashMap<>();
+        Query variantQuery = new Query();
+        variantQuery.fields().include("product", "storeId");
+        try (Stream<Document> stream = mongoTemplate.stream(variantQuery, Document.class, "product_variants")) {
+            stream.forEach(doc -> variantOwners.put(doc.get("_id").toString(), new String[] {
+                    doc.get("product") instanceof DBRef product ? product.getId().toString() : null,
+                    doc.getString("storeId") }));
+        }
+
+        Map<String, RatingSummary> summaries = new HashMap<>();
+        BulkOperations reviewUpdates = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Review.class);
+        int[] pendingUpdates = { 0 };
+
+        Query reviewQuery = new Query();
+        reviewQuery.fields().include("rating", "productVariant", "productId", "storeId");
+        try (Stream<Document> stream = mongoTemplate.stream(reviewQuery, Document.class, "reviews")) {
+            stream.forEach(doc -> {
+                if (!(doc.get("productVariant") instanceof DBRef variant) || !(doc.get("rating") instanceof Number rating)) {
+                    return;
+                }
+                String variantId = variant.getId().toString();
+                String productId = doc.getString("productId");
+                String storeId = doc.getString("storeId");
+                String[] owner = variantOwners.get(variantId);
+                if ((productId == null || storeId == null) && owner != null) {
+                    productId = productId != null ? productId : owner[0];
+                    storeId = storeId != null ? storeId : owner[1];
+                    reviewUpdates.updateOne(new Query(Criteria.where("_id").is(doc.get("_id"))),
+                            new Update().set("productId", productId).set("storeId", storeId));
+                    pendingUpdates[0]++;
+                }
+
+                add(summaries, RatingSummary.Scope.VARIANT, variantId, rating.intValue());
+                add(summaries, RatingSummary.Scope.PRODUCT, productId, rating.intValue());
+                add(summaries, RatingSummary.Scope.STORE, storeId, rating.intValue());
+            });
+        }
+
+        if (pendingUpdates[0] > 0) {
+            reviewUpdates.execute();
+        }
+        try {
+            startupBackfill.replaceCollection(mongoTemplate.getCollectionName(RatingSummary.class),
+                    new ArrayList<>(summaries.values()));
+        } finally {
+            stringRedisTemplate.delete(REBUILDING_KEY);
+        }
+        Set<String> touched = stringRedisTemplate.opsForSet().members(TOUCHED_KEY);
+        stringRedisTemplate.delete(TOUCHED_KEY);
+        if (touched != null) {
+            touched.forEach(this::recompute);
+        }
+        cache.invalidateAll();
+
+        log.info("[RatingSummary] Rebuilt {} summaries ({} reviews backfilled, {} recomputed) in {} ms",
+                summaries.size(), pendingUpdates[0], touched != null ? touched.size() : 0,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Tính lại một tổng hợp từ reviews và ghi đè (xóa nếu không còn review)
+     */
+    private void recompute(String summaryId) {
+        int separator = summaryId.indexOf(':');
+        RatingSummary.Scope scope = RatingSummary.Scope.valueOf(summaryId.substring(0, separator));
+        String targetId = summaryId.substring(separator + 1);
+        Criteria criteria = switch (scope) {
+            case VARIANT -> Criteria.where("productVariant.$id")
+                    .is(ObjectId.isValid(targetId) ? new ObjectId(targetId) : targetId);
+            case PRODUCT -> Criteria.where("productId").is(targetId);
+            case STORE -> Criteria.where("storeId").is(targetId);
+        };
+
+        Map<String, RatingSummary> summaries = new HashMap<>();
+        Query query = new Query(criteria);
+        query.fields().include("rating");
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, "reviews")) {
+            stream.forEach(doc -> {
+                if (doc.get("rating") instanceof Number rating) {
+                    add(summaries, scope, targetId, rating.intValue());
+                }
+            });
+        }
+        RatingSummary summary = summaries.get(summaryId);
+        if (summary != null) {
+            mongoTemplate.save(summary);
+        } else {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(summaryId)), RatingSummary.class);
+        }
+    }
+
+    private void add(Map<String, RatingSummary> summaries, RatingSummary.Scope scope, String targetId, int rating) {
+        if (targetId == null) {
+            return;
+        }
+        RatingSummary summary = summaries.computeIfAbsent(RatingSummary.idOf(scope, targetId), id -> RatingSummary.builder()
+                .id(id)
+                .scope(scope.name())
+                .targetId(targetId)
+                .histogram(new HashMap<>())
+                .build());
+        summary.setCount(summary.getCount() + 1);
+        summary.setSum(summary.getSum() + rating);
+        summary.getHistogram().merge(String.valueOf(rating), 1L, Long::sum);
+    }
+
+    /**
+     * Kết quả dạng cũ của API thống kê: totalReviews, averageRating (làm tròn 1 chữ số), ratingDistribution "1".."5"
+     */
+    public static Map<String, Object> toStats(Optional<RatingSummary> summary) {
+        Map<String, Object> stats = new HashMap<>();
+        long count = summary.map(RatingSummary::getCount).orElse(0L);
+        double average = summary.map(RatingSummary::getAverage).orElse(0.0);
+
+        Map<String, Long> ratingDistribution = new HashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            String key = String.valueOf(i);
+            ratingDistribution.put(key, summary.map(RatingSummary::getHistogram)
+                    .map(histogram -> histogram.getOrDefault(key, 0L))
+                    .orElse(0L));
+        }
+
+        stats.put("totalReviews", count);
+        stats.put("averageRating", Math.round(average * 10.0) / 10.0);
+        stats.put("ratingDistribution", ratingDistribution);
+        return stats;
+    }
+}
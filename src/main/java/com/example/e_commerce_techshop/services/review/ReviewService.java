@@ -11,14 +11,13 @@ import com.example.e_commerce_techshop.services.FileUploadService;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -33,6 +32,7 @@ public class ReviewService implements IReviewService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final FileUploadService fileUploadService;
+    private final RatingSummaryService ratingSummaryService;
 
     @Override
     @Transactional
@@ -55,10 +55,7 @@ public class ReviewService implements IReviewService {
                 .orElseThrow(() -> new DataNotFoundException("Product variant not found"));
 
         // Kiểm tra user đã review product variant này trong order này chưa
-        List<Review> existingReviews = reviewRepository.findByUserId(currentUser.getId());
-        boolean alreadyReviewed = existingReviews.stream()
-                .anyMatch(r -> r.getOrder().getId().equals(order.getId()) 
-                        && r.getProductVariant().getId().equals(productVariant.getId()));
+        boolean alreadyReviewed = reviewRepository.existsByOrderIdAndProductVariantId(order.getId(), productVariant.getId());
 
         if (alreadyReviewed) {
             throw new IllegalArgumentException("You have already reviewed this product in this order");
@@ -78,11 +75,14 @@ public class ReviewService implements IReviewService {
                 .productVariant(productVariant)
                 .user(currentUser)
                 .imageUrls(imageUrls)
+                .productId(productVariant.getProduct() != null ? productVariant.getProduct().getId() : null)
+                .storeId(productVariant.getStoreId())
                 .build();
         order.setRated(true);
         
         orderRepository.save(order);
         reviewRepository.save(review);
+        ratingSummaryService.addReview(review);
     }
 
     @Override
@@ -97,6 +97,7 @@ public class ReviewService implements IReviewService {
         }
 
         // Cập nhật thông tin
+        Integer oldRating = existingReview.getRating();
         existingReview.setRating(reviewDTO.getRating());
         existingReview.setComment(reviewDTO.getComment());
 
@@ -115,6 +116,7 @@ public class ReviewService implements IReviewService {
         }
 
         reviewRepository.save(existingReview);
+        ratingSummaryService.changeRating(existingReview, oldRating);
     }
 
     @Override
@@ -128,6 +130,7 @@ public class ReviewService implements IReviewService {
         }
 
         reviewRepository.delete(existingReview);
+        ratingSummaryService.removeReview(existingReview);
     }
 
     @Override
@@ -136,14 +139,7 @@ public class ReviewService implements IReviewService {
         productRepository.findById(productId)
                 .orElseThrow(() -> new DataNotFoundException("Product not found"));
         
-        List<Review> allReviews = reviewRepository.findByProductId(productId);
-        
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), allReviews.size());
-        
-        List<Review> pageContent = allReviews.subList(start, end);
-        
-        return new PageImpl<>(pageContent, pageable, allReviews.size());
+        return reviewRepository.findByProductId(productId, pageable);
     }
 
     @Override
@@ -158,50 +154,17 @@ public class ReviewService implements IReviewService {
     @Override
     public Map<String, Object> getProductRatingStats(String productVariantId) {
         // Kiểm tra product tồn tại
-        productVariantRepository.findById(productVariantId)
-                .orElseThrow(() -> new DataNotFoundException("Product variant not found"));
-
-        List<Review> reviews = reviewRepository.findByProductVariantId(productVariantId);
-        
-        Map<String, Object> stats = new HashMap<>();
-        
-        if (reviews.isEmpty()) {
-            stats.put("totalReviews", 0);
-            stats.put("averageRating", 0.0);
-            stats.put("ratingDistribution", Map.of(
-                "5", 0, "4", 0, "3", 0, "2", 0, "1", 0
-            ));
-            return stats;
+        if (!productVariantRepository.existsById(productVariantId)) {
+            throw new DataNotFoundException("Product variant not found");
         }
 
-        // Tính average rating
-        double averageRating = reviews.stream()
-                .mapToInt(Review::getRating)
-                .average()
-                .orElse(0.0);
-
-        // Phân bố rating
-        Map<String, Long> ratingDistribution = reviews.stream()
-                .collect(Collectors.groupingBy(
-                    r -> String.valueOf(r.getRating()),
-                    Collectors.counting()
-                ));
-
-        // Đảm bảo có đủ tất cả rating từ 1-5
-        for (int i = 1; i <= 5; i++) {
-            ratingDistribution.putIfAbsent(String.valueOf(i), 0L);
-        }
-
-        stats.put("totalReviews", reviews.size());
-        stats.put("averageRating", Math.round(averageRating * 10.0) / 10.0);
-        stats.put("ratingDistribution", ratingDistribution);
-        
-        return stats;
+        // Đọc tổng hợp đã tính sẵn thay vì tải toàn bộ review
+        return RatingSummaryService.toStats(ratingSummaryService.get(RatingSummary.Scope.VARIANT, productVariantId));
     }
     
     @Override
     public List<ReviewResponse> getReviewsByStore(String storeId) {
-        List<Review> reviews = reviewRepository.findByOrder_StoreId(storeId);
+        List<Review> reviews = reviewRepository.findByStoreId(storeId);
         return reviews.stream()
                 .map(ReviewResponse::fromReview)
                 .collect(Collectors.toList());
@@ -224,28 +187,29 @@ public class ReviewService implements IReviewService {
     
     @Override
     public Double getAverageRatingByStore(String storeId) {
-        return reviewRepository.getAverageRatingByStoreId(storeId);
+        return ratingSummaryService.get(RatingSummary.Scope.STORE, storeId)
+                .map(RatingSummary::getAverage)
+                .orElse(0.0);
     }
     
     @Override
     public Long getReviewCountByStore(String storeId) {
-        return reviewRepository.countByStoreId(storeId);
+        return ratingSummaryService.get(RatingSummary.Scope.STORE, storeId)
+                .map(RatingSummary::getCount)
+                .orElse(0L);
     }
     
     @Override
     public List<ReviewResponse> getReviewsByRating(String storeId, Integer rating) {
-        List<ReviewResponse> allReviews = getReviewsByStore(storeId);
-        return allReviews.stream()
-                .filter(review -> review.getRating().equals(rating))
+        return reviewRepository.findByStoreIdAndRating(storeId, rating).stream()
+                .map(ReviewResponse::fromReview)
                 .collect(Collectors.toList());
     }
     
     @Override
     public List<ReviewResponse> getRecentReviewsByStore(String storeId, int limit) {
-        List<ReviewResponse> reviews = getReviewsByStore(storeId);
-        return reviews.stream()
-                .sorted((r1, r2) -> r2.getCreatedAt().compareTo(r1.getCreatedAt()))
-                .limit(limit)
+        return reviewRepository.findByStoreIdOrderByCreatedAtDesc(storeId, PageRequest.of(0, limit)).stream()
+                .map(ReviewResponse::fromReview)
                 .collect(Collectors.toList());
     }
 }
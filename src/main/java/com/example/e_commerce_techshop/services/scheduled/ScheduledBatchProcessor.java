@@ -0,0 +1,257 @@
+package com.example.e_commerce_techshop.services.scheduled;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chạy job định kỳ theo từng lô CHUNK_SIZE bản ghi (seek theo _id, không giữ cursor lâu):
+ * 1. Đổi trạng thái cả lô bằng một lệnh updateMulti, kèm đánh dấu MARKER_FIELD = tên job:fencing token
+ *    và TOKEN_FIELD = fencing token (điều kiện chọn được lặp lại khi update nên bản ghi vừa bị đổi ở nơi khác
+ *    sẽ bị bỏ qua).
+ * 2. Chạy các bước sau (ví, doanh thu, thông báo...) trên virtual thread, tối đa MAX_CONCURRENCY nhóm song song;
+ *    bản ghi cùng nhóm (vd cùng shop) chạy tuần tự để không ghi đè ví của nhau.
+ *    Ngay trước bước sau, bản ghi được nhận bằng findAndModify có điều kiện TOKEN_FIELD <= token của lượt chạy:
+ *    node đã mất lease (token nhỏ hơn) không nhận được bản ghi mà node giữ lease mới đã tiếp quản, nên bỏ qua nó.
+ * 3. Mỗi bước sau (Steps.run) xong thì được ghi vào STEPS_FIELD của bản ghi; xong hết thì bỏ đánh dấu bản ghi đó.
+ * Nếu tiến trình dừng giữa chừng, lần chạy sau xử lý tiếp các bản ghi còn đánh dấu, bỏ qua các bước đã ghi nhận
+ * (bước dừng giữa lúc chạy và lúc ghi nhận sẽ chạy lại nên các bước ghi tiền phải tự kiểm tra đã làm chưa).
+ * Trước mỗi lô kiểm tra node còn giữ khóa của job (ScheduledJobLock), mất khóa thì dừng.
+ * Không bật khóa (scheduler.lock.enabled = false) thì token = 0, không có fencing giữa các node.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledBatchProcessor {
+
+    public static final String MARKER_FIELD = "pendingScheduledJob";
+    public static final String TOKEN_FIELD = "pendingScheduledJobToken";
+    public static final String STEPS_FIELD = "completedScheduledSteps";
+
+    private static final int CHUNK_SIZE = 200;
+    private static final int MAX_CONCURRENCY = 16;
+
+    private final MongoTemplate mongoTemplate;
+    private final ScheduledJobLock scheduledJobLock;
+
+    @FunctionalInterface
+    public interface SideEffect<T> {
+        void apply(T item, Steps steps) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * Các bước đã xong của một bản ghi (đọc lại khi tiếp tục lần chạy dở)
+     */
+    public final class Steps {
+        private final Class<?> type;
+        private final String id;
+        private final Set<String> completed;
+
+        private Steps(Class<?> type, String id, Set<String> completed) {
+            this.type = type;
+            this.id = id;
+            this.completed = completed;
+        }
+
+        /**
+         * Chạy bước nếu chưa ghi nhận là đã xong, chạy xong thì ghi nhận; bước lỗi thì ném lỗi và không ghi nhận
+         */
+        public void run(String name, Step step) throws Exception {
+            if (completed.contains(name)) {
+                log.info("[ScheduledBatchProcessor] Bỏ qua bước {} đã xong của #{}", name, id);
+                return;
+            }
+            step.run();
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), new Update().addToSet(STEPS_FIELD, name),
+                    type);
+            completed.add(name);
+        }
+    }
+
+    public record Result(int success, int failed) {
+    }
+
+    /**
+     * @param criteria   điều kiện chọn bản ghi cần xử lý
+     * @param update     thay đổi trạng thái áp dụng cho cả lô
+     * @param groupKey   khóa nhóm chạy tuần tự (null = bản ghi độc lập)
+     * @param sideEffect các bước sau khi đổi trạng thái, phải tự cập nhật trạng thái mới lên entity trong bộ nhớ
+     *                   (bản ghi của lần chạy dở được đọc lại với trạng thái đã đổi)
+     */
+    public <T> Result run(String jobName, Class<T> type, Criteria criteria, Update update,
+            Function<T, String> idOf, Function<T, String> groupKey, SideEffect<T> sideEffect) {
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        // Mỗi lượt chạy một nhãn riêng; token của lease dùng để chặn node cũ ở từng lệnh nhận bản ghi
+        long token = scheduledJobLock.heldLease(jobName)
+                .map(ScheduledJobLock.Lease::getFencingToken)
+                .orElse(0L);
+        RunTag run = new RunTag(jobName, token > 0 ? jobName + ":" + token : jobName + ":" + UUID.randomUUID(), token);
+
+        // Lô dở dang của lần chạy trước: trạng thái đã đổi nhưng chưa chạy xong các bước sau
+        Criteria unfinished = unfinished(jobName);
+        String lastId = null;
+        List<T> chunk;
+        while (!(chunk = findChunk(jobName, type, unfinished, lastId)).isEmpty()) {
+            lastId = idOf.apply(chunk.get(chunk.size() - 1));
+            log.info("[{}] Tiếp tục {} bản ghi của lần chạy trước", jobName, chunk.size());
+            applySideEffects(run, type, chunk, idOf, groupKey, sideEffect, success, failed);
+        }
+
+        update.set(MARKER_FIELD, run.tag()).set(TOKEN_FIELD, run.token());
+        lastId = null;
+        while (!(chunk = findChunk(jobName, type, criteria, lastId)).isEmpty()) {
+            lastId = idOf.apply(chunk.get(chunk.size() - 1));
+            List<String> ids = chunk.stream().map(idOf).toList();
+
+            // Bản ghi không được lô này đổi trạng thái thì không có đánh dấu, lệnh nhận sẽ bỏ qua
+            mongoTemplate.updateMulti(new Query(criteria).addCriteria(Criteria.where("_id").in(ids)), update, type);
+            applySideEffects(run, type, chunk, idOf, groupKey, sideEffect, success, failed);
+        }
+
+        return new Result(success.get(), failed.get());
+    }
+
+    private <T> List<T> findChunk(String jobName, Class<T> type, Criteria criteria, String afterId) {
+        scheduledJobLock.ensureHeld(jobName);
+        Query query = new Query(criteria);
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("_id").gt(afterId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(CHUNK_SIZE);
+        return mongoTemplate.find(query, type);
+    }
+
+    private record RunTag(String jobName, String tag, long token) {
+    }
+
+    // Đánh dấu luôn có dạng "{jobName}:{token}": regex tiền tố cố định (không dùng \Q..\E hay nhánh |)
+    // để MongoDB quét đúng khoảng trên index pending_scheduled_job_idx
+    private static Criteria unfinished(String jobName) {
+        return Criteria.where(MARKER_FIELD).regex("^" + escapeRegex(jobName) + ":");
+    }
+
+    private static String escapeRegex(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Nhận bản ghi cho lượt chạy ngay trước bước sau: chỉ thành công khi bản ghi còn đánh dấu của job và chưa bị
+     * lượt chạy có token lớn hơn tiếp quản
+     *
+     * @return bản ghi (đọc lại sau khi nhận) hoặc null nếu không nhận được
+     */
+    private <T> T claim(RunTag run, Class<T> type, String id) {
+        Query query = new Query(Criteria.where("_id").is(id)
+                .andOperator(unfinished(run.jobName()),
+                        new Criteria().orOperator(Criteria.where(TOKEN_FIELD).lte(run.token()),
+                                Criteria.where(TOKEN_FIELD).exists(false))));
+        Update update = new Update().set(MARKER_FIELD, run.tag()).set(TOKEN_FIELD, run.token());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), type);
+    }
+
+    private <T> void applySideEffects(RunTag run, Class<T> type, List<T> items, Function<T, String> idOf,
+            Function<T, String> groupKey, SideEffect<T> sideEffect, AtomicInteger success, AtomicInteger failed) {
+        String jobName = run.jobName();
+        Map<String, List<T>> groups = items.stream().collect(Collectors.groupingBy(item -> {
+            String key = groupKey != null ? groupKey.apply(item) : null;
+            return key != null ? key : idOf.apply(item);
+        }, LinkedHashMap::new, Collectors.toList()));
+
+        Map<String, Set<String>> completedSteps = completedSteps(type, items.stream().map(idOf).toList());
+
+        Semaphore permits = new Semaphore(MAX_CONCURRENCY);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<T> group : groups.values()) {
+                permits.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        for (T chunkItem : group) {
+                            String id = idOf.apply(chunkItem);
+                            T item = claim(run, type, id);
+                            if (item == null) {
+                                log.warn("[{}] Bỏ qua #{}: đã được lượt chạy khác nhận hoặc không còn đánh dấu",
+                                        jobName, id);
+                                continue;
+                            }
+                            try {
+                                sideEffect.apply(item, new Steps(type, id,
+                                        completedSteps.getOrDefault(id, ConcurrentHashMap.newKeySet())));
+                                success.incrementAndGet();
+                            } catch (Exception e) {
+                                failed.incrementAndGet();
+                                log.error("[{}] Lỗi khi xử lý #{}: {}", jobName, id, e.getMessage());
+                            }
+                            // Đã thử xong (lỗi đã ghi log như trước) -> không chạy lại ở lần sau;
+                            // bản ghi đã bị lượt chạy mới tiếp quản thì để lượt đó bỏ đánh dấu
+                            try {
+                                mongoTemplate.updateFirst(
+                                        new Query(Criteria.where("_id").is(id).and(MARKER_FIELD).is(run.tag())),
+                                        new Update().unset(MARKER_FIELD).unset(TOKEN_FIELD).unset(STEPS_FIELD), type);
+                            } catch (Exception e) {
+                                log.warn("[{}] Không bỏ được đánh dấu #{}: {}", jobName, id, e.getMessage());
+                            }
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    // Đọc STEPS_FIELD thô (field không có trên entity) của các bản ghi trong lô bằng một truy vấn
+    private Map<String, Set<String>> completedSteps(Class<?> type, List<String> ids) {
+        Map<String, Set<String>> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        List<Object> documentIds = ids.stream()
+                .<Object>map(id -> ObjectId.isValid(id) ? new ObjectId(id) : id)
+                .toList();
+        Query query = new Query(Criteria.where("_id").in(documentIds).and(STEPS_FIELD).exists(true));
+        query.fields().include(STEPS_FIELD);
+        for (Document document : mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(type))) {
+            Set<String> steps = ConcurrentHashMap.newKeySet();
+            steps.addAll(document.getList(STEPS_FIELD, String.class));
+            result.put(document.get("_id").toString(), steps);
+        }
+        return result;
+    }
+}
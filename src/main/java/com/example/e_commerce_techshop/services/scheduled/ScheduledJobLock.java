@@ -0,0 +1,152 @@
+package com.example.e_commerce_techshop.services.scheduled;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Khóa Redis cho job định kỳ khi chạy nhiều node: chỉ node giữ lease mới chạy job.
+ * - Lease có TTL, được gia hạn mỗi 1/3 TTL khi job còn chạy; node chết thì lease tự hết hạn.
+ * - Mỗi lần lấy khóa nhận một fencing token tăng dần (INCR), node mất khóa sẽ thấy token trong Redis khác token của mình.
+ * Job kiểm tra ensureHeld trước mỗi lô để dừng lại khi đã mất khóa; token còn được so ở từng lệnh nhận bản ghi
+ * (ScheduledBatchProcessor) nên node cũ đang chạy dở lô không ghi đè được bản ghi node mới đã tiếp quản.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledJobLock {
+
+    private static final String LOCK_PREFIX = "scheduler:lock:";
+    private static final String FENCE_PREFIX = "scheduler:fence:";
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final NodeIdentity nodeIdentity;
+
+    private final Map<String, Lease> heldLeases = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("scheduled-job-lock-renewer").factory());
+
+    @Getter
+    public static class Lease {
+        private final String jobName;
+        private final long fencingToken;
+        private final String value;
+        private volatile boolean lost;
+        private volatile ScheduledFuture<?> renewal;
+
+        private Lease(String jobName, long fencingToken, String value) {
+            this.jobName = jobName;
+            this.fencingToken = fencingToken;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @return lease nếu lấy được khóa, rỗng nếu node khác đang giữ hoặc Redis lỗi (bỏ qua lượt chạy này)
+     */
+    public Optional<Lease> tryAcquire(String jobName, Duration leaseTime) {
+        String lockKey = LOCK_PREFIX + jobName;
+        try {
+            Long token = stringRedisTemplate.opsForValue().increment(FENCE_PREFIX + jobName);
+            String value = token + ":" + nodeIdentity.getNodeId();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, value, leaseTime);
+            if (!Boolean.TRUE.equals(acquired)) {
+                return Optional.empty();
+            }
+
+            Lease lease = new Lease(jobName, token, value);
+            long period = Math.max(leaseTime.toMillis() / 3, 1);
+            lease.renewal = renewer.scheduleAtFixedRate(() -> renew(lease, leaseTime), period, period,
+                    TimeUnit.MILLISECONDS);
+            heldLeases.put(jobName, lease);
+            return Optional.of(lease);
+        } catch (Exception e) {
+            log.error("[ScheduledJobLock] Không lấy được khóa {}: {}", jobName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void release(Lease lease) {
+        lease.renewal.cancel(false);
+        heldLeases.remove(lease.getJobName(), lease);
+        try {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(LOCK_PREFIX + lease.getJobName()), lease.getValue());
+        } catch (Exception e) {
+            // Lease tự hết hạn sau TTL
+            log.warn("[ScheduledJobLock] Không trả được khóa {}: {}", lease.getJobName(), e.getMessage());
+        }
+    }
+
+    public Optional<Lease> heldLease(String jobName) {
+        return Optional.ofNullable(heldLeases.get(jobName));
+    }
+
+    /**
+     * Dừng job nếu node này không còn giữ khóa (lease hết hạn, node khác đã lấy với fencing token mới).
+     * Job không chạy qua khóa thì bỏ qua.
+     */
+    public void ensureHeld(String jobName) {
+        Lease lease = heldLeases.get(jobName);
+        if (lease == null) {
+            return;
+        }
+        if (!lease.isLost()) {
+            String current = stringRedisTemplate.opsForValue().get(LOCK_PREFIX + jobName);
+            lease.lost = !lease.getValue().equals(current);
+        }
+        if (lease.isLost()) {
+            throw new IllegalStateException(String.format("Job %s đã mất khóa (fencing token %d)", jobName,
+                    lease.getFencingToken()));
+        }
+    }
+
+    private void renew(Lease lease, Duration leaseTime) {
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(LOCK_PREFIX + lease.getJobName()),
+                    lease.getValue(), String.valueOf(leaseTime.toMillis()));
+            if (renewed == null || renewed == 0) {
+                lease.lost = true;
+                if (lease.renewal != null) {
+                    lease.renewal.cancel(false);
+                }
+                log.error("[ScheduledJobLock] Mất khóa {} (fencing token {})", lease.getJobName(),
+                        lease.getFencingToken());
+            }
+        } catch (Exception e) {
+            // Thử lại ở lần gia hạn sau, lease còn hiệu lực tới hết TTL
+            log.warn("[ScheduledJobLock] Lỗi gia hạn khóa {}: {}", lease.getJobName(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+        heldLeases.values().forEach(this::release);
+    }
+}
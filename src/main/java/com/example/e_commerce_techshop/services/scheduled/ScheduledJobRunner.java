@@ -0,0 +1,83 @@
+package com.example.e_commerce_techshop.services.scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+import com.example.e_commerce_techshop.models.ScheduledJobRun;
+import com.example.e_commerce_techshop.repositories.ScheduledJobRunRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bọc một lượt chạy job định kỳ: lấy khóa Redis (node khác đang chạy thì bỏ qua lượt này),
+ * ghi lịch sử chạy vào scheduled_job_runs (thời gian, số bản ghi thành công / thất bại, lỗi) rồi trả khóa.
+ * scheduler.lock.enabled = false để chạy không cần khóa (một node).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledJobRunner {
+
+    private static final String ENABLED_PROPERTY = "scheduler.lock.enabled";
+    private static final String LEASE_PROPERTY = "scheduler.lock.lease-time";
+    private static final Duration DEFAULT_LEASE_TIME = Duration.ofMinutes(5);
+
+    private final ScheduledJobLock scheduledJobLock;
+    private final ScheduledJobRunRepository scheduledJobRunRepository;
+    private final NodeIdentity nodeIdentity;
+    private final Environment environment;
+
+    public void run(String jobName, Supplier<ScheduledBatchProcessor.Result> job) {
+        Optional<ScheduledJobLock.Lease> lease = Optional.empty();
+        if (environment.getProperty(ENABLED_PROPERTY, Boolean.class, true)) {
+            lease = scheduledJobLock.tryAcquire(jobName,
+                    environment.getProperty(LEASE_PROPERTY, Duration.class, DEFAULT_LEASE_TIME));
+            if (lease.isEmpty()) {
+                log.info("[ScheduledJob] Bỏ qua {}: node khác đang giữ khóa", jobName);
+                return;
+            }
+        }
+
+        ScheduledJobRun run = ScheduledJobRun.builder()
+                .jobName(jobName)
+                .nodeId(nodeIdentity.getNodeId())
+                .fencingToken(lease.map(ScheduledJobLock.Lease::getFencingToken).orElse(null))
+                .status(ScheduledJobRun.RunStatus.RUNNING.name())
+                .startedAt(LocalDateTime.now())
+                .build();
+        saveHistory(run);
+
+        long start = System.currentTimeMillis();
+        try {
+            ScheduledBatchProcessor.Result result = job.get();
+            run.setStatus(ScheduledJobRun.RunStatus.SUCCESS.name());
+            run.setSuccessCount(result.success());
+            run.setFailedCount(result.failed());
+        } catch (Exception e) {
+            run.setStatus(ScheduledJobRun.RunStatus.FAILED.name());
+            run.setErrorMessage(e.getMessage());
+            log.error("[ScheduledJob] Lỗi khi chạy {}: {}", jobName, e.getMessage(), e);
+        } finally {
+            lease.ifPresent(scheduledJobLock::release);
+            run.setFinishedAt(LocalDateTime.now());
+            run.setDurationMs(System.currentTimeMillis() - start);
+            saveHistory(run);
+        }
+    }
+
+    // Lỗi ghi lịch sử không được làm hỏng job
+    private void saveHistory(ScheduledJobRun run) {
+        try {
+            scheduledJobRunRepository.save(run);
+        } catch (Exception e) {
+            log.warn("[ScheduledJob] Không ghi được lịch sử {}: {}", run.getJobName(), e.getMessage());
+        }
+    }
+}
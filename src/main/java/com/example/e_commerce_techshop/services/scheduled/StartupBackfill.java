@@ -0,0 +1,90 @@
+package com.example.e_commerce_techshop.services.scheduled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Việc khởi tạo dữ liệu chạy một lần khi ứng dụng khởi động (backfill), an toàn khi nhiều node cùng khởi động:
+ * - Chạy dưới lease của ScheduledJobLock (tự gia hạn), node khác đang chạy thì bỏ qua.
+ * - Marker backfill:done:{name} trên Redis chỉ được ghi sau khi chạy xong; lỗi giữa chừng thì lần khởi động sau chạy lại.
+ * - replaceCollection ghi kết quả vào collection tạm rồi rename đè lên collection đích,
+ *   người đọc không bao giờ thấy collection rỗng / ghi dở.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupBackfill {
+
+    private static final String DONE_PREFIX = "backfill:done:";
+    private static final String LOCK_PREFIX = "backfill:";
+    private static final Duration LEASE_TIME = Duration.ofMinutes(5);
+
+    private final ScheduledJobLock scheduledJobLock;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * @return true nếu node này đã chạy backfill trong lần gọi này
+     */
+    public boolean runOnce(String name, Runnable backfill) {
+        String doneKey = DONE_PREFIX + name;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(doneKey))) {
+            return false;
+        }
+
+        Optional<ScheduledJobLock.Lease> lease = scheduledJobLock.tryAcquire(LOCK_PREFIX + name, LEASE_TIME);
+        if (lease.isEmpty()) {
+            log.info("[StartupBackfill] Bỏ qua {}: node khác đang chạy", name);
+            return false;
+        }
+        try {
+            // Node khác có thể vừa chạy xong giữa lần kiểm tra marker và lúc lấy lease
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(doneKey))) {
+                return false;
+            }
+            backfill.run();
+            scheduledJobLock.ensureHeld(LOCK_PREFIX + name);
+            stringRedisTemplate.opsForValue().set(doneKey, LocalDateTime.now().toString());
+            return true;
+        } finally {
+            scheduledJobLock.release(lease.get());
+        }
+    }
+
+    /**
+     * Thay toàn bộ nội dung collection bằng docs (Document hoặc entity): ghi vào collection tạm rồi rename đè lên
+     */
+    public void replaceCollection(String collection, Collection<?> docs) {
+        String temp = collection + "_rebuild_" + UUID.randomUUID().toString().substring(0, 8);
+        try {
+            if (docs.isEmpty()) {
+                mongoTemplate.createCollection(temp);
+            } else {
+                mongoTemplate.insert(docs, temp);
+            }
+            mongoTemplate.getCollection(temp).renameCollection(
+                    new MongoNamespace(mongoTemplate.getDb().getName(), collection),
+                    new RenameCollectionOptions().dropTarget(true));
+        } catch (RuntimeException e) {
+            try {
+                mongoTemplate.dropCollection(temp);
+            } catch (Exception ignored) {
+                // Collection tạm còn sót lại không ảnh hưởng dữ liệu đang đọc
+            }
+            throw e;
+        }
+    }
+}
@@ -17,29 +17,33 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class UnbanScheduledService {
     private final UserRepository userRepository;
+    private final ScheduledJobRunner scheduledJobRunner;
 
     // Chạy mỗi giờ để kiểm tra và tự động mở chặn
     @Scheduled(cron = "0 0 * * * *") // Mỗi giờ
     public void autoUnbanUsers() {
-        log.info("Bắt đầu kiểm tra người dùng hết hạn chặn...");
-
-        List<User> bannedUsers = userRepository.findByIsActiveFalseAndBannedUntilNotNull();
-        LocalDateTime now = LocalDateTime.now();
-
-        int unbannedCount = 0;
-        for (User user : bannedUsers) {
-            if (user.getBannedUntil() != null && now.isAfter(user.getBannedUntil())) {
-                user.setIsActive(true);
-                user.setBanReason(null);
-                user.setBannedAt(null);
-                user.setBannedUntil(null);
-                user.setBannedBy(null);
-                userRepository.save(user);
-                unbannedCount++;
-                log.info("Tự động mở chặn cho user: {}", user.getEmail());
+        scheduledJobRunner.run("autoUnbanUsers", () -> {
+            log.info("Bắt đầu kiểm tra người dùng hết hạn chặn...");
+
+            List<User> bannedUsers = userRepository.findByIsActiveFalseAndBannedUntilNotNull();
+            LocalDateTime now = LocalDateTime.now();
+
+            int unbannedCount = 0;
+            for (User user : bannedUsers) {
+                if (user.getBannedUntil() != null && now.isAfter(user.getBannedUntil())) {
+                    user.setIsActive(true);
+                    user.setBanReason(null);
+                    user.setBannedAt(null);
+                    user.setBannedUntil(null);
+                    user.setBannedBy(null);
+                    userRepository.save(user);
+                    unbannedCount++;
+                    log.info("Tự động mở chặn cho user: {}", user.getEmail());
+                }
             }
-        }
 
-        log.info("Hoàn thành. Đã mở chặn {} người dùng", unbannedCount);
+            log.info("Hoàn thành. Đã mở chặn {} người dùng", unbannedCount);
+            return new ScheduledBatchProcessor.Result(unbannedCount, 0);
+        });
     }
 }
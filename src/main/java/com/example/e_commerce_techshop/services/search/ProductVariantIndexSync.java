@@ -0,0 +1,139 @@
+package com.example.e_commerce_techshop.services.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+import com.example.e_commerce_techshop.models.ProductVariant;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đồng bộ search index và trie gợi ý trong bộ nhớ giữa các node qua Redis pub/sub.
+ * Event MongoDB chỉ phát ra trên node thực hiện save()/delete(), nên node đó cập nhật index của mình
+ * rồi publish thay đổi; node khác đọc lại biến thể từ MongoDB (không gửi cả document qua Redis).
+ * Message mất khi Redis lỗi sẽ được bù ở lần build lại index khi khởi động.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductVariantIndexSync {
+
+    private static final String CHANNEL = "search:product-variants";
+    private static final String SEPARATOR = "\n";
+    private static final String UPSERT = "upsert";
+    private static final String REMOVE = "remove";
+    private static final String STORE_STATUS = "store";
+    private static final String SALES = "sales";
+    private static final String QUANTITY_SEPARATOR = "=";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MongoTemplate mongoTemplate;
+    private final NodeIdentity nodeIdentity;
+    private final ProductVariantSearchIndex searchIndex;
+    private final ProductVariantSuggestionIndex suggestionIndex;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> applyRemote(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    public void publishUpsert(String variantId) {
+        publish(UPSERT, variantId);
+    }
+
+    public void publishRemove(String variantId) {
+        publish(REMOVE, variantId);
+    }
+
+    public void publishStoreStatus(String storeId, String storeStatus) {
+        publish(STORE_STATUS, storeId, storeStatus);
+    }
+
+    /**
+     * @param quantities variantId -> số lượng bán thay đổi (kết quả của ProductVariantSuggestionIndex.recordOrderTransition)
+     */
+    public void publishSales(Map<String, Long> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<String> parts = new ArrayList<>();
+        parts.add(SALES);
+        quantities.forEach((variantId, quantity) -> parts.add(variantId + QUANTITY_SEPARATOR + quantity));
+        publish(parts.toArray(String[]::new));
+    }
+
+    private void publish(String... parts) {
+        String message = nodeIdentity.getNodeId() + SEPARATOR + String.join(SEPARATOR, parts);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("[ProductVariantIndexSync] Lỗi publish thay đổi index: {}", e.getMessage());
+        }
+    }
+
+    private void applyRemote(String message) {
+        String[] parts = message.split(SEPARATOR);
+        // Node gửi đã tự cập nhật index trước khi publish
+        if (parts.length < 3 || nodeIdentity.getNodeId().equals(parts[0])) {
+            return;
+        }
+        try {
+            switch (parts[1]) {
+                case UPSERT -> reload(parts[2]);
+                case REMOVE -> {
+                    searchIndex.remove(parts[2]);
+                    suggestionIndex.remove(parts[2]);
+                }
+                case STORE_STATUS -> {
+                    if (parts.length > 3) {
+                        searchIndex.updateStoreStatus(parts[2], parts[3]);
+                        suggestionIndex.updateStoreStatus(parts[2], parts[3]);
+                    }
+                }
+                case SALES -> {
+                    for (int i = 2; i < parts.length; i++) {
+                        String[] sale = parts[i].split(QUANTITY_SEPARATOR);
+                        suggestionIndex.recordSale(sale[0], Long.parseLong(sale[1]));
+                    }
+                }
+                default -> log.warn("[ProductVariantIndexSync] Bỏ qua message không hợp lệ: {}", parts[1]);
+            }
+        } catch (Exception e) {
+            log.warn("[ProductVariantIndexSync] Lỗi áp dụng thay đổi index {}: {}", parts[1], e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc lại biến thể (chỉ các field được index) thay vì tin vào nội dung message,
+     * nên message đến trễ / sai thứ tự vẫn cho kết quả theo dữ liệu mới nhất
+     */
+    private void reload(String variantId) {
+        Query query = new Query(Criteria.where("_id").is(variantId));
+        query.fields().include("name", "brandName", "categoryName", "attributes", "storeId",
+                "status", "storeStatus", "price", "createdAt");
+        ProductVariant variant = mongoTemplate.findOne(query, ProductVariant.class);
+        if (variant == null) {
+            searchIndex.remove(variantId);
+            suggestionIndex.remove(variantId);
+            return;
+        }
+        searchIndex.upsert(variant);
+        suggestionIndex.upsert(variant);
+    }
+}
@@ -0,0 +1,437 @@
+package com.example.e_commerce_techshop.services.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.ProductVariant;
+import com.example.e_commerce_techshop.models.Store;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Inverted index trong bộ nhớ cho tìm kiếm biến thể sản phẩm.
+ * Index theo name / brandName / categoryName / attributes (có trọng số),
+ * chấm điểm BM25, hỗ trợ tìm theo tiền tố và sai chính tả nhẹ.
+ * Được build lại khi khởi động và cập nhật qua ProductVariantSearchIndexListener.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductVariantSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float BRAND_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float ATTRIBUTE_WEIGHT = 1.0f;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final double PREFIX_FACTOR = 0.7;
+    private static final double FUZZY_FACTOR = 0.4;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final Set<String> SORTABLE_FIELDS = Set.of("createdAt", "price", "name");
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexState state = new IndexState();
+    private boolean rebuilding;
+    private final List<ProductVariant> pendingUpserts = new ArrayList<>();
+    private final List<String> pendingRemovals = new ArrayList<>();
+    private final Map<String, String> pendingStoreStatuses = new HashMap<>();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        Thread.ofVirtual().name("product-variant-search-index").start(this::rebuild);
+    }
+
+    /**
+     * Build lại toàn bộ index từ MongoDB (chỉ đọc các field cần index, không resolve DBRef).
+     * Các thay đổi xảy ra trong lúc build được ghi lại và áp dụng sau khi build xong.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        IndexState newState = new IndexState();
+        try {
+            Query query = new Query();
+            query.fields().include("name", "brandName", "categoryName", "attributes", "storeId",
+                    "status", "storeStatus", "price", "createdAt");
+            try (Stream<ProductVariant> stream = mongoTemplate.stream(query, ProductVariant.class)) {
+                stream.forEach(newState::upsert);
+            }
+        } catch (Exception e) {
+            log.error("[ProductVariantSearchIndex] Lỗi build index: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                pendingUpserts.clear();
+                pendingRemovals.clear();
+                pendingStoreStatuses.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingUpserts.forEach(newState::upsert);
+            pendingRemovals.forEach(newState::remove);
+            pendingStoreStatuses.forEach(newState::updateStoreStatus);
+            pendingUpserts.clear();
+            pendingRemovals.clear();
+            pendingStoreStatuses.clear();
+            state = newState;
+            rebuilding = false;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[ProductVariantSearchIndex] Đã index {} biến thể, {} term trong {} ms",
+                newState.documents.size(), newState.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Index chỉ tự sắp xếp được theo độ liên quan và các field có sẵn trong index
+     */
+    public boolean supportsSort(Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return true;
+        }
+        List<Sort.Order> orders = sort.toList();
+        return orders.size() == 1 && SORTABLE_FIELDS.contains(orders.get(0).getProperty());
+    }
+
+    public void upsert(ProductVariant variant) {
+        if (variant == null || variant.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            state.upsert(variant);
+            if (rebuilding) {
+                pendingUpserts.add(variant);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String variantId) {
+        lock.writeLock().lock();
+        try {
+            state.remove(variantId);
+            if (rebuilding) {
+                pendingRemovals.add(variantId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cập nhật storeStatus cho các biến thể của store (không đi qua save() nên không có event).
+     * Index đang build có thể đã đọc biến thể với trạng thái cũ nên cũng được áp dụng lại sau khi build xong.
+     */
+    public void updateStoreStatus(String storeId, String storeStatus) {
+        lock.writeLock().lock();
+        try {
+            state.updateStoreStatus(storeId, storeStatus);
+            if (rebuilding) {
+                pendingStoreStatuses.put(storeId, storeStatus);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tìm kiếm: mọi từ trong query đều phải khớp (khớp đúng, tiền tố hoặc gần đúng).
+     *
+     * @param storeId             null nếu tìm trên toàn sàn
+     * @param status              null nếu không lọc theo trạng thái biến thể
+     * @param excludeBannedStores bỏ các biến thể của store bị khóa
+     * @param sort                không sort -> theo độ liên quan
+     */
+    public SearchResult search(String queryText, String storeId, String status, boolean excludeBannedStores,
+            int page, int size, Sort sort) {
+        List<String> tokens = SearchTextNormalizer.tokenize(queryText);
+        if (tokens.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            double avgLength = current.documents.isEmpty() ? 1 : current.totalLength / current.documents.size();
+
+            Map<String, Double> scores = null;
+            for (String token : tokens) {
+                Map<String, Double> tokenScores = new HashMap<>();
+                for (Map.Entry<String, Double> expansion : current.expand(token).entrySet()) {
+                    Map<String, Float> posting = current.postings.get(expansion.getKey());
+                    double idf = Math.log(1 + (current.documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+                    for (Map.Entry<String, Float> entry : posting.entrySet()) {
+                        if (scores != null && !scores.containsKey(entry.getKey())) {
+                            continue;
+                        }
+                        IndexedVariant doc = current.documents.get(entry.getKey());
+                        if (!matchesFilter(doc, storeId, status, excludeBannedStores)) {
+                            continue;
+                        }
+                        double tf = entry.getValue();
+                        double score = expansion.getValue() * idf * tf * (K1 + 1)
+                                / (tf + K1 * (1 - B + B * doc.length / avgLength));
+                        // Một từ trong query chỉ tính điểm của term khớp tốt nhất
+                        tokenScores.merge(entry.getKey(), score, Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    Map<String, Double> merged = new HashMap<>();
+                    for (Map.Entry<String, Double> entry : tokenScores.entrySet()) {
+                        merged.put(entry.getKey(), scores.get(entry.getKey()) + entry.getValue());
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+
+            Map<String, Double> finalScores = scores;
+            Comparator<IndexedVariant> comparator = buildComparator(sort, finalScores);
+            List<IndexedVariant> hits = new ArrayList<>();
+            for (String id : finalScores.keySet()) {
+                hits.add(current.documents.get(id));
+            }
+            hits.sort(comparator);
+
+            int from = Math.min(page * size, hits.size());
+            int to = Math.min(from + size, hits.size());
+            List<String> ids = hits.subList(from, to).stream().map(doc -> doc.id).toList();
+            return new SearchResult(ids, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean matchesFilter(IndexedVariant doc, String storeId, String status, boolean excludeBannedStores) {
+        if (storeId != null && !storeId.equals(doc.storeId)) {
+            return false;
+        }
+        if (status != null && !status.equals(doc.status)) {
+            return false;
+        }
+        return !excludeBannedStores || !Store.StoreStatus.BANNED.name().equals(doc.storeStatus);
+    }
+
+    private Comparator<IndexedVariant> buildComparator(Sort sort, Map<String, Double> scores) {
+        Comparator<IndexedVariant> byRelevance = Comparator.comparingDouble(doc -> -scores.get(doc.id));
+        Comparator<IndexedVariant> byNewest = Comparator.comparingLong(doc -> -doc.createdAt);
+        if (sort == null || sort.isUnsorted()) {
+            return byRelevance.thenComparing(byNewest);
+        }
+        Sort.Order order = sort.toList().get(0);
+        Comparator<IndexedVariant> comparator = switch (order.getProperty()) {
+            case "price" -> Comparator.comparingLong(doc -> doc.price);
+            case "name" -> Comparator.comparing(doc -> doc.name);
+            default -> Comparator.comparingLong(doc -> doc.createdAt);
+        };
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+        return comparator.thenComparing(byRelevance);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        private List<String> ids; // id của trang hiện tại, đã sắp xếp
+        private long total;
+    }
+
+    private static class IndexedVariant {
+        private String id;
+        private String storeId;
+        private String status;
+        private String storeStatus;
+        private String name;
+        private long price;
+        private long createdAt;
+        private float length;
+        private Map<String, Float> termFrequencies;
+    }
+
+    private static class IndexState {
+        private final Map<String, IndexedVariant> documents = new HashMap<>();
+        // TreeMap để duyệt theo tiền tố và theo chữ cái đầu khi tìm gần đúng
+        private final TreeMap<String, Map<String, Float>> postings = new TreeMap<>();
+        private double totalLength;
+
+        private void upsert(ProductVariant variant) {
+            remove(variant.getId());
+
+            Map<String, Float> termFrequencies = new HashMap<>();
+            addField(termFrequencies, variant.getName(), NAME_WEIGHT);
+            addField(termFrequencies, variant.getBrandName(), BRAND_WEIGHT);
+            addField(termFrequencies, variant.getCategoryName(), CATEGORY_WEIGHT);
+            if (variant.getAttributes() != null) {
+                variant.getAttributes().values().forEach(value -> addField(termFrequencies, value, ATTRIBUTE_WEIGHT));
+            }
+
+            IndexedVariant doc = new IndexedVariant();
+            doc.id = variant.getId();
+            doc.storeId = variant.getStoreId();
+            doc.status = variant.getStatus();
+            doc.storeStatus = variant.getStoreStatus();
+            doc.name = SearchTextNormalizer.fold(variant.getName());
+            doc.price = variant.getPrice() != null ? variant.getPrice() : 0L;
+            doc.createdAt = variant.getCreatedAt() != null
+                    ? variant.getCreatedAt().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : 0L;
+            doc.termFrequencies = termFrequencies;
+            doc.length = 0;
+            for (float weight : termFrequencies.values()) {
+                doc.length += weight;
+            }
+
+            documents.put(doc.id, doc);
+            totalLength += doc.length;
+            for (Map.Entry<String, Float> entry : termFrequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(doc.id, entry.getValue());
+            }
+        }
+
+        private void updateStoreStatus(String storeId, String storeStatus) {
+            for (IndexedVariant doc : documents.values()) {
+                if (storeId.equals(doc.storeId)) {
+                    doc.storeStatus = storeStatus;
+                }
+            }
+        }
+
+        private void remove(String variantId) {
+            IndexedVariant existing = documents.remove(variantId);
+            if (existing == null) {
+                return;
+            }
+            totalLength -= existing.length;
+            for (String term : existing.termFrequencies.keySet()) {
+                Map<String, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(variantId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        private void addField(Map<String, Float> termFrequencies, String text, float weight) {
+            for (String token : SearchTextNormalizer.tokenize(text)) {
+                termFrequencies.merge(token, weight, Float::sum);
+            }
+        }
+
+        /**
+         * Mở rộng một từ của query thành các term trong index kèm hệ số:
+         * khớp đúng (1.0), tiền tố, và gần đúng nếu không có khớp nào khác
+         */
+        private Map<String, Double> expand(String token) {
+            Map<String, Double> expansions = new HashMap<>();
+            if (postings.containsKey(token)) {
+                expansions.put(token, 1.0);
+            }
+
+            NavigableMap<String, Map<String, Float>> prefixed = postings.subMap(token, false,
+                    token + Character.MAX_VALUE, false);
+            int count = 0;
+            for (String term : prefixed.keySet()) {
+                if (count++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                expansions.put(term, PREFIX_FACTOR);
+            }
+
+            if (expansions.isEmpty() && token.length() >= MIN_FUZZY_LENGTH) {
+                int maxDistance = token.length() >= 8 ? 2 : 1;
+                String first = token.substring(0, 1);
+                for (String term : postings.subMap(first, true, first + Character.MAX_VALUE, false).keySet()) {
+                    if (Math.abs(term.length() - token.length()) <= maxDistance
+                            && editDistance(token, term, maxDistance) <= maxDistance) {
+                        expansions.put(term, FUZZY_FACTOR);
+                    }
+                }
+            }
+            return expansions;
+        }
+
+        /**
+         * Khoảng cách Damerau-Levenshtein (optimal string alignment), dừng sớm khi vượt maxDistance
+         */
+        private static int editDistance(String a, String b, int maxDistance) {
+            int[] prevPrev = new int[b.length() + 1];
+            int[] prev = new int[b.length() + 1];
+            int[] current = new int[b.length() + 1];
+            for (int j = 0; j <= b.length(); j++) {
+                prev[j] = j;
+            }
+            for (int i = 1; i <= a.length(); i++) {
+                current[0] = i;
+                int rowMin = current[0];
+                for (int j = 1; j <= b.length(); j++) {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    current[j] = Math.min(Math.min(current[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                    if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                        current[j] = Math.min(current[j], prevPrev[j - 2] + 1);
+                    }
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                if (rowMin > maxDistance) {
+                    return maxDistance + 1;
+                }
+                int[] temp = prevPrev;
+                prevPrev = prev;
+                prev = current;
+                current = temp;
+            }
+            return prev[b.length()];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.e_commerce_techshop.services.search;
+
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.ProductVariant;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Giữ search index và trie gợi ý đồng bộ với mọi lần save()/delete() ProductVariant,
+ * cập nhật index của node hiện tại rồi báo cho các node khác qua ProductVariantIndexSync
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductVariantSearchIndexListener extends AbstractMongoEventListener<ProductVariant> {
+
+    private final ProductVariantSearchIndex searchIndex;
+    private final ProductVariantSuggestionIndex suggestionIndex;
+    private final ProductVariantIndexSync indexSync;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<ProductVariant> event) {
+        searchIndex.upsert(event.getSource());
+        suggestionIndex.upsert(event.getSource());
+        if (event.getSource().getId() != null) {
+            indexSync.publishUpsert(event.getSource().getId());
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<ProductVariant> event) {
+        Object id = event.getSource().get("_id");
+        if (id != null) {
+            searchIndex.remove(id.toString());
+            suggestionIndex.remove(id.toString());
+            indexSync.publishRemove(id.toString());
+        }
+    }
+}
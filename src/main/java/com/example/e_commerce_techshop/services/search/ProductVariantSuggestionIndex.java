@@ -0,0 +1,457 @@
+package com.example.e_commerce_techshop.services.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.models.ProductVariant;
+import com.example.e_commerce_techshop.models.Store;
+import com.example.e_commerce_techshop.responses.ProductSuggestionResponse;
+import com.mongodb.DBRef;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prefix trie cho gợi ý tìm kiếm (tên biến thể, thương hiệu, danh mục).
+ * Mỗi node giữ sẵn top-K gợi ý của cả nhánh (xếp theo số lượng đã bán),
+ * nên trả lời một prefix chỉ tốn O(độ dài prefix) và không truy vấn MongoDB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductVariantSuggestionIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // Số vị trí đầu từ được index cho mỗi cụm (để gõ "15 pro" vẫn ra "iphone 15 pro")
+    private static final int MAX_WORD_STARTS = 4;
+
+    // Đơn ở các trạng thái này không được tính vào số lượng đã bán
+    private static final Set<String> UNSOLD_STATUSES = Set.of(
+            Order.OrderStatus.CANCELLED.name(), Order.OrderStatus.RETURNED.name());
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingLong((Entry entry) -> -entry.score)
+            .thenComparingInt(entry -> entry.key.length())
+            .thenComparing(entry -> entry.key);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TrieState state = new TrieState();
+    private boolean rebuilding;
+    private final List<Runnable> pendingChanges = new ArrayList<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        Thread.ofVirtual().name("product-variant-suggestion-index").start(this::rebuild);
+    }
+
+    /**
+     * Build lại trie: số lượng bán lấy từ order_items của các đơn chưa hủy / trả hàng, biến thể lấy từ product_variants (không resolve DBRef)
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.currentTimeMillis();
+        TrieState newState = new TrieState();
+        try {
+            Map<String, Long> salesByVariant = loadSalesByVariant();
+
+            Query query = new Query();
+            query.fields().include("name", "brandName", "categoryName", "storeId", "status", "storeStatus");
+            try (Stream<ProductVariant> stream = mongoTemplate.stream(query, ProductVariant.class)) {
+                stream.forEach(variant -> newState.upsert(variant,
+                        salesByVariant.getOrDefault(variant.getId(), 0L), false));
+            }
+            newState.computeAllTops(newState.root);
+        } catch (Exception e) {
+            log.error("[ProductVariantSuggestionIndex] Lỗi build trie: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                pendingChanges.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            state = newState;
+            pendingChanges.forEach(Runnable::run);
+            pendingChanges.clear();
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[ProductVariantSuggestionIndex] Đã build {} gợi ý trong {} ms",
+                newState.entries.size(), System.currentTimeMillis() - start);
+    }
+
+    private Map<String, Long> loadSalesByVariant() {
+        Set<Object> unsoldOrderIds = new HashSet<>();
+        Query orderQuery = new Query(Criteria.where("status").in(UNSOLD_STATUSES));
+        orderQuery.fields().include("_id");
+        try (Stream<Document> stream = mongoTemplate.stream(orderQuery, Document.class, "orders")) {
+            stream.forEach(doc -> unsoldOrderIds.add(doc.get("_id")));
+        }
+
+        Map<String, Long> salesByVariant = new HashMap<>();
+        Query query = new Query();
+        query.fields().include("order", "productVariant", "quantity");
+        // Đọc Document thô để DBRef productVariant không bị resolve
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, "order_items")) {
+            stream.forEach(doc -> {
+                if (doc.get("order") instanceof DBRef order && unsoldOrderIds.contains(order.getId())) {
+                    return;
+                }
+                addQuantity(salesByVariant, doc, 1);
+            });
+        }
+        return salesByVariant;
+    }
+
+    private static void addQuantity(Map<String, Long> quantities, Document orderItem, int sign) {
+        Object ref = orderItem.get("productVariant");
+        Object quantity = orderItem.get("quantity");
+        if (ref instanceof DBRef dbRef && quantity instanceof Number number) {
+            quantities.merge(dbRef.getId().toString(), sign * number.longValue(), Long::sum);
+        }
+    }
+
+    /**
+     * Cộng / trừ số lượng bán khi đơn đổi trạng thái, theo cùng quy tắc với rebuild:
+     * đơn được tính khi đã có order_items và chưa bị hủy / trả hàng.
+     * Lần save() đầu tiên lúc tạo đơn chưa có order_items nên không cộng gì,
+     * OrderService gọi lại sau khi đã lưu order_items.
+     *
+     * @return số lượng thay đổi theo biến thể đã áp dụng ở node này (rỗng nếu không đổi)
+     */
+    public Map<String, Long> recordOrderTransition(String orderId, String fromStatus, String toStatus) {
+        int sign = (isSold(toStatus) ? 1 : 0) - (isSold(fromStatus) ? 1 : 0);
+        if (sign == 0 || orderId == null || !ObjectId.isValid(orderId)) {
+            return Map.of();
+        }
+        Map<String, Long> quantities = new HashMap<>();
+        Query query = new Query(Criteria.where("order.$id").is(new ObjectId(orderId)));
+        query.fields().include("productVariant", "quantity");
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, "order_items")) {
+            stream.forEach(doc -> addQuantity(quantities, doc, sign));
+        }
+        quantities.forEach(this::recordSale);
+        return quantities;
+    }
+
+    private static boolean isSold(String status) {
+        return status != null && !UNSOLD_STATUSES.contains(status);
+    }
+
+    public List<ProductSuggestionResponse> suggest(String prefix, int limit) {
+        String key = String.join(" ", SearchTextNormalizer.tokenize(prefix));
+        // Giữ khoảng trắng cuối để "iphone " chỉ gợi ý các cụm có từ tiếp theo
+        if (!key.isEmpty() && prefix.endsWith(" ")) {
+            key = key + " ";
+        }
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        int size = Math.min(Math.max(limit, 1), MAX_SUGGESTIONS);
+
+        lock.readLock().lock();
+        try {
+            Node node = state.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<ProductSuggestionResponse> suggestions = new ArrayList<>();
+            for (Entry entry : node.top) {
+                if (suggestions.size() >= size) {
+                    break;
+                }
+                suggestions.add(entry.toResponse());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void upsert(ProductVariant variant) {
+        if (variant == null || variant.getId() == null) {
+            return;
+        }
+        applyChange(current -> current.upsert(variant, null, true));
+    }
+
+    public void remove(String variantId) {
+        applyChange(current -> current.remove(variantId));
+    }
+
+    /**
+     * @param quantity âm khi đơn bị hủy / trả hàng
+     */
+    public void recordSale(String variantId, long quantity) {
+        applyChange(current -> current.recordSale(variantId, quantity));
+    }
+
+    public void updateStoreStatus(String storeId, String storeStatus) {
+        applyChange(current -> current.updateStoreStatus(storeId, storeStatus));
+    }
+
+    private void applyChange(Consumer<TrieState> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (rebuilding) {
+                // Trie mới đang build chưa thấy thay đổi này -> áp dụng lại sau khi swap
+                pendingChanges.add(() -> change.accept(state));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Entry> terminals = new ArrayList<>(1);
+        private List<Entry> top = List.of();
+
+        private void recomputeTop() {
+            Set<Entry> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidates.addAll(terminals);
+            for (Node child : children.values()) {
+                candidates.addAll(child.top);
+            }
+            top = candidates.stream().sorted(RANKING).limit(MAX_SUGGESTIONS).toList();
+        }
+    }
+
+    private static class Entry {
+        private String type; // PRODUCT, BRAND, CATEGORY
+        private String text;
+        private String key;
+        private List<String> paths;
+        // Số lượng đã bán của các biến thể đang hiển thị thuộc gợi ý này
+        private final Map<String, Long> variantSales = new HashMap<>();
+        private long score;
+
+        private ProductSuggestionResponse toResponse() {
+            String variantId = null;
+            if ("PRODUCT".equals(type)) {
+                variantId = variantSales.entrySet().stream()
+                        .max(Map.Entry.comparingByValue())
+                        .map(Map.Entry::getKey)
+                        .orElse(null);
+            }
+            return ProductSuggestionResponse.builder()
+                    .text(text)
+                    .type(type)
+                    .productVariantId(variantId)
+                    .build();
+        }
+    }
+
+    private static class VariantInfo {
+        private String id;
+        private String storeId;
+        private String status;
+        private String storeStatus;
+        private List<Entry> entries;
+        private long sales;
+
+        private boolean isVisible() {
+            return ProductVariant.VariantStatus.APPROVED.name().equals(status)
+                    && !Store.StoreStatus.BANNED.name().equals(storeStatus);
+        }
+    }
+
+    private static class TrieState {
+        private final Node root = new Node();
+        private final Map<String, Entry> entries = new HashMap<>();
+        private final Map<String, VariantInfo> variants = new HashMap<>();
+
+        /**
+         * @param sales      null -> giữ số lượng bán hiện có của biến thể
+         * @param updateTops false khi build hàng loạt (top được tính một lần ở cuối)
+         */
+        private void upsert(ProductVariant variant, Long sales, boolean updateTops) {
+            VariantInfo existing = variants.get(variant.getId());
+            long currentSales = sales != null ? sales : existing != null ? existing.sales : 0L;
+            if (existing != null) {
+                detach(existing, updateTops);
+            }
+
+            VariantInfo info = new VariantInfo();
+            info.id = variant.getId();
+            info.storeId = variant.getStoreId();
+            info.status = variant.getStatus();
+            info.storeStatus = variant.getStoreStatus();
+            info.sales = currentSales;
+            info.entries = new ArrayList<>();
+            addEntry(info, "PRODUCT", variant.getName());
+            addEntry(info, "BRAND", variant.getBrandName());
+            addEntry(info, "CATEGORY", variant.getCategoryName());
+            variants.put(info.id, info);
+
+            if (info.isVisible()) {
+                attach(info, updateTops);
+            }
+        }
+
+        private void remove(String variantId) {
+            VariantInfo existing = variants.remove(variantId);
+            if (existing != null) {
+                detach(existing, true);
+            }
+        }
+
+        private void recordSale(String variantId, long quantity) {
+            VariantInfo info = variants.get(variantId);
+            if (info == null) {
+                return;
+            }
+            info.sales = Math.max(0, info.sales + quantity);
+            if (info.isVisible()) {
+                attach(info, true);
+            }
+        }
+
+        private void updateStoreStatus(String storeId, String storeStatus) {
+            for (VariantInfo info : variants.values()) {
+                if (!storeId.equals(info.storeId)) {
+                    continue;
+                }
+                boolean wasVisible = info.isVisible();
+                info.storeStatus = storeStatus;
+                if (wasVisible && !info.isVisible()) {
+                    detach(info, true);
+                } else if (!wasVisible && info.isVisible()) {
+                    attach(info, true);
+                }
+            }
+        }
+
+        private void addEntry(VariantInfo info, String type, String text) {
+            List<String> tokens = SearchTextNormalizer.tokenize(text);
+            if (tokens.isEmpty()) {
+                return;
+            }
+            String key = String.join(" ", tokens);
+            Entry entry = entries.computeIfAbsent(type + ":" + key, k -> {
+                Entry created = new Entry();
+                created.type = type;
+                created.text = text.trim();
+                created.key = key;
+                created.paths = new ArrayList<>();
+                for (int i = 0; i < Math.min(tokens.size(), MAX_WORD_STARTS); i++) {
+                    created.paths.add(String.join(" ", tokens.subList(i, tokens.size())));
+                }
+                return created;
+            });
+            info.entries.add(entry);
+        }
+
+        private void attach(VariantInfo info, boolean updateTops) {
+            for (Entry entry : info.entries) {
+                entry.variantSales.put(info.id, info.sales);
+                refresh(entry, updateTops);
+            }
+        }
+
+        private void detach(VariantInfo info, boolean updateTops) {
+            for (Entry entry : info.entries) {
+                if (entry.variantSales.remove(info.id) != null) {
+                    refresh(entry, updateTops);
+                }
+            }
+        }
+
+        private void refresh(Entry entry, boolean updateTops) {
+            entry.score = entry.variantSales.values().stream().mapToLong(Long::longValue).sum();
+            boolean present = !entry.variantSales.isEmpty();
+            if (!present) {
+                entries.remove(entry.type + ":" + entry.key);
+            }
+            for (String path : entry.paths) {
+                updatePath(path, entry, present, updateTops);
+            }
+        }
+
+        private void updatePath(String path, Entry entry, boolean present, boolean updateTops) {
+            Node[] nodes = new Node[path.length() + 1];
+            nodes[0] = root;
+            Node node = root;
+            for (int i = 0; i < path.length(); i++) {
+                Node next = node.children.get(path.charAt(i));
+                if (next == null) {
+                    if (!present) {
+                        return;
+                    }
+                    next = new Node();
+                    node.children.put(path.charAt(i), next);
+                }
+                nodes[i + 1] = next;
+                node = next;
+            }
+
+            if (present) {
+                if (!node.terminals.contains(entry)) {
+                    node.terminals.add(entry);
+                }
+            } else {
+                node.terminals.remove(entry);
+            }
+
+            if (!updateTops) {
+                return;
+            }
+            // Tính lại top-K từ node lá lên gốc, bỏ các node rỗng
+            for (int i = path.length(); i >= 0; i--) {
+                Node current = nodes[i];
+                if (i > 0 && current.terminals.isEmpty() && current.children.isEmpty()) {
+                    nodes[i - 1].children.remove(path.charAt(i - 1));
+                    continue;
+                }
+                current.recomputeTop();
+            }
+        }
+
+        private void computeAllTops(Node node) {
+            for (Node child : node.children.values()) {
+                computeAllTops(child);
+            }
+            node.recomputeTop();
+        }
+    }
+}
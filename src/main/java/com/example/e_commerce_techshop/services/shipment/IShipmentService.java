@@ -2,6 +2,8 @@ package com.example.e_commerce_techshop.services.shipment;
 
 import com.example.e_commerce_techshop.models.Shipment;
 import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
+import com.example.e_commerce_techshop.responses.ShipmentResponse;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -26,6 +28,11 @@ public interface IShipmentService {
      */
     Page<Shipment> getStoreShipments(String storeId, String status, Pageable pageable) throws Exception;
 
+    /**
+     * Lấy danh sách shipment của store theo cursor (keyset), dùng cho store có rất nhiều shipment
+     */
+    CursorPageResponse<ShipmentResponse> getStoreShipmentsByCursor(String storeId, String status, String cursor, int size) throws Exception;
+
     Map<String, Long> getShipmentCountByStatus(String storeId) throws Exception;
 
     /**
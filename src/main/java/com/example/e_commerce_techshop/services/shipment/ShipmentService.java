@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,11 +17,14 @@ import com.example.e_commerce_techshop.models.AdminRevenue;
 import com.example.e_commerce_techshop.models.Order;
 import com.example.e_commerce_techshop.models.ReturnRequest;
 import com.example.e_commerce_techshop.models.Shipment;
+import com.example.e_commerce_techshop.models.Static.KeysetCursor;
 import com.example.e_commerce_techshop.models.User;
 import com.example.e_commerce_techshop.repositories.AdminRevenueRepository;
 import com.example.e_commerce_techshop.repositories.OrderRepository;
 import com.example.e_commerce_techshop.repositories.ReturnRequestRepository;
 import com.example.e_commerce_techshop.repositories.ShipmentRepository;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
+import com.example.e_commerce_techshop.responses.ShipmentResponse;
 import com.example.e_commerce_techshop.services.notification.INotificationService;
 import com.example.e_commerce_techshop.services.shipping.RegionalShippingService;
 import com.example.e_commerce_techshop.services.wallet.IWalletService;
@@ -32,6 +36,8 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class ShipmentService implements IShipmentService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final ShipmentRepository shipmentRepository;
     private final OrderRepository orderRepository;
     private final ReturnRequestRepository returnRequestRepository;
@@ -118,24 +124,24 @@ public class ShipmentService implements IShipmentService {
      */
     @Override
     public Page<Shipment> getStoreShipments(String storeId, String status, Pageable pageable) throws Exception {
+        // Mặc định mới nhất trước, _id để thứ tự ổn định giữa các trang
+        if (pageable.getSort().isUnsorted()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), KeysetCursor.SORT);
+        }
         if (status != null && !status.isEmpty()) {
-            List<Shipment> shipments = shipmentRepository.findByStoreIdAndStatus(storeId, status);
-            // Convert to Page (simplified)
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), shipments.size());
-            return new org.springframework.data.domain.PageImpl<>(
-                    shipments.subList(start, end),
-                    pageable,
-                    shipments.size());
-        } else {
-            List<Shipment> shipments = shipmentRepository.findByStoreId(storeId);
-            int start = (int) pageable.getOffset();
-            int end = Math.min((start + pageable.getPageSize()), shipments.size());
-            return new org.springframework.data.domain.PageImpl<>(
-                    shipments.subList(start, end),
-                    pageable,
-                    shipments.size());
+            return shipmentRepository.findByStoreIdAndStatus(storeId, status, pageable);
         }
+        return shipmentRepository.findByStoreId(storeId, pageable);
+    }
+
+    @Override
+    public CursorPageResponse<ShipmentResponse> getStoreShipmentsByCursor(String storeId, String status, String cursor,
+            int size) throws Exception {
+        int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Shipment> shipments = shipmentRepository.findStoreShipmentsAfter(storeId, status,
+                KeysetCursor.decode(cursor), pageSize + 1);
+        return CursorPageResponse.of(shipments, pageSize, s -> new KeysetCursor(s.getCreatedAt(), s.getId()))
+                .map(ShipmentResponse::fromShipment);
     }
 
     /**
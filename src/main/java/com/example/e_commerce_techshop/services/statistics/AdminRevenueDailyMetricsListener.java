@@ -0,0 +1,41 @@
+package com.example.e_commerce_techshop.services.statistics;
+
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.AdminRevenue;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mỗi AdminRevenue mới được save() cộng vào daily_platform_metrics (bản ghi đọc từ DB đã được tính)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdminRevenueDailyMetricsListener extends AbstractMongoEventListener<AdminRevenue> {
+
+    private final DailyMetricsService dailyMetricsService;
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<AdminRevenue> event) {
+        event.getSource().setRolledUp(true);
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<AdminRevenue> event) {
+        AdminRevenue revenue = event.getSource();
+        if (revenue.isRolledUp()) {
+            return;
+        }
+        try {
+            dailyMetricsService.recordAdminRevenue(revenue.getRevenueType(), revenue.getCreatedAt(), revenue.getAmount());
+            revenue.setRolledUp(true);
+        } catch (Exception e) {
+            log.warn("[DailyMetrics] Lỗi cập nhật thống kê doanh thu {}: {}", revenue.getId(), e.getMessage());
+        }
+    }
+}
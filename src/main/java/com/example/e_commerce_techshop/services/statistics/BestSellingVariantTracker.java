@@ -0,0 +1,244 @@
+package com.example.e_commerce_techshop.services.statistics;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.DefaultStringTuple;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.models.OrderItem;
+import com.example.e_commerce_techshop.services.scheduled.StartupBackfill;
+import com.mongodb.DBRef;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Top biến thể bán chạy (theo store và toàn sàn) giữ trên Redis, dùng chung cho mọi node:
+ * mỗi (phạm vi, ngày tạo đơn) một sorted set "variantId_colorId" -> số lượng đã bán, cộng dồn khi đơn COMPLETED.
+ * Mỗi sorted set chỉ giữ MAX_MEMBERS_PER_DAY phần tử nhiều nhất (heavy hitters), nên bộ nhớ bị chặn
+ * và số liệu chính xác khi số biến thể bán trong ngày nhỏ hơn giới hạn.
+ * Top-K của một kỳ = ZUNIONSTORE các ngày trong kỳ, kết quả được giữ ngắn hạn để các lần đọc sau chỉ là ZREVRANGE.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BestSellingVariantTracker {
+
+    public static final String PLATFORM_SCOPE = "platform";
+
+    private static final String KEY_PREFIX = "best-selling:";
+    private static final String UNION_PREFIX = KEY_PREFIX + "union:";
+    private static final String BACKFILL_NAME = "best-selling";
+
+    private static final long MAX_MEMBERS_PER_DAY = 1_000;
+    private static final Duration DAY_TTL = Duration.ofDays(400);
+    private static final Duration UNION_TTL = Duration.ofSeconds(60);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final StartupBackfill startupBackfill;
+
+    // Ngày / mốc thống kê theo múi giờ kinh doanh (cùng cấu hình với Jackson), không phụ thuộc TZ của máy chủ
+    @Value("${spring.jackson.time-zone:Asia/Ho_Chi_Minh}")
+    private ZoneId zone;
+
+    /**
+     * Lần đầu chạy thì nạp số lượng bán từ các đơn COMPLETED hiện có: một node thực hiện dưới lease,
+     * marker chỉ được ghi khi nạp xong (StartupBackfill), node chết giữa chừng thì lần khởi động sau nạp lại
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread.ofVirtual().name("best-selling-backfill").start(() -> {
+            try {
+                startupBackfill.runOnce(BACKFILL_NAME, this::backfill);
+            } catch (Exception e) {
+                log.error("[BestSelling] Lỗi backfill: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Đơn đổi trạng thái: vào COMPLETED thì cộng số lượng, rời COMPLETED (trả hàng...) thì trừ lại
+     */
+    public void recordOrderTransition(Order order, String fromStatus, String toStatus) {
+        String completed = Order.OrderStatus.COMPLETED.name();
+        int sign;
+        if (completed.equals(toStatus) && !completed.equals(fromStatus)) {
+            sign = 1;
+        } else if (completed.equals(fromStatus) && !completed.equals(toStatus)) {
+            sign = -1;
+        } else {
+            return;
+        }
+        if (order.getStore() == null || order.getCreatedAt() == null || order.getOrderItems() == null) {
+            return;
+        }
+
+        Map<String, Long> quantities = new HashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            if (item != null && item.getProductVariant() != null && item.getQuantity() != null) {
+                quantities.merge(member(item.getProductVariant().getId(), item.getColorId()),
+                        (long) sign * item.getQuantity(), Long::sum);
+            }
+        }
+        increment(order.getStore().getId(),
+                order.getCreatedAt().atZone(ZoneId.systemDefault()).withZoneSameInstant(zone).toLocalDate(), quantities);
+    }
+
+    /**
+     * Top biến thể bán chạy trong các ngày [from, to] (theo ngày tạo đơn)
+     *
+     * @param scope storeId hoặc PLATFORM_SCOPE
+     * @return "variantId_colorId" -> số lượng, giảm dần
+     */
+    public Map<String, Long> topVariants(String scope, LocalDate from, LocalDate to, int limit) {
+        String unionKey = UNION_PREFIX + scope + ":" + from + ":" + to;
+
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(unionKey))) {
+            List<String> dayKeys = new ArrayList<>();
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                dayKeys.add(dayKey(scope, day));
+            }
+            stringRedisTemplate.opsForZSet().unionAndStore(dayKeys.get(0), dayKeys.subList(1, dayKeys.size()), unionKey);
+            stringRedisTemplate.expire(unionKey, UNION_TTL);
+        }
+
+        Map<String, Long> top = new LinkedHashMap<>();
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeWithScores(unionKey, 0, limit - 1);
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                if (tuple.getValue() != null && tuple.getScore() != null && tuple.getScore() > 0) {
+                    top.put(tuple.getValue(), tuple.getScore().longValue());
+                }
+            }
+        }
+        return top;
+    }
+
+    public static String member(String variantId, String colorId) {
+        return variantId + "_" + (colorId != null ? colorId : "default");
+    }
+
+    private void increment(String storeId, LocalDate day, Map<String, Long> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<String> keys = List.of(dayKey(storeId, day), dayKey(PLATFORM_SCOPE, day));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : keys) {
+                quantities.forEach((member, quantity) -> redis.zIncrBy(key, quantity, member));
+                // Bỏ phần tử đã trả hết và chỉ giữ MAX_MEMBERS_PER_DAY phần tử bán nhiều nhất
+                redis.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, 0);
+                redis.zRemRange(key, 0, -MAX_MEMBERS_PER_DAY - 1);
+                redis.expire(key, DAY_TTL.toSeconds());
+            }
+            return null;
+        });
+    }
+
+    // Dựng sorted set ở key tạm rồi RENAME đè lên key của ngày
+    private void replace(String key, Map<String, Long> quantities) {
+        String tempKey = key + ":rebuild";
+        Set<StringRedisConnection.StringTuple> tuples = new HashSet<>();
+        quantities.forEach((member, quantity) -> {
+            if (quantity > 0) {
+                tuples.add(new DefaultStringTuple(member, quantity.doubleValue()));
+            }
+        });
+        if (tuples.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.del(tempKey);
+            redis.zAdd(tempKey, tuples);
+            redis.zRemRange(tempKey, 0, -MAX_MEMBERS_PER_DAY - 1);
+            redis.rename(tempKey, key);
+            redis.expire(key, DAY_TTL.toSeconds());
+            return null;
+        });
+    }
+
+    private String dayKey(String scope, LocalDate day) {
+        return KEY_PREFIX + scope + ":" + day;
+    }
+
+    /**
+     * Đọc đơn COMPLETED và order_items dạng Document (không resolve DBRef), cộng theo (store, ngày)
+     * rồi thay sorted set của từng (phạm vi, ngày) có đơn
+     */
+    private void backfill() {
+        long start = System.currentTimeMillis();
+
+        // orderId -> storeId|ngày tạo đơn
+        Map<String, String> completedOrders = new HashMap<>();
+        Query orderQuery = new Query(Criteria.where("status").is(Order.OrderStatus.COMPLETED.name()));
+        orderQuery.fields().include("store", "createdAt");
+        try (Stream<Document> stream = mongoTemplate.stream(orderQuery, Document.class, "orders")) {
+            stream.forEach(doc -> {
+                Date createdAt = doc.getDate("createdAt");
+                if (doc.get("store") instanceof DBRef store && createdAt != null) {
+                    completedOrders.put(doc.get("_id").toString(),
+                            store.getId() + "|" + LocalDate.ofInstant(createdAt.toInstant(), zone));
+                }
+            });
+        }
+
+        Map<String, Map<String, Long>> quantitiesByStoreDay = new HashMap<>();
+        Query itemQuery = new Query();
+        itemQuery.fields().include("order", "productVariant", "colorId", "quantity");
+        try (Stream<Document> stream = mongoTemplate.stream(itemQuery, Document.class, "order_items")) {
+            stream.forEach(doc -> {
+                if (!(doc.get("order") instanceof DBRef order) || !(doc.get("productVariant") instanceof DBRef variant)
+                        || !(doc.get("quantity") instanceof Number quantity)) {
+                    return;
+                }
+                String storeDay = completedOrders.get(order.getId().toString());
+                if (storeDay != null) {
+                    quantitiesByStoreDay.computeIfAbsent(storeDay, k -> new HashMap<>())
+                            .merge(member(variant.getId().toString(), doc.getString("colorId")), quantity.longValue(), Long::sum);
+                }
+            });
+        }
+
+        // Ghi đè bằng tổng tuyệt đối (không cộng dồn) để chạy lại sau lỗi giữa chừng không bị đếm hai lần
+        Map<String, Map<String, Long>> quantitiesByKey = new HashMap<>();
+        quantitiesByStoreDay.forEach((storeDay, quantities) -> {
+            int separator = storeDay.indexOf('|');
+            LocalDate day = LocalDate.parse(storeDay.substring(separator + 1));
+            quantitiesByKey.put(dayKey(storeDay.substring(0, separator), day), quantities);
+            Map<String, Long> platform = quantitiesByKey.computeIfAbsent(dayKey(PLATFORM_SCOPE, day),
+                    k -> new HashMap<>());
+            quantities.forEach((member, quantity) -> platform.merge(member, quantity, Long::sum));
+        });
+        quantitiesByKey.forEach(this::replace);
+
+        log.info("[BestSelling] Backfilled {} completed orders ({} store-days) in {} ms", completedOrders.size(),
+                quantitiesByStoreDay.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.e_commerce_techshop.services.statistics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.e_commerce_techshop.models.AdminRevenue;
+import com.example.e_commerce_techshop.models.Static.RevenueBucket;
+import com.example.e_commerce_techshop.repositories.AdminRevenueRepository;
+import com.example.e_commerce_techshop.services.scheduled.StartupBackfill;
+import com.mongodb.DBRef;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bảng tổng hợp theo ngày cho dashboard:
+ * - daily_store_metrics: mỗi (store, ngày tạo đơn) một document, số đơn và tổng tiền theo từng trạng thái đơn
+ * - daily_platform_metrics: mỗi ngày một document, số bản ghi và tổng tiền theo từng loại AdminRevenue
+ * Được cập nhật bằng $inc mỗi khi đơn đổi trạng thái / ghi AdminRevenue (xem các listener),
+ * nên biểu đồ chỉ đọc vài trăm document nhỏ thay vì toàn bộ đơn hàng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DailyMetricsService {
+
+    public static final String STORE_COLLECTION = "daily_store_metrics";
+    public static final String PLATFORM_COLLECTION = "daily_platform_metrics";
+
+    private static final String ORDER_COLLECTION = "orders";
+    private static final String STORE_BACKFILL = "daily-store-metrics";
+    private static final String PLATFORM_BACKFILL = "daily-platform-metrics";
+    private static final int RECONCILE_PASSES = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final AdminRevenueRepository adminRevenueRepository;
+    private final StartupBackfill startupBackfill;
+
+    // Ngày / mốc thống kê theo múi giờ kinh doanh (cùng cấu hình với Jackson), không phụ thuộc TZ của máy chủ
+    @Value("${spring.jackson.time-zone:Asia/Ho_Chi_Minh}")
+    private ZoneId zone;
+
+    /**
+     * Lần đầu chạy thì backfill từ dữ liệu hiện có, một lần cho cả cụm (StartupBackfill: lease + marker sau khi xong).
+     * Không dựa vào collection rỗng vì listener có thể đã ghi vài document trước khi backfill chạy.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        Thread.ofVirtual().name("daily-metrics-backfill").start(() -> {
+            try {
+                startupBackfill.runOnce(STORE_BACKFILL, this::rebuildStoreMetrics);
+                startupBackfill.runOnce(PLATFORM_BACKFILL, this::rebuildPlatformMetrics);
+            } catch (Exception e) {
+                log.error("[DailyMetrics] Lỗi backfill: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    // ==================== Cập nhật tăng dần ====================
+
+    /**
+     * Đơn chuyển trạng thái (fromStatus = null nếu là đơn mới): trừ ở trạng thái cũ, cộng vào trạng thái mới
+     */
+    public void recordOrderTransition(String storeId, LocalDateTime createdAt, BigDecimal totalPrice,
+            String fromStatus, String toStatus) {
+        if (storeId == null || createdAt == null) {
+            return;
+        }
+        String day = dayOf(createdAt).toString();
+        Decimal128 amount = new Decimal128(totalPrice != null ? totalPrice : BigDecimal.ZERO);
+
+        Update update = new Update()
+                .setOnInsert("storeId", storeId)
+                .setOnInsert("day", day);
+        if (fromStatus != null) {
+            update.inc("counts." + fromStatus, -1)
+                    .inc("amounts." + fromStatus, new Decimal128(amount.bigDecimalValue().negate()));
+        }
+        if (toStatus != null) {
+            update.inc("counts." + toStatus, 1)
+                    .inc("amounts." + toStatus, amount);
+        }
+
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(storeId + ":" + day)), update, STORE_COLLECTION);
+    }
+
+    public void recordAdminRevenue(String revenueType, LocalDateTime createdAt, BigDecimal amount) {
+        if (revenueType == null || createdAt == null || amount == null) {
+            return;
+        }
+        String day = dayOf(createdAt).toString();
+        Update update = new Update()
+                .setOnInsert("day", day)
+                .inc("counts." + revenueType, 1)
+                .inc("amounts." + revenueType, new Decimal128(amount));
+
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(day)), update, PLATFORM_COLLECTION);
+    }
+
+    // ==================== Đọc ====================
+
+    /**
+     * Số đơn và tổng tiền theo ngày của store ở một trạng thái, tăng dần theo ngày (bỏ ngày không còn đơn)
+     */
+    public List<RevenueBucket> findStoreDaily(String storeId, String status) {
+        // _id = "{storeId}:{yyyy-MM-dd}": quét khoảng _id của store trên index _id (luôn có, kể cả sau khi rebuild
+        // rename collection) và thứ tự _id cũng là thứ tự ngày. ';' là ký tự ngay sau ':'
+        Query query = new Query(Criteria.where("_id").gte(storeId + ":").lt(storeId + ";")
+                .and("counts." + status).gt(0))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include("day", "counts." + status, "amounts." + status);
+
+        List<RevenueBucket> buckets = new ArrayList<>();
+        for (Document doc : mongoTemplate.find(query, Document.class, STORE_COLLECTION)) {
+            buckets.add(toBucket(doc, status));
+        }
+        return buckets;
+    }
+
+    /**
+     * Tổng theo ngày của các loại AdminRevenue, tăng dần theo ngày
+     */
+    public List<RevenueBucket> findPlatformDaily(List<String> revenueTypes) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+
+        List<RevenueBucket> buckets = new ArrayList<>();
+        for (Document doc : mongoTemplate.find(query, Document.class, PLATFORM_COLLECTION)) {
+            for (String revenueType : revenueTypes) {
+                RevenueBucket bucket = toBucket(doc, revenueType);
+                if (bucket.getCount() > 0) {
+                    buckets.add(bucket);
+                }
+            }
+        }
+        return buckets;
+    }
+
+    private RevenueBucket toBucket(Document doc, String key) {
+        LocalDateTime day = LocalDate.parse(doc.getString("day")).atStartOfDay();
+        Document counts = doc.get("counts", Document.class);
+        Document amounts = doc.get("amounts", Document.class);
+        Object count = counts != null ? counts.get(key) : null;
+        Object amount = amounts != null ? amounts.get(key) : null;
+        return new RevenueBucket(key, day,
+                amount instanceof Decimal128 decimal ? decimal.bigDecimalValue() : BigDecimal.ZERO,
+                count instanceof Number number ? number.longValue() : 0);
+    }
+
+    // ==================== Backfill ====================
+
+    /**
+     * Tính lại daily_store_metrics từ toàn bộ orders (không resolve DBRef).
+     * Thay thế dữ liệu cũ (collection tạm rồi rename đè lên), nên chỉ chạy khi khởi tạo hoặc cần sửa lệch số liệu.
+     */
+    public int rebuildStoreMetrics() {
+        long start = System.currentTimeMillis();
+        LocalDateTime rebuildStart = LocalDateTime.now();
+
+        Query query = new Query();
+        query.fields().include("store", "status", "totalPrice", "createdAt");
+        Map<String, Document> docs = sumOrdersByStoreDay(query);
+
+        startupBackfill.replaceCollection(STORE_COLLECTION, docs.values());
+        reconcileStoreMetrics(rebuildStart);
+        log.info("[DailyMetrics] Rebuilt {} daily store documents in {} ms", docs.size(),
+                System.currentTimeMillis() - start);
+        return docs.size();
+    }
+
+    /**
+     * $inc của các đơn đổi trạng thái trong lúc rebuild (ở mọi node) rơi vào collection cũ và mất khi rename:
+     * tính lại các (store, ngày) có đơn được cập nhật từ lúc bắt đầu rebuild rồi ghi đè lên collection mới.
+     * Lặp lại với các đơn đổi trạng thái trong lúc tính lại, tối đa RECONCILE_PASSES lần.
+     */
+    private void reconcileStoreMetrics(LocalDateTime since) {
+        for (int pass = 0; pass < RECONCILE_PASSES; pass++) {
+            LocalDateTime passStart = LocalDateTime.now();
+
+            Query changed = new Query(Criteria.where("updatedAt").gte(toDate(since)));
+            changed.fields().include("store", "createdAt");
+            Set<String> keys = new HashSet<>();
+            Set<Object> storeIds = new HashSet<>();
+            LocalDate[] range = new LocalDate[2];
+            try (Stream<Document> stream = mongoTemplate.stream(changed, Document.class, ORDER_COLLECTION)) {
+                stream.forEach(order -> {
+                    Date createdAt = order.getDate("createdAt");
+                    if (!(order.get("store") instanceof DBRef dbRef) || createdAt == null) {
+                        return;
+                    }
+                    LocalDate day = LocalDate.ofInstant(createdAt.toInstant(), zone);
+                    keys.add(dbRef.getId() + ":" + day);
+                    storeIds.add(dbRef.getId());
+                    range[0] = range[0] == null || day.isBefore(range[0]) ? day : range[0];
+                    range[1] = range[1] == null || day.isAfter(range[1]) ? day : range[1];
+                });
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+
+            Query query = new Query(Criteria.where("store.$id").in(storeIds)
+                    .and("createdAt").gte(startOf(range[0])).lt(startOf(range[1].plusDays(1))));
+            query.fields().include("store", "status", "totalPrice", "createdAt");
+            Map<String, Document> docs = sumOrdersByStoreDay(query);
+            for (String key : keys) {
+                Document doc = docs.get(key);
+                if (doc != null) {
+                    mongoTemplate.save(doc, STORE_COLLECTION);
+                } else {
+                    mongoTemplate.remove(new Query(Criteria.where("_id").is(key)), STORE_COLLECTION);
+                }
+            }
+            log.info("[DailyMetrics] Reconciled {} daily store documents changed during rebuild", keys.size());
+            since = passStart;
+        }
+    }
+
+    // (store, ngày tạo đơn) -> document daily_store_metrics của các đơn trong query
+    private Map<String, Document> sumOrdersByStoreDay(Query query) {
+        Map<String, Document> docs = new HashMap<>();
+        try (Stream<Document> stream = mongoTemplate.stream(query, Document.class, ORDER_COLLECTION)) {
+            stream.forEach(order -> {
+                Object ref = order.get("store");
+                String status = order.getString("status");
+                Date createdAt = order.getDate("createdAt");
+                if (!(ref instanceof DBRef dbRef) || status == null || createdAt == null) {
+                    return;
+                }
+                String storeId = dbRef.getId().toString();
+                String day = LocalDate.ofInstant(createdAt.toInstant(), zone).toString();
+                BigDecimal totalPrice = toBigDecimal(order.get("totalPrice"));
+
+                Document doc = docs.computeIfAbsent(storeId + ":" + day, id -> new Document("_id", id)
+                        .append("storeId", storeId)
+                        .append("day", day)
+                        .append("counts", new Document())
+                        .append("amounts", new Document()));
+                addTo(doc, status, 1, totalPrice);
+            });
+        }
+        return docs;
+    }
+
+    /**
+     * Tính lại daily_platform_metrics từ admin_revenues (cộng theo ngày ngay trên MongoDB)
+     */
+    public int rebuildPlatformMetrics() {
+        long start = System.currentTimeMillis();
+        LocalDateTime rebuildStart = LocalDateTime.now();
+
+        Map<String, Document> docs = sumRevenueByDay(null);
+        startupBackfill.replaceCollection(PLATFORM_COLLECTION, docs.values());
+
+        // AdminRevenue chỉ được thêm mới: các ngày từ lúc bắt đầu rebuild được tính lại và ghi đè,
+        // bù cho $inc đã rơi vào collection cũ trong lúc rebuild
+        LocalDateTime since = LocalDateTime.ofInstant(startOf(dayOf(rebuildStart)).toInstant(), ZoneId.systemDefault());
+        Map<String, Document> recent = sumRevenueByDay(since);
+        recent.values().forEach(doc -> mongoTemplate.save(doc, PLATFORM_COLLECTION));
+
+        log.info("[DailyMetrics] Rebuilt {} daily platform documents in {} ms", docs.size(),
+                System.currentTimeMillis() - start);
+        return docs.size();
+    }
+
+    private Map<String, Document> sumRevenueByDay(LocalDateTime from) {
+        List<String> revenueTypes = List.of(
+                AdminRevenue.RevenueType.PLATFORM_COMMISSION.name(),
+                AdminRevenue.RevenueType.PLATFORM_DISCOUNT_LOSS.name(),
+                AdminRevenue.RevenueType.SHIPPING_FEE.name());
+
+        Map<String, Document> docs = new HashMap<>();
+        for (RevenueBucket bucket : adminRevenueRepository.sumByRevenueTypeAndPeriod(revenueTypes, "day", from)) {
+            String day = bucket.getBucketStart().toLocalDate().toString();
+            Document doc = docs.computeIfAbsent(day, id -> new Document("_id", id)
+                    .append("day", day)
+                    .append("counts", new Document())
+                    .append("amounts", new Document()));
+            addTo(doc, bucket.getRevenueType(), bucket.getCount(), bucket.getTotal());
+        }
+        return docs;
+    }
+
+    // LocalDateTime của entity / LocalDateTime.now() theo múi giờ JVM (Spring Data cũng đổi sang Date theo múi giờ này)
+    private Date toDate(LocalDateTime value) {
+        return Date.from(value.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private LocalDate dayOf(LocalDateTime value) {
+        return value.atZone(ZoneId.systemDefault()).withZoneSameInstant(zone).toLocalDate();
+    }
+
+    private Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(zone).toInstant());
+    }
+
+    private void addTo(Document doc, String key, long count, BigDecimal amount) {
+        Document counts = doc.get("counts", Document.class);
+        Document amounts = doc.get("amounts", Document.class);
+        counts.merge(key, count, (a, b) -> ((Number) a).longValue() + ((Number) b).longValue());
+        Object current = amounts.get(key);
+        BigDecimal sum = current instanceof Decimal128 decimal ? decimal.bigDecimalValue().add(amount) : amount;
+        amounts.put(key, new Decimal128(sum));
+    }
+
+    // totalPrice (BigDecimal) được lưu dạng string
+    private BigDecimal toBigDecimal(Object value) {
+        if (value instanceof String text && !text.isBlank()) {
+            return new BigDecimal(text);
+        }
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return BigDecimal.ZERO;
+    }
+}
@@ -19,6 +19,8 @@ public interface IStatisticsService {
     // Chart data methods
     Map<String, Object> getRevenueChartData(String period);
 
+    Map<String, Object> rebuildDailyMetrics();
+
     Map<String, Object> getStoreOverviewStatistics(String storeId);
 
     Map<String, Object> getStoreRevenueChartData(String storeId, String period) throws Exception;
@@ -30,4 +32,6 @@ public interface IStatisticsService {
     Map<String, Object> getVariantCountByStockStatus(String storeId) throws Exception;
 
     Map<String, Object> getBestSellingVariants(String storeId, Integer limit, String period) throws Exception;
+
+    Map<String, Object> getPlatformBestSellingVariants(Integer limit, String period);
 }
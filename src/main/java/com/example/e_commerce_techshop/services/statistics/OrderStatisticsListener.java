@@ -0,0 +1,78 @@
+package com.example.e_commerce_techshop.services.statistics;
+
+import java.util.Objects;
+
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.services.search.ProductVariantIndexSync;
+import com.example.e_commerce_techshop.services.search.ProductVariantSuggestionIndex;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mỗi lần save() Order đổi trạng thái (tạo, xác nhận, giao, hoàn tất, hủy, trả hàng...)
+ * chuyển đơn sang trạng thái mới trong daily_store_metrics, cập nhật top biến thể bán chạy
+ * và số lượng bán dùng để xếp hạng gợi ý tìm kiếm (trừ lại khi đơn bị hủy / trả hàng).
+ * Trạng thái đã cộng được ghi nhớ trên entity khi đọc từ DB (rolledUpStatus).
+ * Đơn đổi trạng thái bằng update trực tiếp (không qua save) phải gọi recordTransition.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatisticsListener extends AbstractMongoEventListener<Order> {
+
+    private final DailyMetricsService dailyMetricsService;
+    private final BestSellingVariantTracker bestSellingVariantTracker;
+    private final ProductVariantSuggestionIndex suggestionIndex;
+    private final ProductVariantIndexSync indexSync;
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<Order> event) {
+        event.getSource().setRolledUpStatus(event.getSource().getStatus());
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Order> event) {
+        recordTransition(event.getSource());
+    }
+
+    public void recordTransition(Order order) {
+        if (Objects.equals(order.getRolledUpStatus(), order.getStatus())) {
+            return;
+        }
+        String fromStatus = order.getRolledUpStatus();
+        // Đánh dấu trước để lỗi ở một nơi không làm lần save sau cộng trùng; số liệu lệch được sửa khi rebuild
+        order.setRolledUpStatus(order.getStatus());
+        try {
+            dailyMetricsService.recordOrderTransition(
+                    order.getStore() != null ? order.getStore().getId() : null,
+                    order.getCreatedAt(), order.getTotalPrice(),
+                    fromStatus, order.getStatus());
+        } catch (Exception e) {
+            log.warn("[DailyMetrics] Lỗi cập nhật thống kê đơn {}: {}", order.getId(), e.getMessage());
+        }
+        try {
+            bestSellingVariantTracker.recordOrderTransition(order, fromStatus, order.getStatus());
+        } catch (Exception e) {
+            log.warn("[BestSelling] Lỗi cập nhật top bán chạy đơn {}: {}", order.getId(), e.getMessage());
+        }
+        recordSuggestionSales(order, fromStatus);
+    }
+
+    /**
+     * Cập nhật số lượng bán của trie gợi ý trên node này và các node khác.
+     * OrderService gọi trực tiếp (fromStatus = null) sau khi đã lưu order_items của đơn mới.
+     */
+    public void recordSuggestionSales(Order order, String fromStatus) {
+        try {
+            indexSync.publishSales(suggestionIndex.recordOrderTransition(order.getId(), fromStatus, order.getStatus()));
+        } catch (Exception e) {
+            log.warn("[Suggestion] Lỗi cập nhật số lượng bán đơn {}: {}", order.getId(), e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.e_commerce_techshop.services.statistics;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.WeekFields;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -18,6 +21,7 @@ import com.example.e_commerce_techshop.models.AdminRevenue;
 import com.example.e_commerce_techshop.models.Order;
 import com.example.e_commerce_techshop.models.OrderItem;
 import com.example.e_commerce_techshop.models.ProductVariant;
+import com.example.e_commerce_techshop.models.Static.RevenueBucket;
 import com.example.e_commerce_techshop.repositories.AdminRevenueRepository;
 import com.example.e_commerce_techshop.repositories.OrderItemRepository;
 import com.example.e_commerce_techshop.repositories.OrderRepository;
@@ -29,9 +33,11 @@ import com.example.e_commerce_techshop.repositories.user.UserRepository;
 import com.example.e_commerce_techshop.responses.admin.AdminRevenueResponse;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class StatisticsService implements IStatisticsService {
     private final StoreRepository storeRepository;
     private final ProductRepository productRepository;
@@ -41,6 +47,14 @@ public class StatisticsService implements IStatisticsService {
     private final AdminRevenueRepository adminRevenueRepository;
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
+    private final DailyMetricsService dailyMetricsService;
+    private final BestSellingVariantTracker bestSellingVariantTracker;
+
+    private static final List<String> REVENUE_TYPES = List.of(
+            AdminRevenue.RevenueType.PLATFORM_COMMISSION.name(),
+            AdminRevenue.RevenueType.PLATFORM_DISCOUNT_LOSS.name(),
+            AdminRevenue.RevenueType.SHIPPING_FEE.name());
+    private static final RevenueBucket EMPTY_BUCKET = new RevenueBucket(null, null, BigDecimal.ZERO, 0);
 
     @Override
     public Map<String, Object> getAdminOverviewStatistics() throws Exception {
@@ -74,32 +88,30 @@ public class StatisticsService implements IStatisticsService {
 
     @Override
     public Map<String, Object> getAdminRevenueStatistics() {
+        // Tổng tiền và số bản ghi của từng loại doanh thu, cộng trên MongoDB trong một lần aggregate
+        Map<String, RevenueBucket> totals = adminRevenueRepository.sumByRevenueType(REVENUE_TYPES).stream()
+                .collect(Collectors.toMap(RevenueBucket::getRevenueType, bucket -> bucket));
+
         // Tổng hoa hồng nền tảng
-        List<AdminRevenue> platformCommissions = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.PLATFORM_COMMISSION.name());
-        BigDecimal totalPlatformCommission = platformCommissions.stream()
-                .map(AdminRevenue::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        RevenueBucket platformCommissions = totals.getOrDefault(AdminRevenue.RevenueType.PLATFORM_COMMISSION.name(), EMPTY_BUCKET);
+        BigDecimal totalPlatformCommission = platformCommissions.getTotal();
 
         // Tổng tiền lỗ từ platform discount
-        List<AdminRevenue> platformDiscountLoss = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.PLATFORM_DISCOUNT_LOSS.name());
-        BigDecimal totalPlatformDiscountLoss = platformDiscountLoss.stream()
-                .map(AdminRevenue::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        RevenueBucket platformDiscountLoss = totals.getOrDefault(AdminRevenue.RevenueType.PLATFORM_DISCOUNT_LOSS.name(), EMPTY_BUCKET);
+        BigDecimal totalPlatformDiscountLoss = platformDiscountLoss.getTotal();
 
         // Tổng phí vận chuyển
-        List<AdminRevenue> shippingFees = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.SHIPPING_FEE.name());
-        BigDecimal totalShippingFee = shippingFees.stream()
-                .map(AdminRevenue::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        RevenueBucket shippingFees = totals.getOrDefault(AdminRevenue.RevenueType.SHIPPING_FEE.name(), EMPTY_BUCKET);
+        BigDecimal totalShippingFee = shippingFees.getTotal();
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalPlatformCommission", totalPlatformCommission);
         stats.put("totalPlatformDiscountLoss", totalPlatformDiscountLoss);
         stats.put("totalShippingFee", totalShippingFee);
         stats.put("netRevenue", totalPlatformCommission.add(totalShippingFee).subtract(totalPlatformDiscountLoss));
-        stats.put("platformCommissionCount", platformCommissions.size());
-        stats.put("platformDiscountLossCount", platformDiscountLoss.size());
-        stats.put("shippingFeeCount", shippingFees.size());
+        stats.put("platformCommissionCount", (int) platformCommissions.getCount());
+        stats.put("platformDiscountLossCount", (int) platformDiscountLoss.getCount());
+        stats.put("shippingFeeCount", (int) shippingFees.getCount());
 
         return stats;
     }
@@ -202,12 +214,10 @@ public class StatisticsService implements IStatisticsService {
     public Map<String, Object> getRevenueChartData(String period) {
         Map<String, Object> chartData = new HashMap<>();
 
-        // Lấy riêng biệt theo loại doanh thu
-        List<AdminRevenue> platformCommissionRevenues = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.PLATFORM_COMMISSION.name());
-        List<AdminRevenue> shippingFeeRevenues = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.SHIPPING_FEE.name());
-        List<AdminRevenue> discountLossRevenues = adminRevenueRepository.findByRevenueType(AdminRevenue.RevenueType.PLATFORM_DISCOUNT_LOSS.name());
+        // Đọc bảng tổng hợp theo ngày (daily_platform_metrics), gộp theo nhãn tuần/tháng/năm
+        List<RevenueBucket> buckets = dailyMetricsService.findPlatformDaily(REVENUE_TYPES);
 
-        if (platformCommissionRevenues.isEmpty() && shippingFeeRevenues.isEmpty() && discountLossRevenues.isEmpty()) {
+        if (buckets.isEmpty()) {
             chartData.put("labels", new ArrayList<>());
             chartData.put("platformCommissions", new ArrayList<>());
             chartData.put("shippingFees", new ArrayList<>());
@@ -220,15 +230,21 @@ public class StatisticsService implements IStatisticsService {
         Map<String, BigDecimal> shippingFeeData = new LinkedHashMap<>();
         Map<String, BigDecimal> discountLossData = new LinkedHashMap<>();
 
-        if ("WEEK".equalsIgnoreCase(period)) {
-            getWeeklyDataThreeSeparate(platformCommissionRevenues, shippingFeeRevenues, discountLossRevenues, 
-                    platformCommissionData, shippingFeeData, discountLossData);
-        } else if ("MONTH".equalsIgnoreCase(period)) {
-            getMonthlyDataThreeSeparate(platformCommissionRevenues, shippingFeeRevenues, discountLossRevenues, 
-                    platformCommissionData, shippingFeeData, discountLossData);
-        } else if ("YEAR".equalsIgnoreCase(period)) {
-            getYearlyDataThreeSeparate(platformCommissionRevenues, shippingFeeRevenues, discountLossRevenues, 
-                    platformCommissionData, shippingFeeData, discountLossData);
+        if (isChartPeriod(period)) {
+            // Buckets đã sắp xếp tăng dần theo thời gian -> nhãn theo thứ tự thời gian
+            for (RevenueBucket bucket : buckets) {
+                String label = chartLabel(period, bucket.getBucketStart());
+                platformCommissionData.putIfAbsent(label, BigDecimal.ZERO);
+                shippingFeeData.putIfAbsent(label, BigDecimal.ZERO);
+                discountLossData.putIfAbsent(label, BigDecimal.ZERO);
+
+                Map<String, BigDecimal> target = switch (AdminRevenue.RevenueType.valueOf(bucket.getRevenueType())) {
+                    case PLATFORM_COMMISSION -> platformCommissionData;
+                    case SHIPPING_FEE -> shippingFeeData;
+                    case PLATFORM_DISCOUNT_LOSS -> discountLossData;
+                };
+                target.merge(label, bucket.getTotal(), BigDecimal::add);
+            }
         }
 
         List<String> labels = new ArrayList<>(platformCommissionData.keySet());
@@ -258,182 +274,28 @@ public class StatisticsService implements IStatisticsService {
         return chartData;
     }
 
-    private void getWeeklyDataThreeSeparate(List<AdminRevenue> platformCommissionRevenues, 
-            List<AdminRevenue> shippingFeeRevenues, List<AdminRevenue> discountLossRevenues,
-            Map<String, BigDecimal> platformCommissionData, Map<String, BigDecimal> shippingFeeData, 
-            Map<String, BigDecimal> discountLossData) {
-        WeekFields weekFields = WeekFields.ISO;
-
-        // Xử lý platform commissions
-        platformCommissionRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            LocalDateTime createdAt = r.getCreatedAt();
-                            int weekOfYear = createdAt.get(weekFields.weekOfYear());
-                            int year = createdAt.getYear();
-                            return String.format("Tuần %d/%d", weekOfYear, year);
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(platformCommissionData::put);
-
-        // Xử lý shipping fees
-        shippingFeeRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            LocalDateTime createdAt = r.getCreatedAt();
-                            int weekOfYear = createdAt.get(weekFields.weekOfYear());
-                            int year = createdAt.getYear();
-                            return String.format("Tuần %d/%d", weekOfYear, year);
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(shippingFeeData::put);
-
-        // Xử lý discount losses
-        discountLossRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            LocalDateTime createdAt = r.getCreatedAt();
-                            int weekOfYear = createdAt.get(weekFields.weekOfYear());
-                            int year = createdAt.getYear();
-                            return String.format("Tuần %d/%d", weekOfYear, year);
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(discountLossData::put);
-
-        // Đảm bảo cả ba map có cùng keys
-        platformCommissionData.keySet().forEach(week -> {
-            shippingFeeData.putIfAbsent(week, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(week, BigDecimal.ZERO);
-        });
-        shippingFeeData.keySet().forEach(week -> {
-            platformCommissionData.putIfAbsent(week, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(week, BigDecimal.ZERO);
-        });
-        discountLossData.keySet().forEach(week -> {
-            platformCommissionData.putIfAbsent(week, BigDecimal.ZERO);
-            shippingFeeData.putIfAbsent(week, BigDecimal.ZERO);
-        });
+    @Override
+    public Map<String, Object> rebuildDailyMetrics() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("storeDocuments", dailyMetricsService.rebuildStoreMetrics());
+        result.put("platformDocuments", dailyMetricsService.rebuildPlatformMetrics());
+        return result;
     }
 
-    private void getMonthlyDataThreeSeparate(List<AdminRevenue> platformCommissionRevenues, 
-            List<AdminRevenue> shippingFeeRevenues, List<AdminRevenue> discountLossRevenues,
-            Map<String, BigDecimal> platformCommissionData, Map<String, BigDecimal> shippingFeeData, 
-            Map<String, BigDecimal> discountLossData) {
-
-        // Xử lý platform commissions
-        platformCommissionRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            YearMonth yearMonth = YearMonth.from(r.getCreatedAt());
-                            return yearMonth.format(java.time.format.DateTimeFormatter.ofPattern("MMMM yyyy",
-                                    java.util.Locale.forLanguageTag("vi_VN")));
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(platformCommissionData::put);
-
-        // Xử lý shipping fees
-        shippingFeeRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            YearMonth yearMonth = YearMonth.from(r.getCreatedAt());
-                            return yearMonth.format(java.time.format.DateTimeFormatter.ofPattern("MMMM yyyy",
-                                    java.util.Locale.forLanguageTag("vi_VN")));
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(shippingFeeData::put);
-
-        // Xử lý discount losses
-        discountLossRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> {
-                            YearMonth yearMonth = YearMonth.from(r.getCreatedAt());
-                            return yearMonth.format(java.time.format.DateTimeFormatter.ofPattern("MMMM yyyy",
-                                    java.util.Locale.forLanguageTag("vi_VN")));
-                        },
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(discountLossData::put);
-
-        // Đảm bảo cả ba map có cùng keys
-        platformCommissionData.keySet().forEach(month -> {
-            shippingFeeData.putIfAbsent(month, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(month, BigDecimal.ZERO);
-        });
-        shippingFeeData.keySet().forEach(month -> {
-            platformCommissionData.putIfAbsent(month, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(month, BigDecimal.ZERO);
-        });
-        discountLossData.keySet().forEach(month -> {
-            platformCommissionData.putIfAbsent(month, BigDecimal.ZERO);
-            shippingFeeData.putIfAbsent(month, BigDecimal.ZERO);
-        });
+    private boolean isChartPeriod(String period) {
+        return "WEEK".equalsIgnoreCase(period) || "MONTH".equalsIgnoreCase(period) || "YEAR".equalsIgnoreCase(period);
     }
 
-    private void getYearlyDataThreeSeparate(List<AdminRevenue> platformCommissionRevenues, 
-            List<AdminRevenue> shippingFeeRevenues, List<AdminRevenue> discountLossRevenues,
-            Map<String, BigDecimal> platformCommissionData, Map<String, BigDecimal> shippingFeeData, 
-            Map<String, BigDecimal> discountLossData) {
-
-        // Xử lý platform commissions
-        platformCommissionRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> String.format("Năm %d", r.getCreatedAt().getYear()),
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(platformCommissionData::put);
-
-        // Xử lý shipping fees
-        shippingFeeRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> String.format("Năm %d", r.getCreatedAt().getYear()),
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(shippingFeeData::put);
-
-        // Xử lý discount losses
-        discountLossRevenues.stream()
-                .filter(r -> r.getCreatedAt() != null && r.getAmount() != null)
-                .collect(Collectors.groupingBy(
-                        r -> String.format("Năm %d", r.getCreatedAt().getYear()),
-                        LinkedHashMap::new,
-                        Collectors.mapping(AdminRevenue::getAmount,
-                                Collectors.reducing(BigDecimal.ZERO, BigDecimal::add))))
-                .forEach(discountLossData::put);
-
-        // Đảm bảo cả ba map có cùng keys
-        platformCommissionData.keySet().forEach(year -> {
-            shippingFeeData.putIfAbsent(year, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(year, BigDecimal.ZERO);
-        });
-        shippingFeeData.keySet().forEach(year -> {
-            platformCommissionData.putIfAbsent(year, BigDecimal.ZERO);
-            discountLossData.putIfAbsent(year, BigDecimal.ZERO);
-        });
-        discountLossData.keySet().forEach(year -> {
-            platformCommissionData.putIfAbsent(year, BigDecimal.ZERO);
-            shippingFeeData.putIfAbsent(year, BigDecimal.ZERO);
-        });
+    private String chartLabel(String period, LocalDateTime bucketStart) {
+        if ("WEEK".equalsIgnoreCase(period)) {
+            int weekOfYear = bucketStart.get(WeekFields.ISO.weekOfYear());
+            return String.format("Tuần %d/%d", weekOfYear, bucketStart.getYear());
+        }
+        if ("MONTH".equalsIgnoreCase(period)) {
+            return YearMonth.from(bucketStart).format(DateTimeFormatter.ofPattern("MMMM yyyy",
+                    Locale.forLanguageTag("vi_VN")));
+        }
+        return String.format("Năm %d", bucketStart.getYear());
     }
 
     @Override
@@ -471,9 +333,10 @@ public class StatisticsService implements IStatisticsService {
     public Map<String, Object> getStoreRevenueChartData(String storeId, String period) throws Exception {
         Map<String, Object> chartData = new HashMap<>();
 
-        List<Order> allOrders = orderRepository.findByStoreIdAndStatus(storeId, "DELIVERED");
+        // Đơn đã giao theo ngày tạo đơn, đọc từ daily_store_metrics
+        List<RevenueBucket> buckets = dailyMetricsService.findStoreDaily(storeId, Order.OrderStatus.DELIVERED.name());
 
-        if (allOrders.isEmpty()) {
+        if (buckets.isEmpty()) {
             chartData.put("labels", new ArrayList<>());
             chartData.put("revenues", new ArrayList<>());
             chartData.put("revenueLabel", "Doanh thu");
@@ -483,12 +346,10 @@ public class StatisticsService implements IStatisticsService {
 
         Map<String, BigDecimal> revenueData = new LinkedHashMap<>();
 
-        if ("WEEK".equalsIgnoreCase(period)) {
-            getStoreWeeklyRevenueData(allOrders, revenueData);
-        } else if ("MONTH".equalsIgnoreCase(period)) {
-            getStoreMonthlyRevenueData(allOrders, revenueData);
-        } else if ("YEAR".equalsIgnoreCase(period)) {
-            getStoreYearlyRevenueData(allOrders, revenueData);
+        if (isChartPeriod(period)) {
+            for (RevenueBucket bucket : buckets) {
+                revenueData.merge(chartLabel(period, bucket.getBucketStart()), bucket.getTotal(), BigDecimal::add);
+            }
         }
 
         List<String> labels = new ArrayList<>(revenueData.keySet());
@@ -502,69 +363,13 @@ public class StatisticsService implements IStatisticsService {
         return chartData;
     }
 
-    private void getStoreWeeklyRevenueData(List<Order> orders, Map<String, BigDecimal> revenueData) {
-        WeekFields weekFields = WeekFields.ISO;
-
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null && o.getTotalPrice() != null)
-                .collect(Collectors.groupingBy(
-                        o -> {
-                            LocalDateTime createdAt = o.getCreatedAt();
-                            int weekOfYear = createdAt.get(weekFields.weekOfYear());
-                            int year = createdAt.getYear();
-                            return String.format("Tuần %d/%d", weekOfYear, year);
-                        },
-                        LinkedHashMap::new,
-                        Collectors.toList()))
-                .forEach((week, items) -> {
-                    BigDecimal totalRevenue = items.stream()
-                            .map(Order::getTotalPrice)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    revenueData.put(week, totalRevenue);
-                });
-    }
-
-    private void getStoreMonthlyRevenueData(List<Order> orders, Map<String, BigDecimal> revenueData) {
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null && o.getTotalPrice() != null)
-                .collect(Collectors.groupingBy(
-                        o -> {
-                            YearMonth yearMonth = YearMonth.from(o.getCreatedAt());
-                            return yearMonth.format(java.time.format.DateTimeFormatter.ofPattern("MMMM yyyy",
-                                    java.util.Locale.forLanguageTag("vi_VN")));
-                        },
-                        LinkedHashMap::new,
-                        Collectors.toList()))
-                .forEach((month, items) -> {
-                    BigDecimal totalRevenue = items.stream()
-                            .map(Order::getTotalPrice)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    revenueData.put(month, totalRevenue);
-                });
-    }
-
-    private void getStoreYearlyRevenueData(List<Order> orders, Map<String, BigDecimal> revenueData) {
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null && o.getTotalPrice() != null)
-                .collect(Collectors.groupingBy(
-                        o -> String.format("Năm %d", o.getCreatedAt().getYear()),
-                        LinkedHashMap::new,
-                        Collectors.toList()))
-                .forEach((year, items) -> {
-                    BigDecimal totalRevenue = items.stream()
-                            .map(Order::getTotalPrice)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    revenueData.put(year, totalRevenue);
-                });
-    }
-
     @Override
     public Map<String, Object> getStoreOrdersChartData(String storeId, String period) throws Exception {
         Map<String, Object> chartData = new HashMap<>();
 
-        List<Order> allOrders = orderRepository.findByStoreIdAndStatus(storeId, "DELIVERED");
+        List<RevenueBucket> buckets = dailyMetricsService.findStoreDaily(storeId, Order.OrderStatus.DELIVERED.name());
 
-        if (allOrders.isEmpty()) {
+        if (buckets.isEmpty()) {
             chartData.put("labels", new ArrayList<>());
             chartData.put("orderCounts", new ArrayList<>());
             chartData.put("orderCountLabel", "Số đơn hàng");
@@ -574,12 +379,10 @@ public class StatisticsService implements IStatisticsService {
 
         Map<String, Long> orderData = new LinkedHashMap<>();
 
-        if ("WEEK".equalsIgnoreCase(period)) {
-            getStoreWeeklyOrderCount(allOrders, orderData);
-        } else if ("MONTH".equalsIgnoreCase(period)) {
-            getStoreMonthlyOrderCount(allOrders, orderData);
-        } else if ("YEAR".equalsIgnoreCase(period)) {
-            getStoreYearlyOrderCount(allOrders, orderData);
+        if (isChartPeriod(period)) {
+            for (RevenueBucket bucket : buckets) {
+                orderData.merge(chartLabel(period, bucket.getBucketStart()), bucket.getCount(), Long::sum);
+            }
         }
 
         List<String> labels = new ArrayList<>(orderData.keySet());
@@ -593,47 +396,6 @@ public class StatisticsService implements IStatisticsService {
         return chartData;
     }
 
-    private void getStoreWeeklyOrderCount(List<Order> orders, Map<String, Long> orderData) {
-        WeekFields weekFields = WeekFields.ISO;
-
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .collect(Collectors.groupingBy(
-                        o -> {
-                            LocalDateTime createdAt = o.getCreatedAt();
-                            int weekOfYear = createdAt.get(weekFields.weekOfYear());
-                            int year = createdAt.getYear();
-                            return String.format("Tuần %d/%d", weekOfYear, year);
-                        },
-                        LinkedHashMap::new,
-                        Collectors.counting()))
-                .forEach(orderData::put);
-    }
-
-    private void getStoreMonthlyOrderCount(List<Order> orders, Map<String, Long> orderData) {
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .collect(Collectors.groupingBy(
-                        o -> {
-                            YearMonth yearMonth = YearMonth.from(o.getCreatedAt());
-                            return yearMonth.format(java.time.format.DateTimeFormatter.ofPattern("MMMM yyyy",
-                                    java.util.Locale.forLanguageTag("vi_VN")));
-                        },
-                        LinkedHashMap::new,
-                        Collectors.counting()))
-                .forEach(orderData::put);
-    }
-
-    private void getStoreYearlyOrderCount(List<Order> orders, Map<String, Long> orderData) {
-        orders.stream()
-                .filter(o -> o.getCreatedAt() != null)
-                .collect(Collectors.groupingBy(
-                        o -> String.format("Năm %d", o.getCreatedAt().getYear()),
-                        LinkedHashMap::new,
-                        Collectors.counting()))
-                .forEach(orderData::put);
-    }
-
     @Override
     public Map<String, Object> getOrderCountByStatus(String storeId) throws Exception {
         Map<String, Object> orderStats = new HashMap<>();
@@ -675,14 +437,92 @@ public class StatisticsService implements IStatisticsService {
     public Map<String, Object> getBestSellingVariants(String storeId, Integer limit, String period) throws Exception {
         Map<String, Object> result = new HashMap<>();
 
+        List<Map<String, Object>> bestSellingVariants;
+        if ("ALL".equalsIgnoreCase(period)) {
+            bestSellingVariants = getBestSellingVariantsExact(storeId, limit, period);
+        } else {
+            try {
+                // Top-K giữ sẵn trên Redis, không phải đọc lại đơn hàng
+                bestSellingVariants = getBestSellingVariantsFromTracker(storeId, limit, period);
+            } catch (Exception e) {
+                log.warn("[Statistics] Không đọc được top bán chạy từ Redis, tính trực tiếp: {}", e.getMessage());
+                bestSellingVariants = getBestSellingVariantsExact(storeId, limit, period);
+            }
+        }
+
+        result.put("variants", bestSellingVariants);
+        result.put("period", period);
+        result.put("limit", limit);
+
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getPlatformBestSellingVariants(Integer limit, String period) {
+        Map<String, Object> result = new HashMap<>();
+
+        List<Map<String, Object>> bestSellingVariants;
+        try {
+            bestSellingVariants = getBestSellingVariantsFromTracker(BestSellingVariantTracker.PLATFORM_SCOPE, limit,
+                    period);
+        } catch (Exception e) {
+            log.warn("[Statistics] Không đọc được top bán chạy toàn sàn từ Redis, tính trực tiếp: {}", e.getMessage());
+            bestSellingVariants = getBestSellingVariantsExact(null, limit, period);
+        }
+
+        result.put("variants", bestSellingVariants);
+        result.put("period", period);
+        result.put("limit", limit);
+        return result;
+    }
+
+    private List<Map<String, Object>> getBestSellingVariantsFromTracker(String scope, Integer limit, String period) {
+        LocalDate today = LocalDate.now();
+        Map<String, Long> topVariants = bestSellingVariantTracker.topVariants(scope,
+                today.minusDays(periodDays(period)), today, limit);
+        if (topVariants.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Lấy thông tin variant một lần cho cả top
+        List<String> variantIds = topVariants.keySet().stream()
+                .map(key -> key.substring(0, key.indexOf('_')))
+                .distinct()
+                .toList();
+        Map<String, ProductVariant> variants = new HashMap<>();
+        productVariantRepository.findAllById(variantIds).forEach(variant -> variants.put(variant.getId(), variant));
+
+        List<Map<String, Object>> bestSellingVariants = new ArrayList<>();
+        topVariants.forEach((key, quantity) -> {
+            int separator = key.indexOf('_');
+            ProductVariant variant = variants.get(key.substring(0, separator));
+            if (variant != null) {
+                Map<String, Object> variantData = toBestSellingVariantData(variant, key.substring(separator + 1));
+                variantData.put("totalQuantity", quantity.intValue());
+                bestSellingVariants.add(variantData);
+            }
+        });
+        return bestSellingVariants;
+    }
+
+    // Số ngày của kỳ thống kê, cùng khoảng với getOrdersByPeriod
+    private int periodDays(String period) {
+        return switch (period.toUpperCase()) {
+            case "WEEK" -> 7;
+            case "YEAR" -> 365;
+            default -> 30;
+        };
+    }
+
+    /**
+     * Tính chính xác từ đơn hàng và order items (kỳ ALL hoặc khi Redis không sẵn sàng)
+     */
+    private List<Map<String, Object>> getBestSellingVariantsExact(String storeId, Integer limit, String period) {
         // Lấy các đơn hàng đã giao trong khoảng thời gian
         List<Order> orders = getOrdersByPeriod(storeId, period);
 
         if (orders.isEmpty()) {
-            result.put("variants", new ArrayList<>());
-            result.put("period", period);
-            result.put("limit", limit);
-            return result;
+            return new ArrayList<>();
         }
 
         // Lấy tất cả order IDs một lần
@@ -697,11 +537,7 @@ public class StatisticsService implements IStatisticsService {
         Map<String, Integer> salesQuantityMap = orderItems.stream()
                 .filter(item -> item.getProductVariant() != null)
                 .collect(Collectors.groupingBy(
-                        item -> {
-                            String variantId = item.getProductVariant().getId();
-                            String colorId = item.getColorId() != null ? item.getColorId() : "default";
-                            return variantId + "_" + colorId;
-                        },
+                        item -> BestSellingVariantTracker.member(item.getProductVariant().getId(), item.getColorId()),
                         Collectors.summingInt(OrderItem::getQuantity)
                 ));
 
@@ -709,43 +545,14 @@ public class StatisticsService implements IStatisticsService {
         Map<String, Map<String, Object>> variantDetailsMap = orderItems.stream()
                 .filter(item -> item.getProductVariant() != null)
                 .collect(Collectors.toMap(
-                        item -> {
-                            String variantId = item.getProductVariant().getId();
-                            String colorId = item.getColorId() != null ? item.getColorId() : "default";
-                            return variantId + "_" + colorId;
-                        },
-                        item -> {
-                            Map<String, Object> variantData = new HashMap<>();
-                            ProductVariant variant = item.getProductVariant();
-                            String colorId = item.getColorId() != null ? item.getColorId() : "default";
-                            
-                            variantData.put("variantId", variant.getId());
-                            variantData.put("variantName", variant.getName());
-                            variantData.put("primaryImageUrl", variant.getPrimaryImageUrl());
-                            variantData.put("price", variant.getPrice());
-                            variantData.put("currentStock", variant.getStock());
-                            
-                            // Thông tin màu sắc nếu có
-                            if (!colorId.equals("default") && variant.getColors() != null) {
-                                ProductVariant.ColorOption color = ProductVariant.getColor(variant, colorId);
-                                if (color != null) {
-                                    Map<String, Object> colorInfo = new HashMap<>();
-                                    colorInfo.put("colorId", color.getId());
-                                    colorInfo.put("colorName", color.getColorName());
-                                    colorInfo.put("colorImage", color.getImage());
-                                    colorInfo.put("colorPrice", color.getPrice());
-                                    colorInfo.put("colorStock", color.getStock());
-                                    variantData.put("color", colorInfo);
-                                }
-                            }
-                            
-                            return variantData;
-                        },
+                        item -> BestSellingVariantTracker.member(item.getProductVariant().getId(), item.getColorId()),
+                        item -> toBestSellingVariantData(item.getProductVariant(),
+                                item.getColorId() != null ? item.getColorId() : "default"),
                         (existing, replacement) -> existing
                 ));
 
         // Kết hợp số lượng với thông tin chi tiết, sắp xếp và lấy top limit
-        List<Map<String, Object>> bestSellingVariants = salesQuantityMap.entrySet().stream()
+        return salesQuantityMap.entrySet().stream()
                 .map(entry -> {
                     Map<String, Object> variantData = variantDetailsMap.get(entry.getKey());
                     if (variantData != null) {
@@ -757,12 +564,32 @@ public class StatisticsService implements IStatisticsService {
                 .sorted((v1, v2) -> Integer.compare((Integer) v2.get("totalQuantity"), (Integer) v1.get("totalQuantity")))
                 .limit(limit)
                 .collect(Collectors.toList());
+    }
 
-        result.put("variants", bestSellingVariants);
-        result.put("period", period);
-        result.put("limit", limit);
+    private Map<String, Object> toBestSellingVariantData(ProductVariant variant, String colorId) {
+        Map<String, Object> variantData = new HashMap<>();
+
+        variantData.put("variantId", variant.getId());
+        variantData.put("variantName", variant.getName());
+        variantData.put("primaryImageUrl", variant.getPrimaryImageUrl());
+        variantData.put("price", variant.getPrice());
+        variantData.put("currentStock", variant.getStock());
+
+        // Thông tin màu sắc nếu có
+        if (!colorId.equals("default") && variant.getColors() != null) {
+            ProductVariant.ColorOption color = ProductVariant.getColor(variant, colorId);
+            if (color != null) {
+                Map<String, Object> colorInfo = new HashMap<>();
+                colorInfo.put("colorId", color.getId());
+                colorInfo.put("colorName", color.getColorName());
+                colorInfo.put("colorImage", color.getImage());
+                colorInfo.put("colorPrice", color.getPrice());
+                colorInfo.put("colorStock", color.getStock());
+                variantData.put("color", colorInfo);
+            }
+        }
 
-        return result;
+        return variantData;
     }
 
     private List<Order> getOrdersByPeriod(String storeId, String period) {
@@ -786,13 +613,18 @@ public class StatisticsService implements IStatisticsService {
                         .withHour(0).withMinute(0).withSecond(0).withNano(0);
                 break;
             case "ALL":
-                return orderRepository.findByStoreIdAndStatus(storeId, "COMPLETED");
+                return storeId != null
+                        ? orderRepository.findByStoreIdAndStatus(storeId, "COMPLETED")
+                        : orderRepository.findByStatus("COMPLETED");
             default:
                 // Default: 30 ngày gần nhất
                 startDate = now.minusDays(30)
                         .withHour(0).withMinute(0).withSecond(0).withNano(0);
         }
 
-        return orderRepository.findByStoreIdAndStatusAndDateRange(storeId, "COMPLETED", startDate, now);
+        // storeId = null: toàn sàn
+        return storeId != null
+                ? orderRepository.findByStoreIdAndStatusAndDateRange(storeId, "COMPLETED", startDate, now)
+                : orderRepository.findByStatusAndDateRange("COMPLETED", startDate, now);
     }
 }
\ No newline at end of file
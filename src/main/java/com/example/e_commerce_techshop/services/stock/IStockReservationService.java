@@ -0,0 +1,27 @@
+package com.example.e_commerce_techshop.services.stock;
+
+import java.util.List;
+
+import com.example.e_commerce_techshop.dtos.buyer.OrderDTO;
+import com.example.e_commerce_techshop.models.OrderItem;
+import com.example.e_commerce_techshop.models.Static.StockReservation;
+
+public interface IStockReservationService {
+
+    /**
+     * Giữ hàng cho toàn bộ sản phẩm của một lần checkout.
+     * Mỗi dòng được trừ bằng một lệnh update có điều kiện stock >= quantity;
+     * nếu một dòng thất bại thì các dòng đã giữ trước đó được hoàn trả.
+     */
+    List<StockReservation> reserve(List<OrderDTO.SelectedCartItem> items) throws Exception;
+
+    /**
+     * Hoàn trả các dòng đã giữ (dùng khi checkout lỗi giữa chừng)
+     */
+    void release(List<StockReservation> reservations);
+
+    /**
+     * Hoàn trả stock cho các sản phẩm của đơn hàng bị hủy / từ chối
+     */
+    void releaseOrderItems(List<OrderItem> orderItems);
+}
@@ -0,0 +1,104 @@
+package com.example.e_commerce_techshop.services.stock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.example.e_commerce_techshop.dtos.buyer.OrderDTO;
+import com.example.e_commerce_techshop.models.OrderItem;
+import com.example.e_commerce_techshop.models.ProductVariant;
+import com.example.e_commerce_techshop.models.Static.StockReservation;
+import com.example.e_commerce_techshop.repositories.ProductVariantRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService implements IStockReservationService {
+
+    private final ProductVariantRepository productVariantRepository;
+
+    @Override
+    public List<StockReservation> reserve(List<OrderDTO.SelectedCartItem> items) throws Exception {
+        // Gộp các dòng trùng (cùng biến thể + màu) để mỗi cặp chỉ cần một lệnh update
+        Map<String, StockReservation> merged = new LinkedHashMap<>();
+        for (OrderDTO.SelectedCartItem item : items) {
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Số lượng sản phẩm không hợp lệ");
+            }
+            String colorId = item.getColorId() != null && !item.getColorId().trim().isEmpty()
+                    ? item.getColorId()
+                    : null;
+            String key = item.getProductVariantId() + ":" + colorId;
+            StockReservation line = merged.computeIfAbsent(key,
+                    k -> new StockReservation(item.getProductVariantId(), colorId, 0));
+            line.setQuantity(line.getQuantity() + item.getQuantity());
+        }
+
+        List<StockReservation> reserved = new ArrayList<>();
+        for (StockReservation line : merged.values()) {
+            boolean success = productVariantRepository.decreaseStockIfAvailable(
+                    line.getProductVariantId(), line.getColorId(), line.getQuantity());
+            if (!success) {
+                release(reserved);
+                String variantName = productVariantRepository.findById(line.getProductVariantId())
+                        .map(ProductVariant::getName)
+                        .orElse(line.getProductVariantId());
+                throw new IllegalArgumentException(
+                        "Không đủ hàng trong kho. Sản phẩm: " + variantName +
+                                (line.getColorId() != null ? " (màu: " + line.getColorId() + ")" : "") +
+                                ", Số lượng yêu cầu: " + line.getQuantity());
+            }
+            reserved.add(line);
+        }
+        // Không xóa cache trang danh sách: stock hiển thị ở đó được phép trễ tới hết TTL,
+        // còn việc trừ kho luôn kiểm tra trên MongoDB (decreaseStockIfAvailable)
+        return reserved;
+    }
+
+    @Override
+    public void release(List<StockReservation> reservations) {
+        for (StockReservation line : reservations) {
+            try {
+                increase(line.getProductVariantId(), line.getColorId(), line.getQuantity());
+            } catch (Exception e) {
+                log.error("[StockReservationService] Không thể hoàn trả stock cho biến thể {} (màu: {}, +{}): {}",
+                        line.getProductVariantId(), line.getColorId(), line.getQuantity(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void releaseOrderItems(List<OrderItem> orderItems) {
+        List<StockReservation> lines = new ArrayList<>();
+        for (OrderItem item : orderItems) {
+            if (item.getProductVariant() == null || item.getQuantity() == null) {
+                continue;
+            }
+            lines.add(new StockReservation(item.getProductVariant().getId(), item.getColorId(), item.getQuantity()));
+        }
+        release(lines);
+    }
+
+    private void increase(String productVariantId, String colorId, int quantity) {
+        if (productVariantRepository.increaseStock(productVariantId, colorId, quantity)) {
+            return;
+        }
+        if (colorId == null) {
+            log.warn("[StockReservationService] Không tìm thấy biến thể {} để hoàn trả stock", productVariantId);
+            return;
+        }
+        // Đơn có colorId nhưng biến thể không còn màu nào -> hoàn trả stock tổng (giữ hành vi cũ)
+        productVariantRepository.findById(productVariantId)
+                .filter(variant -> variant.getColors() == null || variant.getColors().isEmpty())
+                .ifPresentOrElse(
+                        variant -> productVariantRepository.increaseStock(productVariantId, null, quantity),
+                        () -> log.warn("[StockReservationService] Màu {} của biến thể {} không còn tồn tại, bỏ qua hoàn trả",
+                                colorId, productVariantId));
+    }
+}
@@ -128,6 +128,7 @@ public class StoreService implements IStoreService {
         
         store.setStatus(Store.StoreStatus.APPROVED.name());
         Store updatedStore = storeRepository.save(store);
+        productVariantService.syncStoreStatus(storeId, updatedStore.getStatus());
         return StoreResponse.fromStore(updatedStore);
     }
 
@@ -138,6 +139,7 @@ public class StoreService implements IStoreService {
         
         store.setStatus(Store.StoreStatus.REJECTED.name());
         Store updatedStore = storeRepository.save(store);
+        productVariantService.syncStoreStatus(storeId, updatedStore.getStatus());
         return StoreResponse.fromStore(updatedStore);
     }
 
@@ -170,6 +172,9 @@ public class StoreService implements IStoreService {
         
         store.setStatus(status.toUpperCase());
         storeRepository.save(store);
+
+        // Đồng bộ storeStatus sang các variant của store
+        productVariantService.syncStoreStatus(storeId, store.getStatus());
     }
 
     @Override
@@ -239,8 +244,8 @@ public class StoreService implements IStoreService {
         store.setStatus(Store.StoreStatus.BANNED.name());
         storeRepository.save(store);
         
-        // Xóa toàn bộ cache product variants trong Redis
-        productVariantService.clearAllProductVariantCache();
+        // Đồng bộ storeStatus sang các variant và xóa cache product variants trong Redis
+        productVariantService.syncStoreStatus(storeId, store.getStatus());
         
         log.info("Store {} has been banned. Reason: {}", storeId, reason);
         
@@ -285,8 +290,8 @@ public class StoreService implements IStoreService {
         store.setStatus(Store.StoreStatus.APPROVED.name());
         storeRepository.save(store);
         
-        // Xóa toàn bộ cache product variants trong Redis
-        productVariantService.clearAllProductVariantCache();
+        // Đồng bộ storeStatus sang các variant và xóa cache product variants trong Redis
+        productVariantService.syncStoreStatus(storeId, store.getStatus());
         
         log.info("Store {} has been unbanned", storeId);
         
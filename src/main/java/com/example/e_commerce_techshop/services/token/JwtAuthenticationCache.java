@@ -0,0 +1,162 @@
+package com.example.e_commerce_techshop.services.token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.components.JwtTokenProvider;
+import com.example.e_commerce_techshop.models.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache token đã xác thực -> user trong JWT filter (TTL ngắn), để request lặp lại
+ * không phải parse JWT, đọc user và token từ MongoDB.
+ * Token bị thu hồi được ghi vào Redis (TTL bằng thời hạn còn lại của token) và publish
+ * qua pub/sub để mọi node bỏ cache ngay; user thay đổi (ban, đổi quyền...) cũng được bỏ cache.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtAuthenticationCache {
+
+    private static final String REVOKED_PREFIX = "auth:revoked:";
+    private static final String CHANNEL = "auth:invalidation";
+    private static final String TOKEN_MESSAGE = "token:";
+    private static final String USER_MESSAGE = "user:";
+
+    private static final Duration CACHE_TTL = Duration.ofSeconds(60);
+    private static final long MAX_ENTRIES = 50_000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    private final Cache<String, CachedAuthentication> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(CACHE_TTL)
+            .build();
+
+    // userId -> phiên bản, tăng mỗi lần evictUser: entry ghi với phiên bản cũ bị bỏ khi đọc thay vì quét cả cache.
+    // Chỉ cần giữ bằng CACHE_TTL: entry ghi trước lần tăng cuối đều đã hết hạn khi phiên bản bị bỏ
+    private final Cache<String, Long> userVersions = Caffeine.newBuilder()
+            .expireAfterWrite(CACHE_TTL)
+            .build();
+
+    private record CachedAuthentication(User user, long userVersion, long expiresAtMillis) {
+    }
+
+    @PostConstruct
+    public void subscribeInvalidations() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * @return user nếu token đã được xác thực gần đây và chưa hết hạn, ngược lại null
+     */
+    public User get(String token) {
+        String tokenHash = hash(token);
+        CachedAuthentication cached = cache.getIfPresent(tokenHash);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAtMillis() <= System.currentTimeMillis()
+                || cached.userVersion() != userVersion(cached.user().getId())) {
+            cache.invalidate(tokenHash);
+            return null;
+        }
+        return cached.user();
+    }
+
+    public void put(String token, User user, Date expiration) {
+        cache.put(hash(token), new CachedAuthentication(user, userVersion(user.getId()), expiration.getTime()));
+    }
+
+    private long userVersion(String userId) {
+        Long version = userId != null ? userVersions.getIfPresent(userId) : null;
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Kiểm tra danh sách thu hồi trên Redis (chỉ dùng khi cache miss).
+     * Redis lỗi -> bỏ qua, DB vẫn kiểm tra token ở bước sau.
+     */
+    public boolean isRevoked(String token) {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(REVOKED_PREFIX + hash(token)));
+        } catch (Exception e) {
+            log.warn("[JwtAuthenticationCache] Không kiểm tra được danh sách thu hồi: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Thu hồi token (logout, refresh, vượt giới hạn thiết bị): ghi vào Redis và báo cho mọi node
+     */
+    public void revokeToken(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        String tokenHash = hash(token);
+        evictLocal(TOKEN_MESSAGE + tokenHash);
+        try {
+            long ttlMillis = jwtTokenProvider.parseClaims(token).getExpiration().getTime() - System.currentTimeMillis();
+            if (ttlMillis > 0) {
+                stringRedisTemplate.opsForValue().set(REVOKED_PREFIX + tokenHash, "1", Duration.ofMillis(ttlMillis));
+            }
+        } catch (Exception e) {
+            // Token đã hết hạn / không hợp lệ -> không cần đưa vào danh sách thu hồi
+        }
+        publish(TOKEN_MESSAGE + tokenHash);
+    }
+
+    /**
+     * Bỏ toàn bộ cache của user trên mọi node (user bị ban, đổi quyền, đổi thông tin...)
+     */
+    public void evictUser(String userId) {
+        if (userId == null) {
+            return;
+        }
+        evictLocal(USER_MESSAGE + userId);
+        publish(USER_MESSAGE + userId);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("[JwtAuthenticationCache] Lỗi publish invalidation: {}", e.getMessage());
+        }
+    }
+
+    private void evictLocal(String message) {
+        if (message.startsWith(TOKEN_MESSAGE)) {
+            cache.invalidate(message.substring(TOKEN_MESSAGE.length()));
+        } else if (message.startsWith(USER_MESSAGE)) {
+            userVersions.asMap().merge(message.substring(USER_MESSAGE.length()), 1L, Long::sum);
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -22,6 +22,8 @@ public class TokenService implements ITokenService{
 
     private final TokenRepository tokenRepository;
 
+    private final JwtAuthenticationCache jwtAuthenticationCache;
+
     private static final int MAX_TOKENS = 3;
 
     @Value("${jwt.expiration}")
@@ -45,9 +47,11 @@ public class TokenService implements ITokenService{
                         .filter(userToken -> !userToken.isMobile())
                         .findFirst()
                         .orElse(userTokens.getFirst());
+                jwtAuthenticationCache.revokeToken(tokenToDelete.getToken());
                 tokenRepository.delete(tokenToDelete);
             }
             else {
+                jwtAuthenticationCache.revokeToken(userTokens.getFirst().getToken());
                 tokenRepository.delete(userTokens.getFirst());
             }
         }
@@ -72,10 +76,13 @@ public class TokenService implements ITokenService{
             throw new DataNotFoundException("Không tìm thấy RefreshToken");
         }
         if(existingToken.getRefreshExpirationDate().isBefore(LocalDateTime.now())){
+            jwtAuthenticationCache.revokeToken(existingToken.getToken());
             tokenRepository.delete(existingToken);
             throw new ExpiredTokenException("Refresh token đã hết hạn");
         }
         String token = jwtTokenProvider.generateToken(user);
+        // Access token cũ không còn hiệu lực sau khi refresh
+        jwtAuthenticationCache.revokeToken(existingToken.getToken());
         LocalDateTime expirationDateTime = LocalDateTime.now().plusSeconds(expiration);
         existingToken.setExpirationDate(expirationDateTime);
         existingToken.setToken(token);
@@ -86,6 +93,10 @@ public class TokenService implements ITokenService{
 
     @Override
     public void revokeToken(String refreshToken) throws Exception {
+        Token existingToken = tokenRepository.findByRefreshToken(refreshToken);
+        if (existingToken != null) {
+            jwtAuthenticationCache.revokeToken(existingToken.getToken());
+        }
         tokenRepository.deleteByRefreshToken(refreshToken);
     }
 
@@ -0,0 +1,33 @@
+package com.example.e_commerce_techshop.services.token;
+
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import com.example.e_commerce_techshop.models.User;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Mỗi lần save()/delete() User (ban, mở chặn, đổi quyền, đổi thông tin...) bỏ user khỏi cache xác thực
+ */
+@Component
+@RequiredArgsConstructor
+public class UserAuthenticationCacheListener extends AbstractMongoEventListener<User> {
+
+    private final JwtAuthenticationCache jwtAuthenticationCache;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        jwtAuthenticationCache.evictUser(event.getSource().getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        Object id = event.getSource().get("_id");
+        if (id != null) {
+            jwtAuthenticationCache.evictUser(id.toString());
+        }
+    }
+}
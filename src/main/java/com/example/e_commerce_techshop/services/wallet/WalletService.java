@@ -9,6 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.e_commerce_techshop.exceptions.DataNotFoundException;
+import com.example.e_commerce_techshop.models.Order;
 import com.example.e_commerce_techshop.models.Store;
 import com.example.e_commerce_techshop.models.Transaction;
 import com.example.e_commerce_techshop.models.Wallet;
@@ -337,6 +338,7 @@ public class WalletService implements IWalletService {
             // Tạo transaction
             Transaction transaction = Transaction.builder()
                     .wallet(wallet)
+                    .order(Order.builder().id(orderId).build()) // để kiểm tra đơn đã được thanh toán chưa
                     .type(Transaction.TransactionType.ORDER_COMPLETED)
                     .amount(amount)
                     .balanceBefore(balanceBefore)
@@ -356,6 +358,7 @@ public class WalletService implements IWalletService {
             // Tạo transaction ghi nhận
             Transaction transaction = Transaction.builder()
                     .wallet(wallet)
+                    .order(Order.builder().id(orderId).build()) // để kiểm tra đơn đã được thanh toán chưa
                     .type(Transaction.TransactionType.ORDER_COMPLETED)
                     .amount(amount)
                     .balanceBefore(balanceBefore)
@@ -0,0 +1,128 @@
+package com.example.e_commerce_techshop.services.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chuyển tiếp tin nhắn STOMP giữa các node qua Redis pub/sub (websocket.broker.mode = redis).
+ * Gắn vào brokerChannel: tin gửi tới /topic/** được publish cho mọi node (ws:relay:broadcast),
+ * tin gửi tới /user/{user}/** chỉ publish cho các node đang có phiên của user đó (ws:relay:node:{nodeId}).
+ * Node nhận đưa tin vào broker cục bộ như thể được gửi tại chỗ; tin đã relay mang header RELAY_ORIGIN_HEADER
+ * nên không bị publish lại.
+ */
+@Component
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "redis")
+@RequiredArgsConstructor
+@Slf4j
+public class RedisStompRelay implements ChannelInterceptor {
+
+    private static final String BROADCAST_CHANNEL = "ws:relay:broadcast";
+    private static final String NODE_CHANNEL_PREFIX = "ws:relay:node:";
+    private static final String RELAY_ORIGIN_HEADER = "relayOrigin";
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_PREFIX = "/user/";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final NodeIdentity nodeIdentity;
+    private final ObjectMapper objectMapper;
+    // brokerChannel được tạo sau interceptor này nên lấy template khi cần
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    private record RelayedMessage(String origin, String destination, String contentType, byte[] payload) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> deliverLocal(message.getBody()),
+                List.of(new ChannelTopic(BROADCAST_CHANNEL),
+                        new ChannelTopic(NODE_CHANNEL_PREFIX + nodeIdentity.getNodeId())));
+    }
+
+    @Override
+    public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || destination == null
+                || accessor.getHeader(RELAY_ORIGIN_HEADER) != null || !(message.getPayload() instanceof byte[] payload)) {
+            return;
+        }
+
+        try {
+            if (destination.startsWith(TOPIC_PREFIX)) {
+                publish(BROADCAST_CHANNEL, destination, accessor.getContentType(), payload);
+            } else if (destination.startsWith(USER_PREFIX)) {
+                String userName = userNameOf(destination);
+                for (String node : sessionRegistry.nodesOf(userName)) {
+                    if (!node.equals(nodeIdentity.getNodeId())) {
+                        publish(NODE_CHANNEL_PREFIX + node, destination, accessor.getContentType(), payload);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Người nhận ở node khác sẽ nhận được khi tải lại dữ liệu qua REST
+            log.warn("[RedisStompRelay] Lỗi relay tin tới {}: {}", destination, e.getMessage());
+        }
+    }
+
+    private void publish(String channel, String destination, MimeType contentType, byte[] payload) throws Exception {
+        RelayedMessage relayed = new RelayedMessage(nodeIdentity.getNodeId(), destination,
+                contentType != null ? contentType.toString() : null, payload);
+        stringRedisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(relayed));
+    }
+
+    private void deliverLocal(byte[] body) {
+        try {
+            RelayedMessage relayed = objectMapper.readValue(new String(body, StandardCharsets.UTF_8),
+                    RelayedMessage.class);
+            if (nodeIdentity.getNodeId().equals(relayed.origin())) {
+                return;
+            }
+            if (relayed.destination().startsWith(USER_PREFIX)
+                    && !sessionRegistry.hasLocalSession(userNameOf(relayed.destination()))) {
+                return;
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(relayed.destination());
+            if (relayed.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(relayed.contentType()));
+            }
+            accessor.setHeader(RELAY_ORIGIN_HEADER, relayed.origin());
+            accessor.setLeaveMutable(true);
+            messagingTemplate.getObject().send(relayed.destination(),
+                    MessageBuilder.createMessage(relayed.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.warn("[RedisStompRelay] Lỗi nhận tin relay: {}", e.getMessage());
+        }
+    }
+
+    // /user/{user}/queue/... -> {user}
+    private String userNameOf(String destination) {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        return end > 0 ? destination.substring(USER_PREFIX.length(), end) : destination.substring(USER_PREFIX.length());
+    }
+}
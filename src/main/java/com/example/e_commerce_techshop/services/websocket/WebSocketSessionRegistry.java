@@ -0,0 +1,95 @@
+package com.example.e_commerce_techshop.services.websocket;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.example.e_commerce_techshop.components.NodeIdentity;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sổ đăng ký phiên STOMP của node này, đồng bộ lên Redis để các node khác biết user đang kết nối ở đâu.
+ * ws:user-sessions:{user} là hash sessionId -> nodeId (user = tên principal của kết nối).
+ * Node tắt bình thường tự xóa phiên của mình; phiên của node chết chỉ làm relay gửi thừa cho tới khi key hết hạn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketSessionRegistry {
+
+    private static final String USER_SESSIONS_PREFIX = "ws:user-sessions:";
+    private static final Duration USER_SESSIONS_TTL = Duration.ofDays(1);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final NodeIdentity nodeIdentity;
+
+    // sessionId -> user của các phiên trên node này
+    private final Map<String, String> localSessions = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return;
+        }
+        localSessions.put(sessionId, user.getName());
+        try {
+            String key = USER_SESSIONS_PREFIX + user.getName();
+            stringRedisTemplate.opsForHash().put(key, sessionId, nodeIdentity.getNodeId());
+            stringRedisTemplate.expire(key, USER_SESSIONS_TTL);
+        } catch (Exception e) {
+            log.warn("[WebSocketSessionRegistry] Lỗi ghi phiên {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String userName = localSessions.remove(event.getSessionId());
+        if (userName != null) {
+            removeRemote(userName, event.getSessionId());
+        }
+    }
+
+    public boolean hasLocalSession(String userName) {
+        return localSessions.containsValue(userName);
+    }
+
+    /**
+     * @return các node (kể cả node này) đang có phiên của user
+     */
+    public Set<String> nodesOf(String userName) {
+        Collection<Object> nodes = stringRedisTemplate.opsForHash().values(USER_SESSIONS_PREFIX + userName);
+        Set<String> result = new HashSet<>();
+        nodes.forEach(node -> result.add(node.toString()));
+        return result;
+    }
+
+    @PreDestroy
+    public void clearLocalSessions() {
+        localSessions.forEach((sessionId, userName) -> removeRemote(userName, sessionId));
+        localSessions.clear();
+    }
+
+    private void removeRemote(String userName, String sessionId) {
+        try {
+            stringRedisTemplate.opsForHash().delete(USER_SESSIONS_PREFIX + userName, sessionId);
+        } catch (Exception e) {
+            log.warn("[WebSocketSessionRegistry] Lỗi xóa phiên {}: {}", sessionId, e.getMessage());
+        }
+    }
+}
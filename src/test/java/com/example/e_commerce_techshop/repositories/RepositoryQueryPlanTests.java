@@ -0,0 +1,385 @@
+package com.example.e_commerce_techshop.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Conversation;
+import com.example.e_commerce_techshop.models.Notification;
+import com.example.e_commerce_techshop.models.Order;
+import com.example.e_commerce_techshop.models.OrderItem;
+import com.example.e_commerce_techshop.models.Review;
+import com.example.e_commerce_techshop.models.Shipment;
+import com.mongodb.DBRef;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+/**
+ * Chạy mọi method derived / @Query của các repository đã có bộ index riêng trên MongoDB thật
+ * (đã seed dữ liệu), explain (executionStats) từng lệnh mà method gửi đi và fail nếu
+ * - plan có COLLSCAN, hoặc
+ * - số document phải đọc vượt quá MAX_EXAMINED_PER_RETURNED lần số document khớp điều kiện
+ *   và vượt quá MAX_EXAMINED_SHARE của collection (index chọn lọc kém).
+ * Method mới thêm vào các repository này mà không có index phù hợp sẽ làm build fail.
+ * Cần Docker; không có Docker thì test được bỏ qua.
+ */
+@DataMongoTest(properties = {
+        "spring.data.mongodb.database=query_plan_test",
+        "spring.data.mongodb.auto-index-creation=true"
+})
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(RepositoryQueryPlanTests.CommandRecorder.class)
+class RepositoryQueryPlanTests {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    // Repository phải dùng index cho mọi truy vấn; thêm domain type vào đây khi collection có bộ index riêng
+    private static final List<Class<?>> ENFORCED_DOMAIN_TYPES = List.of(
+            Order.class, OrderItem.class, Shipment.class, Notification.class,
+            ChatMessage.class, Conversation.class, Review.class);
+
+    // Chấp nhận COLLSCAN (không dùng trong luồng chính): "Repository.method"
+    private static final Set<String> ACCEPTED_COLLECTION_SCANS = Set.of(
+            "ReviewRepository.findByRating");
+
+    private static final int SEED_SIZE = 5_000;
+    private static final int ID_POOL_SIZE = 50;
+    private static final long MAX_EXAMINED_PER_RETURNED = 10;
+    private static final double MAX_EXAMINED_SHARE = 0.1;
+
+    // Mọi tham số String của method đều nhận id này; dữ liệu seed dùng chung pool id nên truy vấn luôn có kết quả
+    private static final ObjectId ID = new ObjectId("64f1a2b3c4d5e6f7a8b9c0d1");
+    private static final Set<String> IGNORED_COMMAND_FIELDS = Set.of(
+            "$db", "lsid", "$clusterTime", "$readPreference", "readConcern", "txnNumber",
+            "apiVersion", "apiStrict", "apiDeprecationErrors");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private CommandRecorder commandRecorder;
+
+    private final Random random = new Random(42);
+    private final List<ObjectId> ids = new ArrayList<>();
+
+    /**
+     * Ghi lại các lệnh đọc (find / count / aggregate / distinct) mà repository gửi tới MongoDB
+     */
+    @TestConfiguration
+    static class CommandRecorder implements CommandListener {
+
+        private static final Set<String> READ_COMMANDS = Set.of("find", "count", "aggregate", "distinct");
+
+        private final List<BsonDocument> commands = new ArrayList<>();
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandRecorderCustomizer() {
+            return builder -> builder.addCommandListener(this);
+        }
+
+        @Override
+        public synchronized void commandStarted(CommandStartedEvent event) {
+            if (READ_COMMANDS.contains(event.getCommandName())) {
+                commands.add(event.getCommand().clone());
+            }
+        }
+
+        synchronized List<BsonDocument> drain() {
+            List<BsonDocument> drained = new ArrayList<>(commands);
+            commands.clear();
+            return drained;
+        }
+    }
+
+    @BeforeAll
+    void seed() {
+        ids.add(ID);
+        for (int i = 1; i < ID_POOL_SIZE; i++) {
+            ids.add(new ObjectId());
+        }
+
+        List<ObjectId> orderIds = new ArrayList<>();
+        List<Document> orders = new ArrayList<>();
+        for (int i = 0; i < SEED_SIZE; i++) {
+            ObjectId orderId = new ObjectId();
+            orderIds.add(orderId);
+            Date createdAt = randomDate();
+            orders.add(new Document("_id", orderId)
+                    .append("buyer", new DBRef("users", randomId()))
+                    .append("store", new DBRef("stores", randomId()))
+                    .append("status", randomOf(Order.OrderStatus.values()).name())
+                    .append("paymentStatus", randomOf(Order.PaymentStatus.values()).name())
+                    .append("paymentMethod", randomOf(Order.PaymentMethod.values()).name())
+                    .append("totalPrice", String.valueOf(random.nextInt(10_000_000)))
+                    .append("createdAt", createdAt)
+                    .append("updatedAt", createdAt));
+        }
+        insert("orders", orders);
+
+        List<Document> orderItems = new ArrayList<>();
+        List<Document> shipments = new ArrayList<>();
+        List<Document> reviews = new ArrayList<>();
+        for (ObjectId orderId : orderIds) {
+            orderItems.add(new Document("order", new DBRef("orders", orderId))
+                    .append("productVariant", new DBRef("product_variants", randomId()))
+                    .append("quantity", 1 + random.nextInt(3))
+                    .append("createdAt", randomDate()));
+            shipments.add(new Document("order", new DBRef("orders", orderId))
+                    .append("store", new DBRef("stores", randomId()))
+                    .append("carrier", new DBRef("users", randomId()))
+                    .append("isReturnShipment", random.nextInt(10) == 0)
+                    .append("status", randomOf(Shipment.ShipmentStatus.values()).name())
+                    .append("createdAt", randomDate()));
+            reviews.add(new Document("order", new DBRef("orders", orderId))
+                    .append("productVariant", new DBRef("product_variants", randomId()))
+                    .append("user", new DBRef("users", randomId()))
+                    .append("productId", randomId().toHexString())
+                    .append("storeId", randomId().toHexString())
+                    .append("rating", 1 + random.nextInt(5))
+                    .append("createdAt", randomDate()));
+        }
+        insert("order_items", orderItems);
+        insert("shipments", shipments);
+        insert("reviews", reviews);
+
+        List<Document> notifications = new ArrayList<>();
+        List<Document> conversations = new ArrayList<>();
+        List<Document> messages = new ArrayList<>();
+        for (int i = 0; i < SEED_SIZE; i++) {
+            Document notification = new Document("isRead", random.nextBoolean())
+                    .append("type", randomOf(Notification.NotificationType.values()).name())
+                    .append("createdAt", randomDate());
+            switch (i % 3) {
+                case 0 -> notification.append("user", new DBRef("users", randomId())).append("isAdmin", false);
+                case 1 -> notification.append("store", new DBRef("stores", randomId())).append("isAdmin", false);
+                default -> notification.append("isAdmin", true);
+            }
+            notifications.add(notification);
+
+            String buyerId = randomId().toHexString();
+            String sellerId = randomId().toHexString();
+            conversations.add(new Document("participantIds", List.of(buyerId, sellerId))
+                    .append("type", randomOf(Conversation.ConversationType.values()).name())
+                    .append("storeId", randomId().toHexString())
+                    .append("status", randomOf(Conversation.ConversationStatus.values()).name())
+                    .append("lastMessageTime", randomDate())
+                    .append("unreadCounts", List.of(new Document("userId", buyerId).append("count", random.nextInt(3)))));
+
+            messages.add(new Document("conversationId", randomId().toHexString())
+                    .append("senderId", randomId().toHexString())
+                    .append("readByUserIds", List.of(randomId().toHexString()))
+                    .append("status", randomOf(ChatMessage.MessageStatus.values()).name())
+                    .append("sentAt", randomDate()));
+        }
+        insert("notifications", notifications);
+        insert("conversations", conversations);
+        insert("chat_messages", messages);
+    }
+
+    @TestFactory
+    Stream<DynamicTest> queryMethodsUseIndexes() {
+        Repositories repositories = new Repositories(applicationContext);
+        return ENFORCED_DOMAIN_TYPES.stream().flatMap(domainType -> {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            Object repository = repositories.getRepositoryFor(domainType).orElseThrow();
+            String repositoryName = information.getRepositoryInterface().getSimpleName();
+
+            return information.getQueryMethods().stream()
+                    .sorted((a, b) -> a.toGenericString().compareTo(b.toGenericString()))
+                    .map(method -> DynamicTest.dynamicTest(displayName(repositoryName, method),
+                            () -> verify(repository, repositoryName, method)));
+        });
+    }
+
+    private void verify(Object repository, String repositoryName, Method method) throws Exception {
+        Object[] args = new Object[method.getParameterCount()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = argumentFor(method.getParameterTypes()[i], method.getGenericParameterTypes()[i]);
+        }
+
+        commandRecorder.drain();
+        method.invoke(repository, args);
+        List<BsonDocument> commands = commandRecorder.drain();
+        assertFalse(commands.isEmpty(), "Method không gửi lệnh đọc nào tới MongoDB");
+
+        String key = repositoryName + "." + method.getName();
+        for (BsonDocument command : commands) {
+            Document explain = explain(command);
+            boolean collectionScan = containsStage(explain, "COLLSCAN");
+            if (collectionScan && ACCEPTED_COLLECTION_SCANS.contains(key)) {
+                continue;
+            }
+            assertFalse(collectionScan, "COLLSCAN: " + command.toJson());
+
+            // count / aggregate được explain lại dưới dạng find cùng điều kiện để biết số document khớp
+            Document stats = find(explain(asFind(command)), "executionStats");
+            long examined = number(stats, "totalDocsExamined");
+            long returned = number(stats, "nReturned");
+            long collectionSize = mongoTemplate.getCollection(command.getString(command.getFirstKey()).getValue())
+                    .estimatedDocumentCount();
+            assertTrue(examined <= Math.max(returned * MAX_EXAMINED_PER_RETURNED, collectionSize * MAX_EXAMINED_SHARE),
+                    "Đọc " + examined + "/" + collectionSize + " document để trả về " + returned + ": "
+                            + command.toJson());
+        }
+    }
+
+    private Document explain(BsonDocument command) {
+        BsonDocument inner = new BsonDocument();
+        command.forEach((field, value) -> {
+            if (!IGNORED_COMMAND_FIELDS.contains(field)) {
+                inner.append(field, value);
+            }
+        });
+        return mongoTemplate.getDb().runCommand(new BsonDocument("explain", inner)
+                .append("verbosity", new BsonString("executionStats")));
+    }
+
+    private BsonDocument asFind(BsonDocument command) {
+        String collection = command.getString(command.getFirstKey()).getValue();
+        BsonDocument filter = null;
+        if ("count".equals(command.getFirstKey())) {
+            filter = command.getDocument("query", new BsonDocument());
+        } else if ("aggregate".equals(command.getFirstKey()) && !command.getArray("pipeline").isEmpty()) {
+            BsonDocument firstStage = command.getArray("pipeline").get(0).asDocument();
+            filter = firstStage.containsKey("$match") ? firstStage.getDocument("$match") : null;
+        }
+        return filter != null ? new BsonDocument("find", new BsonString(collection)).append("filter", filter) : command;
+    }
+
+    private Object argumentFor(Class<?> type, Type genericType) {
+        if (type == String.class) {
+            return ID.toHexString();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return false;
+        }
+        if (type == int.class || type == Integer.class) {
+            return 1;
+        }
+        if (type == long.class || type == Long.class) {
+            return 1L;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type == Pageable.class) {
+            return PageRequest.of(0, 20);
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (Collection.class.isAssignableFrom(type) && genericType instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] == String.class) {
+            return List.of(ID.toHexString());
+        }
+        return fail("Chưa hỗ trợ tham số kiểu " + genericType.getTypeName() + ", bổ sung vào argumentFor");
+    }
+
+    private String displayName(String repositoryName, Method method) {
+        return repositoryName + "." + method.getName() + Arrays.stream(method.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private boolean containsStage(Object node, String stage) {
+        if (node instanceof Document doc) {
+            return stage.equals(doc.get("stage")) || doc.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (node instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    // Tìm key gần gốc nhất (aggregate lồng executionStats trong stages[0].$cursor)
+    private Document find(Object node, String key) {
+        if (node instanceof Document doc) {
+            if (doc.get(key) instanceof Document found) {
+                return found;
+            }
+            for (Object value : doc.values()) {
+                Document found = find(value, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        if (node instanceof List<?> list) {
+            for (Object value : list) {
+                Document found = find(value, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private long number(Document stats, String key) {
+        return stats != null && stats.get(key) instanceof Number value ? value.longValue() : 0;
+    }
+
+    private void insert(String collection, List<Document> docs) {
+        mongoTemplate.getCollection(collection).insertMany(docs);
+    }
+
+    private ObjectId randomId() {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private <E> E randomOf(E[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private Date randomDate() {
+        LocalDateTime time = LocalDateTime.now().minusMinutes(random.nextInt(365 * 24 * 60));
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.e_commerce_techshop.dtos.chat.ChatMessageDTO;
+import com.example.e_commerce_techshop.dtos.chat.ConversationDTO;
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Conversation;
+import com.example.e_commerce_techshop.models.Product;
+import com.example.e_commerce_techshop.models.Store;
+import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.repositories.ChatMessageRepository;
+import com.example.e_commerce_techshop.repositories.ConversationRepository;
+import com.example.e_commerce_techshop.repositories.ProductRepository;
+import com.example.e_commerce_techshop.repositories.StoreRepository;
+import com.example.e_commerce_techshop.repositories.user.UserRepository;
+import com.example.e_commerce_techshop.responses.CursorPageResponse;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đo màn hình hộp thư 50 conversation (mỗi conversation một người bán và một cửa hàng khác nhau) trên MongoDB thật:
+ * số lệnh đọc gửi tới MongoDB phải không phụ thuộc số conversation / số tin sản phẩm trong trang,
+ * và ghi log thời gian (cache rỗng và cache còn hạn, tính riêng) so với cách đọc từng user / store (N+1) trước đây.
+ * Cần Docker; không có Docker thì test được bỏ qua.
+ */
+@DataMongoTest(properties = "spring.data.mongodb.database=chat_inbox_benchmark_test")
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import({ ChatService.class, ChatProfileCache.class, ChatInboxHydrationBenchmarkTests.CommandCounter.class })
+@Slf4j
+class ChatInboxHydrationBenchmarkTests {
+
+    private static final int INBOX_SIZE = 50;
+    private static final int ROUNDS = 20;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @MockitoBean
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+
+    @MockitoBean
+    private UnreadConversationCounter unreadConversationCounter;
+
+    @MockitoBean
+    private IPresenceService presenceService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StoreRepository storeRepository;
+
+    @Autowired
+    private CommandCounter commandCounter;
+
+    private User buyer;
+    private Conversation productConversation;
+
+    /**
+     * Đếm các lệnh find gửi tới MongoDB
+     */
+    @TestConfiguration
+    static class CommandCounter implements CommandListener {
+
+        private int finds;
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCounterCustomizer() {
+            return builder -> builder.addCommandListener(this);
+        }
+
+        @Override
+        public synchronized void commandStarted(CommandStartedEvent event) {
+            if ("find".equals(event.getCommandName())) {
+                finds++;
+            }
+        }
+
+        synchronized int reset() {
+            int counted = finds;
+            finds = 0;
+            return counted;
+        }
+    }
+
+    @BeforeAll
+    void seed() {
+        buyer = mongoTemplate.insert(user("buyer"));
+        for (int i = 0; i < INBOX_SIZE; i++) {
+            User seller = mongoTemplate.insert(user("seller-" + i));
+            Store store = mongoTemplate.insert(Store.builder().name("Store " + i).logoUrl("logo-" + i).build());
+            Conversation conversation = mongoTemplate.insert(Conversation.builder()
+                    .participantIds(List.of(buyer.getId(), seller.getId()))
+                    .type(Conversation.ConversationType.BUYER_SELLER)
+                    .storeId(store.getId())
+                    .unreadCounts(List.of(new Conversation.UnreadCount(buyer.getId(), 0),
+                            new Conversation.UnreadCount(seller.getId(), 0)))
+                    .status(Conversation.ConversationStatus.ACTIVE)
+                    .build());
+            if (productConversation == null) {
+                productConversation = conversation;
+            }
+        }
+
+        // Một conversation có INBOX_SIZE tin giới thiệu sản phẩm khác nhau
+        List<ChatMessage> messages = new ArrayList<>();
+        LocalDateTime sentAt = LocalDateTime.now().minusHours(1);
+        for (int i = 0; i < INBOX_SIZE; i++) {
+            Product product = mongoTemplate.insert(Product.builder().name("Product " + i).price(1_000L * i).build());
+            messages.add(ChatMessage.builder()
+                    .id(new ObjectId().toHexString())
+                    .conversationId(productConversation.getId())
+                    .senderId(buyer.getId())
+                    .content(product.getId())
+                    .type(ChatMessage.MessageType.PRODUCT_LINK)
+                    .readByUserIds(new ArrayList<>(List.of(buyer.getId())))
+                    .status(ChatMessage.MessageStatus.SENT)
+                    .sentAt(sentAt.plusSeconds(i))
+                    .build());
+        }
+        mongoTemplate.insertAll(messages);
+    }
+
+    @Test
+    void inboxPageUsesConstantNumberOfQueries() {
+        commandCounter.reset();
+        Page<ConversationDTO> inbox = chatService.getUserConversations(buyer.getId(), PageRequest.of(0, INBOX_SIZE));
+        int coldFinds = commandCounter.reset();
+
+        assertEquals(INBOX_SIZE, inbox.getContent().size());
+        inbox.getContent().forEach(conversation -> {
+            assertEquals(2, conversation.getParticipants().size());
+            assertTrue(conversation.getStoreName().startsWith("Store "));
+        });
+        // Trang conversation + users + stores (trước đây 1 + 3 * INBOX_SIZE)
+        assertTrue(coldFinds <= 3, "Số lệnh find khi cache rỗng: " + coldFinds);
+
+        chatService.getUserConversations(buyer.getId(), PageRequest.of(0, INBOX_SIZE));
+        assertEquals(1, commandCounter.reset(), "Cache còn hạn thì chỉ còn lệnh đọc trang conversation");
+
+        // Cache rỗng mỗi vòng để so sánh công bằng với N+1 (không có cache); cache còn hạn ghi riêng
+        Runnable loadInbox = () -> chatService.getUserConversations(buyer.getId(), PageRequest.of(0, INBOX_SIZE));
+        log.info("[ChatInboxBenchmark] {} conversation: batch {} ms/trang (cache rỗng), {} ms/trang (cache còn hạn), "
+                + "N+1 {} ms/trang",
+                INBOX_SIZE, averageMillis(() -> coldChatService().getUserConversations(buyer.getId(),
+                        PageRequest.of(0, INBOX_SIZE))), averageMillis(loadInbox), averageMillis(this::loadInboxOneByOne));
+    }
+
+    @Test
+    void productCardsAreLoadedOncePerPage() {
+        commandCounter.reset();
+        CursorPageResponse<ChatMessageDTO> page = chatService.getConversationMessagesByCursor(
+                productConversation.getId(), buyer.getId(), null, INBOX_SIZE);
+        int finds = commandCounter.reset();
+
+        assertEquals(INBOX_SIZE, page.getContent().size());
+        page.getContent().forEach(message -> assertTrue(message.getProductInfo() != null,
+                "Thiếu thẻ sản phẩm cho tin " + message.getId()));
+        // Conversation + trang tin nhắn + products (trước đây thêm một lệnh cho mỗi tin)
+        assertTrue(finds <= 3, "Số lệnh find cho trang tin nhắn sản phẩm: " + finds);
+    }
+
+    private User user(String name) {
+        return User.builder()
+                .email(name + "@techshop.local")
+                .fullName(name)
+                .avatar(name + ".png")
+                .build();
+    }
+
+    // ChatService với ChatProfileCache mới (rỗng), dùng riêng cho phép đo cache rỗng
+    private ChatService coldChatService() {
+        return new ChatService(conversationRepository, chatMessageRepository, userRepository, storeRepository,
+                productRepository, messagingTemplate,
+                new ChatProfileCache(userRepository, storeRepository, productRepository),
+                chatMessageWriteBehind, unreadConversationCounter, presenceService);
+    }
+
+    // Cách dựng hộp thư trước khi gom truy vấn: mỗi participant / store một findById
+    private void loadInboxOneByOne() {
+        conversationRepository.findByParticipantId(buyer.getId(), PageRequest.of(0, INBOX_SIZE)).forEach(conversation -> {
+            conversation.getParticipantIds().forEach(id -> userRepository.findById(id));
+            storeRepository.findById(conversation.getStoreId());
+        });
+    }
+
+    private double averageMillis(Runnable action) {
+        action.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+    }
+}
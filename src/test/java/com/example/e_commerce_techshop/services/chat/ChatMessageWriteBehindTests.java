@@ -0,0 +1,221 @@
+package com.example.e_commerce_techshop.services.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Conversation;
+
+/**
+ * Kiểm tra các đảm bảo của ChatMessageWriteBehind trên MongoDB thật:
+ * ghi đủ tin + unreadCounts, buffer đầy thì ghi đồng bộ, ghi lại không trùng (cả insert lẫn $inc unreadCounts), tắt ứng dụng thì ghi hết buffer.
+ * Cần Docker; không có Docker thì test được bỏ qua.
+ */
+@DataMongoTest(properties = {
+        "spring.data.mongodb.database=chat_write_behind_test",
+        "chat.write-behind.capacity=64",
+        "chat.write-behind.offer-timeout-ms=0"
+})
+@Testcontainers(disabledWithoutDocker = true)
+@Import(ChatMessageWriteBehind.class)
+class ChatMessageWriteBehindTests {
+
+    private static final long AWAIT_MILLIS = 10_000;
+    private static final String BUYER = "buyer";
+    private static final String SELLER = "seller";
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private ChatMessageWriteBehind writeBehind;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void persistsMessagesAndIncrementsUnreadCounters() throws Exception {
+        Conversation conversation = createConversation();
+
+        writeBehind.enqueue(message(conversation, BUYER, "1"), conversation.getParticipantIds());
+        writeBehind.enqueue(message(conversation, BUYER, "2"), conversation.getParticipantIds());
+        writeBehind.enqueue(message(conversation, SELLER, "3"), conversation.getParticipantIds());
+        writeBehind.enqueue(message(conversation, BUYER, "4"), conversation.getParticipantIds());
+
+        await(() -> countMessages(conversation) == 4 && unread(conversation, SELLER) == 3);
+        assertEquals(1, unread(conversation, BUYER));
+        assertEquals("4", reload(conversation).getLastMessage());
+    }
+
+    @Test
+    void fullBufferFallsBackToSynchronousWrites() throws Exception {
+        Conversation conversation = createConversation();
+        long synchronousBefore = (long) writeBehind.getStats().get("synchronousWrites");
+
+        int total = 2_000;
+        for (int i = 0; i < total; i++) {
+            writeBehind.enqueue(message(conversation, BUYER, String.valueOf(i)), conversation.getParticipantIds());
+        }
+
+        assertTrue((long) writeBehind.getStats().get("synchronousWrites") > synchronousBefore,
+                "Buffer 64 phần tử phải đầy khi gửi liên tục " + total + " tin");
+        await(() -> countMessages(conversation) == total);
+        await(() -> unread(conversation, SELLER) == total);
+        assertEquals(0, unread(conversation, BUYER));
+    }
+
+    @Test
+    void rewritingAlreadyInsertedMessageDoesNotDuplicateIt() throws Exception {
+        Conversation conversation = createConversation();
+        ChatMessage message = message(conversation, BUYER, "retry");
+        // Lần thử trước đã insert tin nhưng chưa cập nhật conversation
+        mongoTemplate.insert(message);
+
+        writeBehind.enqueue(message, conversation.getParticipantIds());
+
+        await(() -> unread(conversation, SELLER) == 1);
+        assertEquals(1, countMessages(conversation));
+    }
+
+    @Test
+    void retryingAppliedConversationUpdateDoesNotIncrementTwice() {
+        Conversation conversation = createConversation();
+        List<ChatMessageWriteBehind.PendingMessage> batch = List.of(
+                new ChatMessageWriteBehind.PendingMessage(message(conversation, BUYER, "1"),
+                        conversation.getParticipantIds()),
+                new ChatMessageWriteBehind.PendingMessage(message(conversation, BUYER, "2"),
+                        conversation.getParticipantIds()));
+        List<ChatMessageWriteBehind.ConversationUpdate> updates = writeBehind.conversationUpdates(batch);
+
+        // Lần đầu đã ghi xong nhưng client nhận timeout / đổi primary nên thử lại cả lô
+        assertTrue(writeBehind.updateConversations(updates).isEmpty());
+        assertTrue(writeBehind.updateConversations(updates).isEmpty());
+
+        assertEquals(2, unread(conversation, SELLER));
+        assertEquals(0, unread(conversation, BUYER));
+
+        // Lô sau vẫn được cộng bình thường
+        writeBehind.updateConversations(writeBehind.conversationUpdates(List.of(
+                new ChatMessageWriteBehind.PendingMessage(message(conversation, BUYER, "3"),
+                        conversation.getParticipantIds()))));
+        assertEquals(3, unread(conversation, SELLER));
+    }
+
+    @Test
+    void messagesSentBeforeReadMarkerAreNotCountedAsUnread() {
+        Conversation conversation = createConversation();
+        ChatMessage readWhileBuffered = message(conversation, BUYER, "1");
+        readWhileBuffered.setSentAt(LocalDateTime.now().minusMinutes(1));
+        // Seller bấm "đã đọc" trong lúc tin trên còn nằm trong buffer
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(conversation.getId())),
+                new Update().push("readMarkers", new Conversation.ReadMarker(SELLER, null, LocalDateTime.now())),
+                Conversation.class);
+        ChatMessage sentAfterRead = message(conversation, BUYER, "2");
+        sentAfterRead.setSentAt(LocalDateTime.now().plusMinutes(1));
+
+        writeBehind.updateConversations(writeBehind.conversationUpdates(List.of(
+                new ChatMessageWriteBehind.PendingMessage(readWhileBuffered, conversation.getParticipantIds()),
+                new ChatMessageWriteBehind.PendingMessage(sentAfterRead, conversation.getParticipantIds()))));
+
+        assertEquals(1, unread(conversation, SELLER));
+        assertEquals("2", reload(conversation).getLastMessage());
+    }
+
+    @Test
+    void messageContentIsStoredLiterally() {
+        Conversation conversation = createConversation();
+
+        writeBehind.updateConversations(writeBehind.conversationUpdates(List.of(
+                new ChatMessageWriteBehind.PendingMessage(message(conversation, BUYER, "$unreadCounts"),
+                        conversation.getParticipantIds()))));
+
+        assertEquals("$unreadCounts", reload(conversation).getLastMessage());
+        assertEquals(1, unread(conversation, SELLER));
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    void shutdownFlushesBufferedMessages() throws Exception {
+        Conversation conversation = createConversation();
+        for (int i = 0; i < 50; i++) {
+            writeBehind.enqueue(message(conversation, SELLER, String.valueOf(i)), conversation.getParticipantIds());
+        }
+
+        writeBehind.shutdown();
+
+        assertEquals(50, countMessages(conversation));
+        assertEquals(50, unread(conversation, BUYER));
+        assertEquals(0L, writeBehind.getStats().get("lost"));
+    }
+
+    private Conversation createConversation() {
+        List<Conversation.UnreadCount> unreadCounts = new ArrayList<>(List.of(
+                new Conversation.UnreadCount(BUYER, 0),
+                new Conversation.UnreadCount(SELLER, 0)));
+        return mongoTemplate.insert(Conversation.builder()
+                .participantIds(List.of(BUYER, SELLER))
+                .type(Conversation.ConversationType.BUYER_SELLER)
+                .unreadCounts(unreadCounts)
+                .status(Conversation.ConversationStatus.ACTIVE)
+                .build());
+    }
+
+    private ChatMessage message(Conversation conversation, String senderId, String content) {
+        return ChatMessage.builder()
+                .id(new ObjectId().toHexString())
+                .conversationId(conversation.getId())
+                .senderId(senderId)
+                .content(content)
+                .type(ChatMessage.MessageType.TEXT)
+                .readByUserIds(new ArrayList<>(List.of(senderId)))
+                .status(ChatMessage.MessageStatus.SENT)
+                .sentAt(LocalDateTime.now())
+                .build();
+    }
+
+    private Conversation reload(Conversation conversation) {
+        return mongoTemplate.findById(conversation.getId(), Conversation.class);
+    }
+
+    private long countMessages(Conversation conversation) {
+        return mongoTemplate.count(new Query(Criteria.where("conversationId").is(conversation.getId())),
+                ChatMessage.class);
+    }
+
+    private int unread(Conversation conversation, String userId) {
+        return reload(conversation).getUnreadCounts().stream()
+                .filter(count -> count.getUserId().equals(userId))
+                .findFirst()
+                .map(Conversation.UnreadCount::getCount)
+                .orElse(0);
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Hết thời gian chờ ghi tin nhắn");
+            Thread.sleep(20);
+        }
+    }
+}
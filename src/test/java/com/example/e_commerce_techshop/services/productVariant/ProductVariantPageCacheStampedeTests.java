@@ -0,0 +1,256 @@
+package com.example.e_commerce_techshop.services.productVariant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.mock.env.MockEnvironment;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Chống cache stampede của ProductVariantPageCache trên Redis thật: nhiều request cùng miss một hashKey + field
+ * (trên một hoặc hai node) chỉ gọi loader một lần, trang stale được trả ngay trong lúc refresh nền,
+ * và các đường dự phòng (node giữ lock bị treo, Redis lỗi) vẫn trả được dữ liệu.
+ * Cần Docker; không có Docker thì test được bỏ qua.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductVariantPageCacheStampedeTests {
+
+    private static final int THREADS = 100;
+    private static final String REGION = "category";
+    private static final String FIELD = "page:0:size:20";
+    private static final Duration LOCAL_TTL = Duration.ofMinutes(5);
+    private static final long TIMEOUT_SECONDS = 20;
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+    private LettuceConnectionFactory redisConnection;
+
+    @BeforeAll
+    void connect() {
+        redisConnection = connectionFactory(redis.getHost(), redis.getMappedPort(6379));
+    }
+
+    @AfterAll
+    void disconnect() {
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    @Test
+    void concurrentMissesOnTwoNodesCallLoaderOnce() throws Exception {
+        ProductVariantPageCache nodeA = newNode(redisConnection);
+        ProductVariantPageCache nodeB = newNode(redisConnection);
+        String hashKey = hashKey();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            sleep(300);
+            return "page-" + loads.incrementAndGet();
+        };
+
+        List<Callable<String>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            ProductVariantPageCache node = i % 2 == 0 ? nodeA : nodeB;
+            calls.add(() -> node.getOrLoad(REGION, hashKey, FIELD, LOCAL_TTL, String.class, loader, value -> List.of()));
+        }
+        List<String> results = runConcurrently(calls);
+
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertEquals("page-1", result));
+        // Node không giữ lock chờ kết quả trên Redis thay vì tự query
+        assertEquals(1L, (long) nodeA.getStats().get("lockWaits") + (long) nodeB.getStats().get("lockWaits"));
+    }
+
+    @Test
+    void staleValueIsServedWhileOneRefreshRuns() throws Exception {
+        ProductVariantPageCache node = newNode(redisConnection);
+        String hashKey = hashKey();
+        writeStaleEntry(hashKey, "stale");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            try {
+                releaseLoader.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "fresh";
+        };
+
+        List<Callable<String>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            calls.add(() -> node.getOrLoad(REGION, hashKey, FIELD, LOCAL_TTL, String.class, loader, value -> List.of()));
+        }
+        // Loader đang bị giữ lại: mọi request phải trả bản stale mà không chờ refresh
+        List<String> results = runConcurrently(calls);
+        results.forEach(result -> assertEquals("stale", result));
+
+        releaseLoader.countDown();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (!"fresh".equals(node.getOrLoad(REGION, hashKey, FIELD, LOCAL_TTL, String.class, loader,
+                value -> List.of()))) {
+            assertTrue(System.currentTimeMillis() < deadline, "Refresh nền không ghi được bản mới");
+            sleep(50);
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1L, node.getStats().get("backgroundRefreshes"));
+    }
+
+    @Test
+    void loadsItselfWhenLockHolderNeverWritesValue() throws Exception {
+        ProductVariantPageCache node = newNode(redisConnection);
+        String hashKey = hashKey();
+        // Lock của một node đã chết giữa lúc load
+        new StringRedisTemplate(redisConnection).opsForValue().set(
+                ProductVariantPageCache.CACHE_PREFIX + "lock:" + hashKey + "|" + FIELD, "crashed-node",
+                Duration.ofSeconds(30));
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> "page-" + loads.incrementAndGet();
+
+        List<Callable<String>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            calls.add(() -> node.getOrLoad(REGION, hashKey, FIELD, LOCAL_TTL, String.class, loader, value -> List.of()));
+        }
+        List<String> results = runConcurrently(calls);
+
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertEquals("page-1", result));
+        assertEquals(1L, node.getStats().get("lockWaits"));
+    }
+
+    @Test
+    void redisOutageFallsBackToSingleFlightLoad() throws Exception {
+        ProductVariantPageCache node = newNode(connectionFactory("localhost", unusedPort()));
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            sleep(300);
+            return "page-" + loads.incrementAndGet();
+        };
+
+        String hashKey = hashKey();
+        List<Callable<String>> calls = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            calls.add(() -> node.getOrLoad(REGION, hashKey, FIELD, LOCAL_TTL, String.class, loader, value -> List.of()));
+        }
+        List<String> results = runConcurrently(calls);
+
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertEquals("page-1", result));
+        assertTrue((long) node.getStats().get("errors") > 0);
+    }
+
+    private ProductVariantPageCache newNode(LettuceConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> binaryRedisTemplate = new RedisTemplate<>();
+        binaryRedisTemplate.setConnectionFactory(connectionFactory);
+        binaryRedisTemplate.setKeySerializer(new StringRedisSerializer());
+        binaryRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        binaryRedisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        binaryRedisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        binaryRedisTemplate.afterPropertiesSet();
+
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+
+        ProductVariantPageCache cache = new ProductVariantPageCache(binaryRedisTemplate,
+                new StringRedisTemplate(connectionFactory), new ObjectMapper(), listenerContainer,
+                new MockEnvironment().withProperty("cache.product-variants.codec.default", "json"));
+        cache.registerCodecs();
+        return cache;
+    }
+
+    private LettuceConnectionFactory connectionFactory(String host, int port) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(host, port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        connectionFactories.add(connectionFactory);
+        return connectionFactory;
+    }
+
+    // Cùng định dạng với ProductVariantPageCache: [8 byte refreshAt][1 byte id codec][payload], refreshAt đã qua
+    private void writeStaleEntry(String hashKey, String value) throws IOException {
+        byte[] payload = new ObjectMapper().writeValueAsBytes(value);
+        byte[] raw = ByteBuffer.allocate(Long.BYTES + 1 + payload.length)
+                .putLong(System.currentTimeMillis() - 1_000)
+                .put((byte) 1)
+                .put(payload)
+                .array();
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnection);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        template.opsForHash().put(hashKey, FIELD, raw);
+    }
+
+    private List<String> runConcurrently(List<Callable<String>> calls) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Callable<String> call : calls) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<String> results = new ArrayList<>();
+            for (Future<String> future : futures) {
+                results.add(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    private String hashKey() {
+        return ProductVariantPageCache.CACHE_PREFIX + "test:" + UUID.randomUUID();
+    }
+
+    private static int unusedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.e_commerce_techshop.services.stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.e_commerce_techshop.dtos.buyer.OrderDTO;
+import com.example.e_commerce_techshop.models.ProductVariant;
+
+/**
+ * Nhiều checkout cùng giữ một biến thể trên MongoDB thật: stock không bao giờ âm và số lần giữ thành công
+ * đúng bằng stock ban đầu, cả với stock tổng lẫn stock theo màu (colors.$[c].stock).
+ * Cần Docker; không có Docker thì test được bỏ qua.
+ */
+@DataMongoTest(properties = "spring.data.mongodb.database=stock_reservation_test")
+@Testcontainers(disabledWithoutDocker = true)
+@Import(StockReservationService.class)
+class StockReservationConcurrencyTests {
+
+    private static final int THREADS = 400;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void concurrentReservationsNeverOversellVariantStock() throws Exception {
+        int initialStock = 100;
+        ProductVariant variant = mongoTemplate.insert(ProductVariant.builder()
+                .name("Laptop")
+                .stock(initialStock)
+                .status(ProductVariant.VariantStatus.APPROVED.name())
+                .build());
+
+        int reserved = reserveConcurrently(variant.getId(), null);
+
+        ProductVariant after = mongoTemplate.findById(variant.getId(), ProductVariant.class);
+        assertEquals(initialStock, reserved);
+        assertEquals(0, after.getStock());
+    }
+
+    @Test
+    void concurrentReservationsNeverOversellColorStock() throws Exception {
+        String red = UUID.randomUUID().toString();
+        String blue = UUID.randomUUID().toString();
+        ProductVariant variant = mongoTemplate.insert(ProductVariant.builder()
+                .name("Điện thoại")
+                .stock(150)
+                .status(ProductVariant.VariantStatus.APPROVED.name())
+                .colors(new ArrayList<>(List.of(
+                        ProductVariant.ColorOption.builder().id(red).colorName("Đỏ").stock(50).build(),
+                        ProductVariant.ColorOption.builder().id(blue).colorName("Xanh").stock(100).build())))
+                .build());
+
+        int reserved = reserveConcurrently(variant.getId(), red);
+
+        ProductVariant after = mongoTemplate.findById(variant.getId(), ProductVariant.class);
+        assertEquals(50, reserved);
+        assertEquals(0, colorStock(after, red));
+        assertEquals(100, colorStock(after, blue));
+        // Stock tổng giảm đúng bằng số đã giữ ở màu đỏ
+        assertEquals(100, after.getStock());
+    }
+
+    // Mỗi thread giữ 1 sản phẩm; trả về số lần giữ thành công
+    private int reserveConcurrently(String productVariantId, String colorId) throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    OrderDTO.SelectedCartItem item = OrderDTO.SelectedCartItem.builder()
+                            .productVariantId(productVariantId)
+                            .colorId(colorId)
+                            .quantity(1)
+                            .build();
+                    try {
+                        stockReservationService.reserve(List.of(item));
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        assertEquals(THREADS, succeeded.get() + rejected.get());
+        ProductVariant after = mongoTemplate.findById(productVariantId, ProductVariant.class);
+        assertTrue(after.getStock() >= 0, "Stock âm: " + after.getStock());
+        if (after.getColors() != null) {
+            after.getColors().forEach(color -> assertTrue(color.getStock() >= 0,
+                    "Stock màu " + color.getColorName() + " âm: " + color.getStock()));
+        }
+        return succeeded.get();
+    }
+
+    private int colorStock(ProductVariant variant, String colorId) {
+        return variant.getColors().stream()
+                .filter(color -> color.getId().equals(colorId))
+                .findFirst()
+                .map(ProductVariant.ColorOption::getStock)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.e_commerce_techshop.services.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import com.example.e_commerce_techshop.ECommerceTechshopApplication;
+import com.example.e_commerce_techshop.components.JwtTokenProvider;
+import com.example.e_commerce_techshop.dtos.chat.SendMessageRequest;
+import com.example.e_commerce_techshop.models.ChatMessage;
+import com.example.e_commerce_techshop.models.Conversation;
+import com.example.e_commerce_techshop.models.User;
+import com.example.e_commerce_techshop.repositories.ConversationRepository;
+import com.example.e_commerce_techshop.repositories.user.UserRepository;
+import com.example.e_commerce_techshop.services.chat.IChatService;
+
+/**
+ * Chạy hai instance của ứng dụng (websocket.broker.mode = redis) trên cùng MongoDB và Redis,
+ * client STOMP kết nối vào node B phải nhận được tin gửi từ node A qua /topic,
+ * và tin chat gửi bằng ChatService.sendMessage trên node A (người nhận định danh bằng userId).
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MultiNodeStompRelayTests {
+
+    private static final long RECEIVE_TIMEOUT_SECONDS = 5;
+    private static final int DELIVERY_ATTEMPTS = 20;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer(DockerImageName.parse("mongo:7.0"));
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+    private User user;
+    private User seller;
+    private User otherBuyer;
+    private Conversation conversation;
+    private Conversation otherConversation;
+
+    @BeforeAll
+    void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+
+        user = saveUser("relay-test@techshop.local");
+        seller = saveUser("relay-seller@techshop.local");
+        otherBuyer = saveUser("relay-other@techshop.local");
+        conversation = saveConversation(user, seller);
+        otherConversation = saveConversation(otherBuyer, seller);
+
+        stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterAll
+    void stopNodes() {
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void topicMessageReachesSocketOnOtherNode() throws Exception {
+        StompSession session = connect(nodeB);
+        BlockingQueue<Map<?, ?>> received = subscribe(session, "/topic/conversation/relay-topic");
+
+        Map<?, ?> message = sendUntilReceived(received,
+                () -> template(nodeA).convertAndSend("/topic/conversation/relay-topic", Map.of("text", "hello")));
+
+        assertNotNull(message, "Client trên node B không nhận được tin /topic gửi từ node A");
+        assertEquals("hello", message.get("text"));
+        session.disconnect();
+    }
+
+    @Test
+    void userMessageReachesSocketOnOtherNode() throws Exception {
+        StompSession session = connect(nodeB);
+        BlockingQueue<Map<?, ?>> received = subscribe(session, "/user/queue/messages");
+
+        Map<?, ?> message = sendUntilReceived(received, () -> sendChat(conversation, "hi"));
+
+        assertNotNull(message, "Client trên node B không nhận được tin chat gửi từ node A");
+        assertEquals("hi", message.get("content"));
+        session.disconnect();
+    }
+
+    @Test
+    void userMessageIsNotDeliveredToOtherUsers() throws Exception {
+        StompSession session = connect(nodeB);
+        BlockingQueue<Map<?, ?>> received = subscribe(session, "/user/queue/messages");
+        // Tin của conversation khác gửi trước tin của conversation có user: client chỉ được nhận các tin "mine"
+        Map<?, ?> message = sendUntilReceived(received, () -> {
+            sendChat(otherConversation, "other");
+            sendChat(conversation, "mine");
+        });
+
+        assertNotNull(message);
+        assertEquals("mine", message.get("content"));
+        Map<?, ?> extra;
+        while ((extra = received.poll(1, TimeUnit.SECONDS)) != null) {
+            assertEquals("mine", extra.get("content"));
+        }
+        session.disconnect();
+    }
+
+    private User saveUser(String email) {
+        return nodeA.getBean(UserRepository.class).save(User.builder()
+                .email(email)
+                .fullName(email)
+                .roles(List.of("USER"))
+                .enable(true)
+                .isActive(true)
+                .build());
+    }
+
+    private Conversation saveConversation(User buyer, User storeOwner) {
+        return nodeA.getBean(ConversationRepository.class).save(Conversation.builder()
+                .participantIds(List.of(buyer.getId(), storeOwner.getId()))
+                .type(Conversation.ConversationType.BUYER_SELLER)
+                .unreadCounts(List.of(new Conversation.UnreadCount(buyer.getId(), 0),
+                        new Conversation.UnreadCount(storeOwner.getId(), 0)))
+                .status(Conversation.ConversationStatus.ACTIVE)
+                .build());
+    }
+
+    // Người bán gửi tin trên node A, đi qua đường gửi thật của chat
+    private void sendChat(Conversation target, String content) {
+        nodeA.getBean(IChatService.class).sendMessage(SendMessageRequest.builder()
+                .conversationId(target.getId())
+                .content(content)
+                .type(ChatMessage.MessageType.TEXT)
+                .build(), seller.getId());
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.data.mongodb.uri", mongo.getReplicaSetUrl("techshop_relay_test"));
+        properties.put("spring.data.mongodb.database", "techshop_relay_test");
+        properties.put("spring.data.redis.host", redis.getHost());
+        properties.put("spring.data.redis.port", redis.getMappedPort(6379));
+        properties.put("spring.data.redis.password", "");
+        properties.put("spring.data.redis.username", "");
+        properties.put("websocket.broker.mode", "redis");
+        properties.put("mongodb.index-verification.enabled", false);
+        // Biến môi trường bắt buộc của các tích hợp ngoài, không dùng trong test này
+        for (String name : List.of("CLOUDINARY_CLOUD_NAME", "CLOUDINARY_API_KEY", "CLOUDINARY_API_SECRET",
+                "MAIL_FROM_ADDRESS", "MAIL_FROM_NAME", "SENDGRID_API_KEY", "MOMO_PARTNER_CODE", "MOMO_ACCESS_KEY",
+                "MOMO_SECRET_KEY", "MOMO_IPN_URL", "VNPAY_TMNCODE", "VNPAY_SECRET_KEY", "VNPAY_API_URL")) {
+            properties.putIfAbsent(name, "test");
+        }
+        return new SpringApplicationBuilder(ECommerceTechshopApplication.class)
+                .properties(properties)
+                .run();
+    }
+
+    private SimpMessagingTemplate template(ConfigurableApplicationContext node) {
+        return node.getBean(SimpMessagingTemplate.class);
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node) throws Exception {
+        int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+        String token = node.getBean(JwtTokenProvider.class).generateToken(user);
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        return stompClient.connectAsync("http://localhost:" + port + "/ws/chat", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {
+                }).get(RECEIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private BlockingQueue<Map<?, ?>> subscribe(StompSession session, String destination) {
+        BlockingQueue<Map<?, ?>> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Map<?, ?>) payload);
+            }
+        });
+        return received;
+    }
+
+    // SUBSCRIBE được xử lý bất đồng bộ ở node B nên gửi lại tới khi client nhận được
+    private Map<?, ?> sendUntilReceived(BlockingQueue<Map<?, ?>> received, Runnable send) throws InterruptedException {
+        long waitMillis = TimeUnit.SECONDS.toMillis(RECEIVE_TIMEOUT_SECONDS) / DELIVERY_ATTEMPTS;
+        for (int attempt = 0; attempt < DELIVERY_ATTEMPTS; attempt++) {
+            send.run();
+            Map<?, ?> message = received.poll(waitMillis, TimeUnit.MILLISECONDS);
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+}